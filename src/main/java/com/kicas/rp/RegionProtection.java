@@ -2,6 +2,7 @@ package com.kicas.rp;
 
 import com.kicas.rp.command.*;
 import com.kicas.rp.data.DataManager;
+import com.kicas.rp.data.ParticleRenderer;
 import com.kicas.rp.data.RegionFlag;
 import com.kicas.rp.event.EntityEventHandler;
 import com.kicas.rp.event.RegionToolHandler;
@@ -29,6 +30,7 @@ import java.util.stream.Collectors;
  */
 public class RegionProtection extends JavaPlugin {
     private final DataManager dataManager;
+    private final ParticleRenderer particleRenderer;
 
     private Material claimCreationTool, claimViewer;
     private double claimBlocksGainedPerMinute;
@@ -38,6 +40,7 @@ public class RegionProtection extends JavaPlugin {
 
     public RegionProtection() {
         this.dataManager = new DataManager(getDataFolder());
+        this.particleRenderer = new ParticleRenderer();
         instance = this;
     }
 
@@ -60,6 +63,7 @@ public class RegionProtection extends JavaPlugin {
     @Override
     public void onDisable() {
         dataManager.save();
+        dataManager.getNameResolver().shutdown();
     }
 
     /**
@@ -76,6 +80,13 @@ public class RegionProtection extends JavaPlugin {
         return instance.dataManager;
     }
 
+    /**
+     * @return the renderer of the particle outlines of region highlighters.
+     */
+    public static ParticleRenderer getParticleRenderer() {
+        return instance.particleRenderer;
+    }
+
     /**
      * @return the plugin config.
      */
@@ -141,6 +152,11 @@ public class RegionProtection extends JavaPlugin {
         config.addDefault("general.claim-expiration-time", 60);
         config.addDefault("general.enable-claim-stealing", false);
         config.addDefault("general.enable-claims-in-worlds", Collections.singletonList("world"));
+        config.addDefault("general.highlight-mode", "blocks");
+        config.addDefault("general.highlight-particle-range", 48);
+        config.addDefault("general.highlight-particles-per-tick", 400);
+        config.addDefault("general.highlight-streaming-radius", 64);
+        config.addDefault("general.highlight-blocks-per-tick", 64);
 
         config.addDefault("region.invincible", false);
         config.addDefault("region.potion-splash", true);
@@ -246,16 +262,14 @@ public class RegionProtection extends JavaPlugin {
     }
 
     /**
-     * Registers plugin tasks, such as the claim block adding task, automatic claim expiration task, and automatic data
-     * save task.
+     * Registers plugin tasks, such as the claim block adding task, automatic claim expiration task, particle
+     * highlighting task, and automatic data save task.
      */
     private void scheduleTasks() {
         // Automatic claim block gaining
         if (claimBlocksGainedPerMinute > 0) {
-            Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
-                Bukkit.getOnlinePlayers().stream().map(dataManager::getPlayerSession)
-                        .forEach(ps -> ps.addClaimBlocks(claimBlocksGainedPerMinute));
-            }, 0L, 60L * 20L);
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+                    () -> dataManager.accrueClaimBlocks(claimBlocksGainedPerMinute), 0L, 60L * 20L);
         }
 
         // Expire claims if they are older then the time given in the config (in days). The age of a claim is determined
@@ -266,11 +280,15 @@ public class RegionProtection extends JavaPlugin {
             // Check every hour
             Bukkit.getScheduler().scheduleSyncRepeatingTask(this, () -> {
                 Bukkit.getWorlds().forEach(world -> {
-                    dataManager.tryDeleteRegions(null, world, region -> region.hasExpired(claimExpirationTime), true);
+                    dataManager.tryDeleteExpiredRegions(world, claimExpirationTime);
                 });
             }, 100L, 60L * 60L * 20L);
         }
 
+        // Particle highlighting, emitted under a budget shared by every viewer
+        particleRenderer.setParticlesPerTick(getConfig().getInt("general.highlight-particles-per-tick"));
+        Bukkit.getScheduler().runTaskTimer(this, particleRenderer::tick, 1L, 1L);
+
         // Periodically save data in case of crashes (5 minutes)
         Bukkit.getScheduler().runTaskTimerAsynchronously(this, dataManager::save, 5L * 60L * 20L,
                 5L * 60L * 20L);
@@ -24,24 +24,30 @@ public class CommandClaimBlocks extends TabCompleterBase implements CommandExecu
         if (args.length == 0)
             return false;
 
-        // Lookup the username UUID
-        UUID player = RegionProtection.getDataManager().uuidForUsername(args[0]);
-        if (player == null) {
-            sender.sendMessage(ChatColor.RED + "Invalid username: " + args[0]);
-            return true;
-        }
+        // Lookup the username UUID, which may have to be fetched from the Mojang API first
+        RegionProtection.getDataManager().resolveUuid(args[0], player -> {
+            if (player == null)
+                sender.sendMessage(ChatColor.RED + "Invalid username: " + args[0]);
+            else
+                onPlayerResolved(sender, args, player);
+        });
+
+        return true;
+    }
 
+    // Views or modifies the claim blocks of the player with the given UUID
+    private void onPlayerResolved(CommandSender sender, String[] args, UUID player) {
         // Assume "view" argument
         if (args.length < 2) {
             TextUtils.sendFormatted(sender, "&(gold)%0 has {&(aqua)%1} claim blocks.", args[0],
                     RegionProtection.getDataManager().getClaimBlocks(player));
-            return true;
+            return;
         }
 
         // Sub-command check
         if (!SUB_COMMANDS.contains(args[1].toLowerCase())) {
             sender.sendMessage(ChatColor.RED + "Invalid sub-command: " + args[1]);
-            return true;
+            return;
         }
 
         // View the number of claim blocks they have
@@ -52,7 +58,7 @@ public class CommandClaimBlocks extends TabCompleterBase implements CommandExecu
             // Secondary args check
             if (args.length < 3) {
                 sender.sendMessage(ChatColor.RED + "Usage: /claimblocks <name> <add|remove> <amount>");
-                return true;
+                return;
             }
 
             // Whether or not we're removing blocks
@@ -64,14 +70,14 @@ public class CommandClaimBlocks extends TabCompleterBase implements CommandExecu
                 amount = Integer.parseInt(args[2]);
             } catch (NumberFormatException ex) {
                 sender.sendMessage(ChatColor.RED + "Invalid amount: " + args[2]);
-                return true;
+                return;
             }
 
             // Check to make sure we're not going to end up with negative claim blocks
             if (removing && amount > RegionProtection.getDataManager().getClaimBlocks(player)) {
                 sender.sendMessage(ChatColor.RED + "You cannot take that many claim blocks from this player " +
                         "otherwise they would have negative claim blocks.");
-                return true;
+                return;
             }
 
             // Modify the claim blocks and notify the sender
@@ -80,8 +86,6 @@ public class CommandClaimBlocks extends TabCompleterBase implements CommandExecu
                     (removing ? "from " : "to ") + args[0] + ". They now have " +
                     RegionProtection.getDataManager().getClaimBlocks(player) + " claim blocks.");
         }
-
-        return true;
     }
 
     @Override
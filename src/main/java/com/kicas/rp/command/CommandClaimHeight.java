@@ -6,7 +6,6 @@ import com.kicas.rp.data.RegionFlag;
 import com.kicas.rp.data.flagdata.TrustLevel;
 import com.kicas.rp.data.flagdata.TrustMeta;
 import org.bukkit.ChatColor;
-import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -53,9 +52,8 @@ public class CommandClaimHeight extends TabCompleterBase implements CommandExecu
             return true;
         }
 
-        // Whether or not we're changing the top location, and also get the vertex to move
+        // Whether or not we're changing the top location
         boolean isTop = "top".equals(args[1]);
-        Location vertex = isTop ? region.getMax() : region.getMin();
 
         // Notify the sender of where the location currently is
         if ("get".equalsIgnoreCase(args[0])) {
@@ -66,7 +64,7 @@ public class CommandClaimHeight extends TabCompleterBase implements CommandExecu
             }
 
             sender.sendMessage(ChatColor.GOLD + "The " + (isTop ? "top" : "bottom") + " of this claim is set to " +
-                    ChatColor.AQUA + "y=" + vertex.getBlockY());
+                    ChatColor.AQUA + "y=" + (isTop ? region.getMaxY() : region.getMinY()));
         } else if ("set".equalsIgnoreCase(args[0])) {
             // Secondary args check
             if (args.length < 3) {
@@ -103,7 +101,7 @@ public class CommandClaimHeight extends TabCompleterBase implements CommandExecu
                 // Subdivisions
                 if (region.hasParent()) {
                     // Make sure the subdivision meets the minimum height requirement
-                    if (newY - region.getMin().getBlockY() < RegionProtection.getRPConfig()
+                    if (newY - region.getMinY() < RegionProtection.getRPConfig()
                             .getInt("general.minimum-subdivision-height")) {
                         sender.sendMessage(ChatColor.RED + "A subdivision must have a height of at least " +
                                 RegionProtection.getRPConfig().getInt("general.minimum-subdivision-height") +
@@ -111,7 +109,7 @@ public class CommandClaimHeight extends TabCompleterBase implements CommandExecu
                     }
                     // Success: modify the height
                     else {
-                        vertex.setY(newY);
+                        region.setMaxY(newY);
                         sender.sendMessage(ChatColor.GOLD + "The top of this claim is now set to " + ChatColor.AQUA +
                                 "y=" + newY);
                     }
@@ -127,20 +125,20 @@ public class CommandClaimHeight extends TabCompleterBase implements CommandExecu
                 // Subdivisions
                 if (region.hasParent()) {
                     // Make sure the subdivision meets the minimum height requirement
-                    if (region.getMax().getBlockY() - newY < RegionProtection.getRPConfig()
+                    if (region.getMaxY() - newY < RegionProtection.getRPConfig()
                             .getInt("general.minimum-subdivision-height")) {
                         sender.sendMessage(ChatColor.RED + "A subdivision must have a height of at least " +
                                 RegionProtection.getRPConfig().getInt("general.minimum-subdivision-height") +
                                 " blocks.");
                     }
                     // Ensure the claim does not extend below the parent
-                    else if (newY < region.getParent().getMin().getBlockY()) {
+                    else if (newY < region.getParent().getMinY()) {
                         sender.sendMessage(ChatColor.RED + "You cannot extend this subdivision below the minimum " +
-                                "y-level of its parent claim (y=" + region.getParent().getMin().getBlockY() + ").");
+                                "y-level of its parent claim (y=" + region.getParent().getMinY() + ").");
                     }
                     // Success: modify the height
                     else {
-                        vertex.setY(newY);
+                        region.setMinY(newY);
                         sender.sendMessage(ChatColor.GOLD + "The bottom of this claim is now set to " + ChatColor.AQUA +
                                 "y=" + newY);
                     }
@@ -154,10 +152,10 @@ public class CommandClaimHeight extends TabCompleterBase implements CommandExecu
                     }
 
                     // Success: change the location of the bottom
-                    vertex.setY(newY);
+                    region.setMinY(newY);
                     // Also adjust the bottoms of the children (if necessary) so they don't extend below the parent
-                    region.getChildren().stream().filter(child -> child.getMin().getBlockY() < newY)
-                            .forEach(child -> child.getMin().setY(newY));
+                    region.getChildren().stream().filter(child -> child.getMinY() < newY)
+                            .forEach(child -> child.setMinY(newY));
 
                     sender.sendMessage(ChatColor.GOLD + "The bottom of this claim is now set to " + ChatColor.AQUA +
                             "y=" + newY);
@@ -253,11 +253,14 @@ public class CommandRegion extends TabCompleterBase implements CommandExecutor {
                 throw new InternalError();
             }
 
-            // Perform the operation
+            // The current meta may be shared with other regions, so the operation is performed on a copy
+            FlagMeta updatedMeta = ((FlagMeta) currentMeta).copy();
             if (operation == FlagOperation.APPEND)
-                ((Augmentable) currentMeta).augment(meta);
+                ((Augmentable) updatedMeta).augment(meta);
             else
-                ((Augmentable) currentMeta).reduce(meta);
+                ((Augmentable) updatedMeta).reduce(meta);
+
+            flags.setFlag(flag, updatedMeta);
         }
 
         TextUtils.sendFormatted(sender, "&(green)Updated flag {&(aqua)%0} for region {&(aqua)%1}", Utils.formattedName(flag),
@@ -317,12 +320,12 @@ public class CommandRegion extends TabCompleterBase implements CommandExecutor {
                             "\nParent: {&(aqua)%9}%a%b",
                     region.getDisplayName(),
                     region.getOwnerName(),
-                    region.getMin().getBlockX(),
-                    region.getMin().getBlockY(),
-                    region.getMin().getBlockZ(),
-                    region.getMax().getBlockX(),
-                    region.getMax().getBlockY(),
-                    region.getMax().getBlockZ(),
+                    region.getMinX(),
+                    region.getMinY(),
+                    region.getMinZ(),
+                    region.getMaxX(),
+                    region.getMaxY(),
+                    region.getMaxZ(),
                     region.getPriority(),
                     region.hasParent()
                             ? region.getParent().getDisplayName()
@@ -331,6 +334,7 @@ public class CommandRegion extends TabCompleterBase implements CommandExecutor {
                             ? ""
                             : "\nCo-Owners: {&(gray)" + region.getCoOwners().stream()
                             .map(RegionProtection.getDataManager()::currentUsernameForUuid)
+                            .filter(Objects::nonNull)
                             .sorted(Comparator.comparing(String::toLowerCase)).collect(Collectors.joining(", ")) + "}",
                     region.isEmpty() || (region.hasParent() && region.getPriority() == region.getParent().getPriority() &&
                             regions.contains(region.getParent()))
@@ -428,8 +432,8 @@ public class CommandRegion extends TabCompleterBase implements CommandExecutor {
             }
 
             // Perform the extension
-            region.getMin().setY(region.getWorld().getMinHeight());
-            region.getMax().setY(region.getWorld().getMaxHeight());
+            region.setMinY(region.getWorld().getMinHeight());
+            region.setMaxY(region.getWorld().getMaxHeight());
 
             TextUtils.sendFormatted(sender, "&(green)Extended region to bedrock and world height.");
         }
@@ -505,13 +509,13 @@ public class CommandRegion extends TabCompleterBase implements CommandExecutor {
                 case FLAG:
                 case INFO:
                     // Global flags allowed
-                    return filterStartingWith(args[1], RegionProtection.getDataManager().getAdminRegionNames(((Player) sender)
-                            .getWorld(), true));
+                    return RegionProtection.getDataManager().getAdminRegionNames(((Player) sender).getWorld(),
+                            args[1], true, MAX_SUGGESTIONS);
 
                 default:
                     // Global flags aren't allowed
-                    return filterStartingWith(args[1], RegionProtection.getDataManager().getAdminRegionNames(((Player) sender)
-                            .getWorld(), false));
+                    return RegionProtection.getDataManager().getAdminRegionNames(((Player) sender).getWorld(),
+                            args[1], false, MAX_SUGGESTIONS);
             }
         }
 
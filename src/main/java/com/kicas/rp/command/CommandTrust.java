@@ -5,6 +5,7 @@ import com.kicas.rp.data.*;
 import com.kicas.rp.data.flagdata.TrustLevel;
 import com.kicas.rp.data.flagdata.TrustMeta;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -115,49 +116,74 @@ public class CommandTrust extends TabCompleterBase implements CommandExecutor {
         }
         // Grant a specific player trust
         else {
-            // Get the UUID to trust
-            UUID uuid = RegionProtection.getDataManager().uuidForUsername(args[0]);
-            if (uuid == null) {
-                sender.sendMessage(ChatColor.RED + "Player not found.");
-                return true;
+            // Get the UUID to trust, which may have to be fetched from the Mojang API first
+            Location location = ((Player) sender).getLocation();
+            String claimName = args.length == 2 ? args[1] : null;
+            boolean trustAllClaims = allClaims;
+            RegionProtection.getDataManager().resolveUuid(args[0], uuid -> {
+                if (uuid == null)
+                    sender.sendMessage(ChatColor.RED + "Player not found.");
+                else
+                    trustPlayer((Player) sender, args[0], uuid, trust, location, claimName, trustAllClaims);
+            });
+        }
+
+        return true;
+    }
+
+    // Sets the trust level of the player with the given UUID in the claim at the given location or with the given name,
+    // or in all the sender's claims. The claims are looked up again since they may have changed while the UUID was
+    // being resolved.
+    private static void trustPlayer(Player sender, String name, UUID uuid, TrustLevel trust, Location location,
+                                    String claimName, boolean allClaims) {
+        if (!sender.isOnline())
+            return;
+
+        DataManager dm = RegionProtection.getDataManager();
+        List<Region> regions;
+        if (allClaims)
+            regions = dm.getPlayerRegions(sender, location.getWorld());
+        else {
+            Region claim = claimName == null ? null : dm.getPlayerRegionByName(sender, location.getWorld(), claimName);
+            if (claim == null)
+                claim = dm.getHighestPriorityRegionAtIgnoreY(location);
+
+            if (claim == null) {
+                sender.sendMessage(ChatColor.RED + "This claim no longer exists.");
+                return;
             }
 
-            // Check to make sure the owner isn't demoting themselves
-            if (!allClaims) {
-                if (claim.isOwner(uuid)) {
-                    sender.sendMessage(ChatColor.RED + "You cannot set the trust level of " + args[0] +
-                        " in this claim since they are also an owner of the claim.");
-                    return true;
-                }
+            // Make sure the sender still has permission to modify trust levels
+            if (!claim.<TrustMeta>getAndCreateFlagMeta(RegionFlag.TRUST).hasTrust(sender, TrustLevel.MANAGEMENT, claim)) {
+                sender.sendMessage(ChatColor.RED + "You do not have permission to trust people in this claim.");
+                return;
             }
 
-            // Notify the sender
-            if (trust == TrustLevel.NONE) {
-                if (allClaims) {
-                    for (Region region : allRegions) {
-                        TrustMeta meta = region.getAndCreateFlagMeta(RegionFlag.TRUST);
-                        meta.untrust(uuid);
-                    }
-                } else {
-                    trustMeta.untrust(uuid);
-                }
-                sender.sendMessage(ChatColor.GOLD + "Untrusted " + args[0] + " from your claim" + (allClaims ? "s" : "") + ".");
-            } else {
-                if (allClaims) {
-                    for (Region region : allRegions) {
-                        TrustMeta meta = region.getAndCreateFlagMeta(RegionFlag.TRUST);
-                        meta.trust(uuid, trust);
-                    }
-                } else {
-                    trustMeta.trust(uuid, trust);
-                }
-                trustMeta.trust(uuid, trust);
-                sender.sendMessage(ChatColor.GOLD + "Granted " + args[0] + " " + trust.name().toLowerCase() +
-                        " trust in your claim" + (allClaims ? "s" : "") + ".");
+            // Check to make sure the owner isn't demoting themselves
+            if (claim.isOwner(uuid)) {
+                sender.sendMessage(ChatColor.RED + "You cannot set the trust level of " + name +
+                    " in this claim since they are also an owner of the claim.");
+                return;
             }
+
+            regions = Collections.singletonList(claim);
         }
 
-        return true;
+        // Notify the sender
+        if (trust == TrustLevel.NONE) {
+            for (Region region : regions) {
+                TrustMeta meta = region.getAndCreateFlagMeta(RegionFlag.TRUST);
+                meta.untrust(uuid);
+            }
+            sender.sendMessage(ChatColor.GOLD + "Untrusted " + name + " from your claim" + (allClaims ? "s" : "") + ".");
+        } else {
+            for (Region region : regions) {
+                TrustMeta meta = region.getAndCreateFlagMeta(RegionFlag.TRUST);
+                meta.trust(uuid, trust);
+            }
+            sender.sendMessage(ChatColor.GOLD + "Granted " + name + " " + trust.name().toLowerCase() +
+                    " trust in your claim" + (allClaims ? "s" : "") + ".");
+        }
     }
 
     @Override
@@ -169,7 +195,7 @@ public class CommandTrust extends TabCompleterBase implements CommandExecutor {
         switch(args.length){
             case 1:
                 if(!alias.toLowerCase().startsWith("un")){
-                    values = getOnlinePlayers(args[0]);
+                    values = getKnownPlayers(args[0]);
                     break;
                 }
                 if(dm.getHighestPriorityRegionAt(((Player) sender).getLocation()) != null){
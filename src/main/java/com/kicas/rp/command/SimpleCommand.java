@@ -16,6 +16,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.BlockFace;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -24,6 +25,7 @@ import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -157,29 +159,48 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
             return true;
         }
 
-        // Get and check the provided player name
-        UUID coOwner = RegionProtection.getDataManager().uuidForUsername(args[0]);
-        if (coOwner == null) {
-            sender.sendMessage(ChatColor.RED + "Player not found.");
-            return true;
-        }
+        // Get and check the provided player name, which may have to be fetched from the Mojang API first
+        Location location = ((Player) sender).getLocation();
+        RegionProtection.getDataManager().resolveUuid(args[0], coOwner -> {
+            if (coOwner == null) {
+                sender.sendMessage(ChatColor.RED + "Player not found.");
+                return;
+            }
 
-        if ("addcoowner".equals(alias)) {
-            if (region.getCoOwners().contains(coOwner)) {
-                sender.sendMessage(ChatColor.RED + "This person is already a co-owner.");
-                return true;
+            // The region may have changed while the player was being looked up, so get and check it again
+            if (!((Player) sender).isOnline())
+                return;
+
+            Region current = args.length == 2 ?
+                    RegionProtection.getDataManager().getPlayerRegionByName((Player) sender, location.getWorld(), args[1]) :
+                    RegionProtection.getDataManager().getHighestPriorityRegionAt(location);
+            if (current != region) {
+                sender.sendMessage(ChatColor.RED + "This region no longer exists.");
+                return;
             }
 
-            region.addCoOwner(coOwner);
-            sender.sendMessage(ChatColor.GREEN + args[0] + " is now a co-owner of this region.");
-        }
-        // "removecoowner"
-        else {
-            if (region.removeCoOwner(coOwner))
-                sender.sendMessage(ChatColor.GREEN + args[0] + " is no longer a co-owner of this region.");
-            else
-                sender.sendMessage(ChatColor.RED + args[0] + " is not a co-owner of this region, so they could not be removed.");
-        }
+            if (!region.isEffectiveOwner((Player) sender)) {
+                sender.sendMessage(ChatColor.RED + "You do not have permission to modify co-owners in this claim.");
+                return;
+            }
+
+            if ("addcoowner".equals(alias)) {
+                if (region.getCoOwners().contains(coOwner)) {
+                    sender.sendMessage(ChatColor.RED + "This person is already a co-owner.");
+                    return;
+                }
+
+                region.addCoOwner(coOwner);
+                sender.sendMessage(ChatColor.GREEN + args[0] + " is now a co-owner of this region.");
+            }
+            // "removecoowner"
+            else {
+                if (region.removeCoOwner(coOwner))
+                    sender.sendMessage(ChatColor.GREEN + args[0] + " is no longer a co-owner of this region.");
+                else
+                    sender.sendMessage(ChatColor.RED + args[0] + " is not a co-owner of this region, so they could not be removed.");
+            }
+        });
 
         return true;
     }, (sender, command, alias, args) -> {
@@ -188,7 +209,7 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
                 if(alias.equalsIgnoreCase("removecoowner")){
                     List<String> values = new ArrayList<>();
                     RegionProtection.getDataManager().getPlayerRegions(((Player) sender), ((Player) sender).getWorld()).forEach(x -> {
-                        values.addAll(x.getCoOwners().stream().map(RegionProtection.getDataManager()::currentUsernameForUuid).collect(Collectors.toList()));
+                        values.addAll(x.getCoOwners().stream().map(RegionProtection.getDataManager()::currentUsernameForUuid).filter(Objects::nonNull).collect(Collectors.toList()));
                     });
                     return filterStartingWith(args[0], values);
                 }
@@ -294,64 +315,73 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
             return true;
         }
 
-        UUID uuid = args.length > 0 && !"co-owner".equals(args[0]) && sender.hasPermission("rp.command.externalclaimlist")
-                ? RegionProtection.getDataManager().uuidForUsername(args[0])
-                : ((Player) sender).getUniqueId();
+        String playerName = args.length > 0 && !"co-owner".equals(args[0]) &&
+                sender.hasPermission("rp.command.externalclaimlist") ? args[0] : sender.getName();
         boolean coOwner = args.length > 0 && "co-owner".equals(args[args.length - 1]);
 
-        // Build the list
-        List<Region> claimlist = RegionProtection.getDataManager()
-                .getRegionsInWorld(((Player) sender).getWorld())
-                .stream()
-                .filter(region -> !region.isAdminOwned() && (coOwner ? region.isCoOwner(uuid) : region.isOwner(uuid)))
-                .collect(Collectors.toList());
+        // Other players may have to be fetched from the Mojang API first
+        RegionProtection.getDataManager().resolveUuid(playerName, uuid -> {
+            if (uuid == null) {
+                sender.sendMessage(ChatColor.RED + "Player " + playerName + " not found.");
+                return;
+            }
 
-        // Format the list and send it to the player
-        if (coOwner) {
-            TextUtils.sendFormatted(
-                    sender,
-                    "&(gold)%0 a co-owner of {&(aqua)%1} $(inflect,noun,1,claim) in this world:",
-                    uuid.equals(((Player) sender).getUniqueId())
-                            ? "You are"
-                            : args[0] + " is",
-                    claimlist.size()
-            );
-        } else {
-            TextUtils.sendFormatted(
-                    sender,
-                    "&(gold)%0 {&(aqua)%1} $(inflect,noun,1,claim) in this world:",
-                    uuid.equals(((Player) sender).getUniqueId())
-                            ? "You have"
-                            : args[0] + " has",
-                    claimlist.size()
-            );
-        }
+            // Build the list
+            World world = ((Player) sender).getWorld();
+            List<Region> claimlist = (coOwner
+                    ? RegionProtection.getDataManager().getCoOwnedRegions(uuid, world)
+                    : RegionProtection.getDataManager().getPlayerRegions(uuid, world))
+                    .stream()
+                    .filter(region -> !region.isAdminOwned())
+                    .collect(Collectors.toList());
+
+            // Format the list and send it to the player
+            if (coOwner) {
+                TextUtils.sendFormatted(
+                        sender,
+                        "&(gold)%0 a co-owner of {&(aqua)%1} $(inflect,noun,1,claim) in this world:",
+                        uuid.equals(((Player) sender).getUniqueId())
+                                ? "You are"
+                                : args[0] + " is",
+                        claimlist.size()
+                );
+            } else {
+                TextUtils.sendFormatted(
+                        sender,
+                        "&(gold)%0 {&(aqua)%1} $(inflect,noun,1,claim) in this world:",
+                        uuid.equals(((Player) sender).getUniqueId())
+                                ? "You have"
+                                : args[0] + " has",
+                        claimlist.size()
+                );
+            }
 
-        claimlist.forEach(region -> {
-            TextUtils.sendFormatted(
-                    sender,
-                    "{&(green)%0}&(gold)%1x, %2z: {&(aqua)%3} claim blocks",
-                    region.getRawName() != null && !region.getRawName().isEmpty() ? region.getRawName() + ": " : "",
-                    (int) (0.5 * (region.getMin().getX() + region.getMax().getX())),
-                    (int) (0.5 * (region.getMin().getZ() + region.getMax().getZ())),
-                    region.area()
-            );
+            claimlist.forEach(region -> {
+                TextUtils.sendFormatted(
+                        sender,
+                        "{&(green)%0}&(gold)%1x, %2z: {&(aqua)%3} claim blocks",
+                        region.getRawName() != null && !region.getRawName().isEmpty() ? region.getRawName() + ": " : "",
+                        (int) (0.5 * (region.getMinX() + region.getMaxX())),
+                        (int) (0.5 * (region.getMinZ() + region.getMaxZ())),
+                        region.area()
+                );
+            });
+
+            if (!coOwner) {
+                // Finally notify the sender of how their claim blocks are being used
+                int remaining = RegionProtection.getDataManager().getClaimBlocks(uuid),
+                        used = claimlist.stream().map(r -> (int) r.area()).reduce(0, Integer::sum);
+                TextUtils.sendFormatted(sender, "&(gold){&(aqua)%0} used + {&(aqua)%1} available = {&(aqua)%2} total " +
+                        "claim blocks", used, remaining, used + remaining);
+            }
         });
 
-        if (!coOwner) {
-            // Finally notify the sender of how their claim blocks are being used
-            int remaining = RegionProtection.getDataManager().getClaimBlocks(uuid),
-                    used = claimlist.stream().map(r -> (int) r.area()).reduce(0, Integer::sum);
-            TextUtils.sendFormatted(sender, "&(gold){&(aqua)%0} used + {&(aqua)%1} available = {&(aqua)%2} total " +
-                    "claim blocks", used, remaining, used + remaining);
-        }
-
         return true;
     }, (sender, command, alias, args) -> {
         switch (args.length) {
             case 1:
                 if (sender.hasPermission("rp.command.externalclaimlist")) {
-                    List<String> suggestions = new ArrayList<>(getOnlinePlayers(args[0]));
+                    List<String> suggestions = new ArrayList<>(getKnownPlayers(args[0]));
                     suggestions.add("co-owner");
                     return suggestions;
                 } else
@@ -545,9 +575,9 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
         }
 
         // Find a safe place to send the player
-        int width  = claim.getMax().getBlockX() - claim.getMin().getBlockX(),
-            length = claim.getMax().getBlockZ() - claim.getMin().getBlockZ();
-        Location ejection = claim.getMin().clone().add(width >> 1, 0, length >> 1); // Move to center of the claim
+        int width  = claim.getMaxX() - claim.getMinX(),
+            length = claim.getMaxZ() - claim.getMinZ();
+        Location ejection = claim.getMin().add(width >> 1, 0, length >> 1); // Move to center of the claim
         // Calculate a dx & dz that tend to world center to avoid potential world border issues
         int dx = ejection.getBlockX() < 0 ? 1 : -1,
             dz = ejection.getBlockZ() < 0 ? 1 : -1;
@@ -745,18 +775,18 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
         else {
             Location origin = new Location(
                     region.getWorld(),
-                    (region.getMin().getX() + region.getMax().getX()) / 2,
-                    (region.getMin().getY() + region.getMax().getY()) / 2,
-                    (region.getMin().getZ() + region.getMax().getZ()) / 2,
+                    (region.getMinX() + region.getMaxX()) / 2.0,
+                    (region.getMinY() + region.getMaxY()) / 2.0,
+                    (region.getMinZ() + region.getMaxZ()) / 2.0,
                     player.getLocation().getYaw(),
                     player.getLocation().getPitch()
             );
-            player.teleport(Utils.findSafeNear(origin, 1, region.getMax().getBlockY()));
+            player.teleport(Utils.findSafeNear(origin, 1, region.getMaxY()));
         }
 
         return true;
-    }, (sender, command, alias, args) -> args.length == 1 ? filterStartingWith(args[0], RegionProtection.getDataManager()
-            .getRegionNames(((Player) sender).getWorld(), false)) : Collections.emptyList());
+    }, (sender, command, alias, args) -> args.length == 1 ? RegionProtection.getDataManager()
+            .getRegionNames(((Player) sender).getWorld(), args[0], false, MAX_SUGGESTIONS) : Collections.emptyList());
 
     /**
      * Allows the owner of a claim to give someone else ownership of one of their claims.
@@ -772,21 +802,15 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
             return true;
         }
 
-        // Get and check the specified new owner
-        UUID newOwner = RegionProtection.getDataManager().uuidForUsername(args[0]);
-        if (newOwner == null) {
-            sender.sendMessage(ChatColor.RED + "Invalid username: " + args[0]);
-            return true;
-        }
-
         // Get and check the region the sender is standing in
-        Region region = RegionProtection.getDataManager().getParentRegionsAt(((Player) sender).getLocation())
-            .stream()
-            .filter(r ->
+        Location location = ((Player) sender).getLocation();
+        Predicate<Region> canTransfer = r ->
                 r.isEffectiveOwner((Player) sender) &&
                 (!r.isCoOwner(((Player) sender).getUniqueId()) || // Do not allow co-owners to transfer claims.
-                sender.isOp()) // Check for op so that staff can still use the command when co-owners
-            )
+                sender.isOp()); // Check for op so that staff can still use the command when co-owners
+        Region region = RegionProtection.getDataManager().getParentRegionsAt(location)
+            .stream()
+            .filter(canTransfer)
             .findAny()
             .orElse(null);
         if (region == null) {
@@ -794,9 +818,27 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
             return true;
         }
 
-        // Transfer ownership
-        if (RegionProtection.getDataManager().tryTransferOwnership((Player) sender, region, newOwner, true))
-            sender.sendMessage(ChatColor.GREEN + "This claim is now owned by " + args[0] + ".");
+        // Get and check the specified new owner, who may have to be fetched from the Mojang API first
+        RegionProtection.getDataManager().resolveUuid(args[0], newOwner -> {
+            if (newOwner == null) {
+                sender.sendMessage(ChatColor.RED + "Invalid username: " + args[0]);
+                return;
+            }
+
+            // The region may have been deleted or transferred while the player was being looked up
+            if (!((Player) sender).isOnline())
+                return;
+
+            if (!RegionProtection.getDataManager().getParentRegionsAt(location).contains(region) ||
+                    !canTransfer.test(region)) {
+                sender.sendMessage(ChatColor.RED + "You can no longer transfer this claim.");
+                return;
+            }
+
+            // Transfer ownership
+            if (RegionProtection.getDataManager().tryTransferOwnership((Player) sender, region, newOwner, true))
+                sender.sendMessage(ChatColor.GREEN + "This claim is now owned by " + args[0] + ".");
+        });
 
         return true;
     }, (sender, command, alias, args) -> args.length == 1 ? getOnlinePlayers(args[0]) : Collections.emptyList());
@@ -870,6 +912,7 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
                 trustList.get(TrustLevel.MANAGEMENT),
                 claim.getCoOwners().stream()
                         .map(RegionProtection.getDataManager()::currentUsernameForUuid)
+                        .filter(Objects::nonNull)
                         .collect(Collectors.joining(", "))
         );
 
@@ -893,19 +936,58 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
             return true;
         }
 
+        // Other players may have to be fetched from the Mojang API first
         DataManager dm = RegionProtection.getDataManager();
-        UUID senderUUID = ((Player) sender).getUniqueId();
-        String senderName = sender.getName();
-        if(args.length >= 2 && sender.isOp()){
-            senderUUID = dm.uuidForUsername(args[1]);
-            if(senderUUID == null){
-                sender.sendMessage(ChatColor.RED + "Player " + args[1] + " not found.");
-                return true;
+        String ownerName = args.length >= 2 && sender.isOp() ? args[1] : sender.getName();
+        dm.resolveUuid(ownerName, ownerUUID -> {
+            if (ownerUUID == null) {
+                sender.sendMessage(ChatColor.RED + "Player " + ownerName + " not found.");
+                return;
+            }
+
+            String currentOwnerName = Objects.requireNonNullElse(dm.currentUsernameForUuid(ownerUUID), ownerName);
+            if ("public".equals(args[0]))
+                sendTrustedRegions((Player) sender, args, ownerUUID, currentOwnerName, null);
+            else {
+                dm.resolveUuid(args[0], trustedUUID -> {
+                    if (trustedUUID == null)
+                        sender.sendMessage(ChatColor.RED + "Player " + args[0] + " not found.");
+                    else
+                        sendTrustedRegions((Player) sender, args, ownerUUID, currentOwnerName, trustedUUID);
+                });
             }
-            senderName = dm.currentUsernameForUuid(senderUUID);
+        });
+
+        return true;
+    }, (sender, command, alias, args) -> {
+        switch(args.length){
+            case 1:
+                return getKnownPlayers(args[0]);
+            case 2:
+                return sender.isOp() ? getKnownPlayers(args[1]) : Collections.emptyList();
+            default:
+                return Collections.emptyList();
         }
+    });
 
-        List<Region> regions = dm.getPlayerRegions(senderUUID, ((Player) sender).getWorld()).stream().filter(region -> ((TrustMeta) region.getAndCreateFlagMeta(RegionFlag.TRUST)).getAllTrustedPlayerNames().contains(args[0])).collect(Collectors.toList());
+    // Lists the regions of the given owner the given player is trusted in, or those with public trust if the trusted
+    // player is null
+    private static void sendTrustedRegions(Player sender, String[] args, UUID ownerUUID, String ownerName,
+                                           UUID trustedUUID) {
+        // Public trust has no index entry, otherwise only the regions the player is trusted in need to be checked
+        DataManager dm = RegionProtection.getDataManager();
+        Map<Region, TrustLevel> trustedRegions;
+        if (trustedUUID == null) {
+            trustedRegions = new HashMap<>();
+            dm.getPlayerRegions(ownerUUID, sender.getWorld()).stream().filter(region ->
+                    ((TrustMeta) region.getFlagMeta(RegionFlag.TRUST)).getPublicTrustLevel() != TrustLevel.NONE)
+                    .forEach(region -> trustedRegions.put(region, null));
+        } else {
+            trustedRegions = dm.getTrustedRegions(trustedUUID, sender.getWorld());
+            trustedRegions.keySet().removeIf(region -> !region.getOwner().equals(ownerUUID));
+        }
+
+        List<Region> regions = new ArrayList<>(trustedRegions.keySet());
         StringBuilder formattedRegions = new StringBuilder();
         regions.stream().sorted(Comparator.comparing(x -> x.getRawName() == null ? "" : x.getRawName())).forEach(region -> {
             TrustMeta tm = region.getAndCreateFlagMeta(RegionFlag.TRUST);
@@ -920,36 +1002,26 @@ public class SimpleCommand extends TabCompleterBase implements CommandExecutor {
                     trustList.get(TrustLevel.MANAGEMENT) +
                     "\n{&(light_purple)Co-Owners:} " + region.getCoOwners().stream()
                     .map(RegionProtection.getDataManager()::currentUsernameForUuid)
+                    .filter(Objects::nonNull)
                     .collect(Collectors.joining(", "))).replaceAll(",", "");
 
-            TrustLevel tl = tm.getTrustLevelByName(args[0]);
+            TrustLevel tl = trustedRegions.get(region);
             String tlName = tl != null ? tl.name().toLowerCase().replaceAll("_", " ") : null;
             formattedRegions.append("\n{&(green)")
                     .append(region.getRawName() != null && !region.getRawName().isEmpty() ? region.getRawName() : "") // Region Name
-                    .append("}&(gold)(").append((int) (0.5 * (region.getMin().getX() + region.getMax().getX()))).append("x, ") // X coords
-                    .append((int) (0.5 * (region.getMin().getZ() + region.getMax().getZ()))).append("z) ") // Y coords
+                    .append("}&(gold)(").append((int) (0.5 * (region.getMinX() + region.getMaxX()))).append("x, ") // X coords
+                    .append((int) (0.5 * (region.getMinZ() + region.getMaxZ()))).append("z) ") // Y coords
                     .append("{&(aqua)").append(tlName != null && !tlName.isEmpty() ? tlName.substring(0, 1).toUpperCase() + tlName.substring(1) + " Trust" : "").append("} ") // Trust Level
                     .append("${hover,").append(trustListInfo).append(",&(gray)[Trustlist]} "); // Hover Trustlist
 
         });
         TextUtils.sendFormatted(sender, "&(gold)%0 trusted {&(green)%1} in {&(aqua)%2} ${inflect,noun,2,claim}:%3",
-                args.length < 2 && sender.isOp() ? "You have" : senderName + " has",
+                args.length < 2 && sender.isOp() ? "You have" : ownerName + " has",
                 args[0],
                 regions.size(),
                 formattedRegions.toString()
                 );
-
-        return true;
-    }, (sender, command, alias, args) -> {
-        switch(args.length){
-            case 1:
-                return getOnlinePlayers(args[0]);
-            case 2:
-                return sender.isOp() ? getOnlinePlayers(args[1]) : Collections.emptyList();
-            default:
-                return Collections.emptyList();
-        }
-    });
+    }
 
     private final CommandExecutor executor;
     private final TabCompleter tabCompleter;
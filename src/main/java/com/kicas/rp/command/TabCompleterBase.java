@@ -1,5 +1,6 @@
 package com.kicas.rp.command;
 
+import com.kicas.rp.RegionProtection;
 import org.bukkit.Bukkit;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
@@ -13,6 +14,9 @@ import java.util.stream.Stream;
  * Allows for some static utility methods to be available to tab completer.
  */
 public abstract class TabCompleterBase implements TabCompleter {
+    // The maximum number of suggestions taken from the name indices
+    public static final int MAX_SUGGESTIONS = 64;
+
     /**
      * Returns a list of the currently online players whose name starts with the given partial name.
      *
@@ -23,6 +27,17 @@ public abstract class TabCompleterBase implements TabCompleter {
         return filterStartingWith(partialName, Bukkit.getOnlinePlayers().stream().map(Player::getName));
     }
 
+    /**
+     * Returns a list of the names of players who joined this server before and whose name starts with the given
+     * partial name, ignoring case. At most MAX_SUGGESTIONS names are returned.
+     *
+     * @param partialName the partial name.
+     * @return a list of the known players whose name starts with the given partial name.
+     */
+    public static List<String> getKnownPlayers(String partialName) {
+        return RegionProtection.getDataManager().getKnownPlayerNames(partialName, MAX_SUGGESTIONS);
+    }
+
     /**
      * Joins all the arguments after the argument at the given index with the given delimiter.
      *
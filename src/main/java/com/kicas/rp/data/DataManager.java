@@ -1,8 +1,7 @@
 package com.kicas.rp.data;
 
-import com.google.gson.*;
-
 import com.kicas.rp.RegionProtection;
+import com.kicas.rp.data.flagdata.TrustLevel;
 import com.kicas.rp.data.flagdata.TrustMeta;
 import com.kicas.rp.event.ClaimCreationEvent;
 import com.kicas.rp.event.ClaimResizeEvent;
@@ -15,13 +14,22 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.io.*;
-import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 
 /**
  * Manages the storing, querying, serialization, and deserialization of all plugin data except the config.
@@ -29,108 +37,90 @@ import java.util.stream.Stream;
 public class DataManager implements Listener {
     // Plugin data directory
     private final File rootDir;
-    // Key: worldUid, value: data about the regions and flags in a world
+    // Key: worldUid, value: data about the regions and flags in a loaded world
     private final Map<UUID, WorldData> worlds;
-    // Used to create player sessions
-    private final Map<UUID, PersistentPlayerData> playerData;
+    // Used to create player sessions, only the data of recently active players is kept in memory
+    private final PlayerDataStore playerData;
     private final Map<UUID, PlayerSession> playerSessionCache;
-    // Cache data received from the Mojang API
-    private final Map<String, UUID> ignUuidLookupCache;
+    // Key: session created before login, value: the time it was created, until the player joins or is refused
+    private final Map<PlayerSession, Long> pendingSessions;
+    // Key: online player, value: the session of that connection, only accessed on the main thread
+    private final Map<Player, PlayerSession> joinedSessions;
+    // The UUIDs of the players who are online, readable off the main thread
+    private final Set<UUID> onlinePlayers;
+    // Every known UUID-username pair, of which the name resolver holds the recently used ones in memory
+    private final NameStore nameStore;
+    // Resolves usernames and UUIDs of players who are not online
+    private final NameResolver nameResolver;
+    // Set if regions.dat could not be split into per-world files and moved aside, in which case no world data is read
+    // or written
+    private volatile boolean legacySplitFailed;
+    // Cleared while the last seen times which were never recorded are filled in after startup
+    private volatile boolean lastSeenKnown;
 
     public static int DEFAULT_CLAIM_BOTTOM_Y = 32;
 
     // These values are used to keep consistency in the serialized data
-    public static final byte REGION_FORMAT_VERSION = 5;
-    public static final byte PLAYER_DATA_FORMAT_VERSION = 1;
+    public static final byte REGION_FORMAT_VERSION = 9;
+    public static final byte PLAYER_DATA_FORMAT_VERSION = 3;
+    public static final byte NAME_CACHE_FORMAT_VERSION = 1;
     public static final String GLOBAL_FLAG_NAME = "__global__";
 
-    private static final String MOJANG_API_BASE = "https://api.mojang.com";
     // The larger the number, the more efficient memory usage is but the less efficient lookup is
     private static final int LOOKUP_TABLE_SCALE = 7;
-    private static final JsonParser JSON_PARSER = new JsonParser();
+    // Sessions of players who did not join within this time after logging in are dropped on the next save
+    private static final long PENDING_SESSION_TIMEOUT_MILLIS = 60L * 1000L;
 
     public DataManager(File rootDir) {
         this.rootDir = rootDir;
-        this.worlds = new HashMap<>();
-        this.playerData = new HashMap<>();
-        this.playerSessionCache = new HashMap<>();
-        this.ignUuidLookupCache = new HashMap<>();
+        this.worlds = new ConcurrentHashMap<>();
+        this.playerData = new PlayerDataStore(new File(rootDir.getAbsolutePath() + File.separator +
+                "playerdata.dat"));
+        this.playerSessionCache = new ConcurrentHashMap<>();
+        this.pendingSessions = new ConcurrentHashMap<>();
+        this.joinedSessions = new IdentityHashMap<>();
+        this.onlinePlayers = ConcurrentHashMap.newKeySet();
+        this.nameStore = new NameStore(getNameCacheFile());
+        this.nameResolver = new NameResolver(nameStore, Arrays.asList(new OfflinePlayerProfileSource(),
+                new MojangProfileSource()));
+        this.legacySplitFailed = false;
+        this.lastSeenKnown = true;
+    }
+
+    /**
+     * @return the resolver used to look up the usernames and UUIDs of players who are not online.
+     */
+    public NameResolver getNameResolver() {
+        return nameResolver;
     }
 
     /**
-     * Fetches the UUID for the given Minecraft username, or returns null if no username could be found. This method
-     * will check for an offline player instance with the given username, and will use the UUID attached to that offline
-     * player if they have played on this server before. If no such offline player could be found, then this method
-     * queries the Mojang API for the UUID associated with the given username.
+     * Returns the UUID for the given Minecraft username if it is known locally, or null otherwise. This method checks
+     * the online players and the name cache, which includes every player who has played on this server before. It
+     * only reads the name cache from disk if the player is not held in memory, and never queries Mojang, so players who
+     * are not known locally should be looked up with resolveUuid(String, Consumer) instead.
      *
      * @param username the username.
-     * @return the UUID associated with the given username, or null if no such UUID could be found.
+     * @return the UUID associated with the given username, or null if no such UUID is known locally.
      */
     public UUID uuidForUsername(String username) {
         // Check online players
-        Player player = Bukkit.getPlayer(username);
+        Player player = Bukkit.getPlayerExact(username);
         if (player != null)
             return player.getUniqueId();
 
-        // Check to see if they've joined before
-        OfflinePlayer op = Stream.of(Bukkit.getOfflinePlayers()).filter(p -> username.equals(p.getName())).findAny()
-                .orElse(null);
-        if (op != null)
-            return op.getUniqueId();
-
-        // Check cache
-        if (ignUuidLookupCache.containsKey(username))
-            return ignUuidLookupCache.get(username);
-
-        // They have not joined before therefore we'll use the Mojang API
-        try {
-            // Get the URL and open the stream
-            URL url = new URL(MOJANG_API_BASE + "/users/profiles/minecraft/" + username);
-            InputStream in = url.openStream();
-
-            // Read the data
-            StringBuilder responseBuffer = new StringBuilder();
-            int by;
-            while ((by = in.read()) > -1)
-                responseBuffer.appendCodePoint(by);
-            in.close();
-
-            // Invalid username check
-            if (responseBuffer.length() == 0)
-                return null;
-
-            // Parse the JSON
-            JsonElement response = JSON_PARSER.parse(responseBuffer.toString());
-
-            // The provided JSON should be an object
-            if (!response.isJsonObject())
-                return null;
-
-            // Format the UUID with -'s and parse it
-            String unformatted = ((JsonObject) response).get("id").getAsString();
-            UUID uuid = UUID.fromString(String.format("%s-%s-%s-%s-%s", unformatted.substring(0, 8),
-                    unformatted.substring(8, 12), unformatted.substring(12, 16), unformatted.substring(16, 20),
-                    unformatted.substring(20)));
-
-            // Add the lookup to the cache
-            ignUuidLookupCache.put(username, uuid);
-
-            return uuid;
-        } catch (IOException ex) {
-            // Some error occurred, return null
-            return null;
-        }
+        return nameResolver.getKnownUuid(username);
     }
 
     /**
-     * Fetches the current username associated with the given UUID. If the given UUID is not associated with an account,
-     * then null is returned. If a player with the given UUID has joined this server before, then the name in the
-     * offline player class associated with the given UUID is returned. If the a player with the given UUID has not
-     * joined the server before, then the Mojang API is used to lookup the current name for the given UUID.
+     * Fetches the current username associated with the given UUID if it is known locally. This method checks the
+     * online players and the name cache, which includes every player who has played on this server before. It only
+     * reads the name cache from disk if the player is not held in memory, and never waits for Mojang: if the username
+     * is not known locally, then null is returned and the username is looked up in the background so that it is
+     * available to later calls.
      *
      * @param uuid the uuid.
-     * @return the username associated with the given UUID if one could be found, or null if no associated username
-     * could be found.
+     * @return the username associated with the given UUID, or null if no such username is known locally.
      */
     public String currentUsernameForUuid(UUID uuid) {
         // Check online players
@@ -138,109 +128,259 @@ public class DataManager implements Listener {
         if (player != null)
             return player.getName();
 
-        // Check to see if they've joined before
-        OfflinePlayer op = Stream.of(Bukkit.getOfflinePlayers()).filter(p -> uuid.equals(p.getUniqueId())).findAny()
-                .orElse(null);
-        if (op != null)
-            return op.getName();
+        String known = nameResolver.getKnownUsername(uuid);
+        if (known != null)
+            return known;
+
+        CompletableFuture<String> username = nameResolver.resolveUsername(uuid);
+        return username.isDone() ? username.join() : null;
+    }
+
+    /**
+     * Resolves the UUID for the given Minecraft username and passes it to the given callback, which receives null if
+     * no such UUID could be found. If the username is known locally, then the callback is run immediately, otherwise
+     * the username is looked up off the main thread and the callback is run on the main thread once the lookup
+     * completes.
+     *
+     * @param username the username.
+     * @param callback the callback receiving the UUID.
+     */
+    public void resolveUuid(String username, Consumer<UUID> callback) {
+        UUID uuid = uuidForUsername(username);
+        if (uuid != null)
+            callback.accept(uuid);
+        else
+            runSync(nameResolver.resolveUuid(username), callback);
+    }
+
+    /**
+     * Resolves the current username associated with the given UUID and passes it to the given callback, which receives
+     * null if no such username could be found. If the UUID is known locally, then the callback is run immediately,
+     * otherwise the UUID is looked up off the main thread and the callback is run on the main thread once the lookup
+     * completes.
+     *
+     * @param uuid     the UUID.
+     * @param callback the callback receiving the username.
+     */
+    public void resolveUsername(UUID uuid, Consumer<String> callback) {
+        Player player = Bukkit.getPlayer(uuid);
+        if (player != null)
+            callback.accept(player.getName());
+        else
+            runSync(nameResolver.resolveUsername(uuid), callback);
+    }
+
+    // Passes the result of the given future to the callback on the main thread
+    private static <T> void runSync(CompletableFuture<T> future, Consumer<T> callback) {
+        if (future.isDone())
+            callback.accept(future.join());
+        else {
+            future.thenAccept(result -> Bukkit.getScheduler().runTask(RegionProtection.getInstance(),
+                    () -> callback.accept(result)));
+        }
+    }
+
+    /**
+     * Returns at most the given number of names of players who joined this server before which start with the given
+     * prefix, ignoring case.
+     *
+     * @param prefix the prefix to match.
+     * @param limit  the maximum number of names to return.
+     * @return a list of the matching player names in alphabetical order.
+     */
+    public List<String> getKnownPlayerNames(String prefix, int limit) {
+        return nameResolver.getUsernamesStartingWith(prefix, limit);
+    }
 
-        // Check cache
-        for (Map.Entry<String, UUID> entry : ignUuidLookupCache.entrySet()) {
-            if (entry.getValue().equals(uuid))
-                return entry.getKey();
+    /**
+     * Creates the session of a player who is about to join, so that it does not need to be created on the main thread
+     * once the player starts interacting with regions. A new session is always created, since the session of a previous
+     * connection of the same player may still be removed once that connection quits.
+     *
+     * @param event the event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED)
+            return;
+
+        nameResolver.remember(event.getUniqueId(), event.getName());
+        PlayerSession ps = new PlayerSession(playerData.get(event.getUniqueId()));
+        playerSessionCache.put(event.getUniqueId(), ps);
+        pendingSessions.put(ps, System.currentTimeMillis());
+
+        // Only the index is read here, the trust tables are compiled on the main thread where trust is modified
+        List<Region> regions = getRelatedRegions(event.getUniqueId());
+        if (!regions.isEmpty()) {
+            Bukkit.getScheduler().runTask(RegionProtection.getInstance(), () -> {
+                if (playerSessionCache.get(ps.getUuid()) == ps)
+                    warmTrustCache(ps, regions);
+            });
         }
+    }
 
-        // They have not joined before therefore we'll use the Mojang API
-        try {
-            // Get the URL and open the stream
-            URL url = new URL(MOJANG_API_BASE + "/user/profiles/" + uuid.toString().replaceAll("-", "") + "/names");
-            InputStream in = url.openStream();
-
-            // Read the data
-            StringBuilder responseBuffer = new StringBuilder();
-            int by;
-            while ((by = in.read()) > -1)
-                responseBuffer.appendCodePoint(by);
-            in.close();
-
-            // Invalid UUID check
-            if (responseBuffer.length() == 0)
-                return null;
+    /**
+     * Drops the session created before login if the player ends up not being allowed to join.
+     *
+     * @param event the event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        // The session belongs to an earlier connection if the player is still online
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED && !onlinePlayers.contains(event.getPlayer()
+                .getUniqueId())) {
+            PlayerSession ps = playerSessionCache.remove(event.getPlayer().getUniqueId());
+            if (ps != null)
+                pendingSessions.remove(ps);
+        }
+    }
 
-            // Parse the JSON
-            JsonElement response = JSON_PARSER.parse(responseBuffer.toString());
+    // Returns the claims the player with the given UUID owns, co-owns or is trusted in, which can be done from any thread
+    private List<Region> getRelatedRegions(UUID uuid) {
+        Set<Region> regions = new LinkedHashSet<>();
+        worlds.values().forEach(worldData -> {
+            RegionIndex index = worldData.getRegionIndex();
+            if (index == null)
+                return;
+
+            regions.addAll(index.getOwnedRegions(uuid));
+            regions.addAll(index.getCoOwnedRegions(uuid));
+            regions.addAll(index.getTrustedRegions(uuid).keySet());
+        });
 
-            // The provided JSON should be an array
-            if (!response.isJsonArray())
-                return null;
+        return new ArrayList<>(regions);
+    }
 
-            // Find the name with the largest change date, IE the current username
-            String mostRecentName = null;
-            long maxChangedToDate = 0L;
-            for (JsonElement nameChange : (JsonArray) response) {
-                // Each element should be an object
-                if (nameChange.isJsonObject()) {
-                    JsonObject nameChangeObject = (JsonObject) nameChange;
-
-                    // The first name doesn't have a date assigned, so we substitute in the value 1 in that case
-                    long date = nameChangeObject.has("changedToAt") ? nameChangeObject.get("changedToAt").getAsLong() : 1L;
-
-                    if (date > maxChangedToDate) {
-                        mostRecentName = nameChangeObject.get("name").getAsString();
-                        maxChangedToDate = date;
-                    }
-                }
+    // Compiles the trust tables of the given claims and caches the session's player's trust in them, which must be done
+    // on the main thread
+    private void warmTrustCache(PlayerSession ps, List<Region> regions) {
+        UUID uuid = ps.getUuid();
+        regions.forEach(region -> {
+            // Decisions in admin-owned regions depend on the player's op status, so they are never cached
+            if (region.isAdminOwned())
+                return;
+
+            long epoch = region.getTrustEpoch();
+            TrustTable table = region.getTrustTable(epoch);
+            for (int i = 1; i < TrustLevel.VALUES.length; ++i) {
+                TrustLevel trust = TrustLevel.VALUES[i];
+                ps.cacheTrustDecision(region, trust, epoch, table.hasTrust(uuid, trust));
             }
+        });
+    }
 
-            // This should never happen
-            if (mostRecentName == null)
-                return null;
+    /**
+     * Records the name of the joining player and keeps track of the session of their connection.
+     *
+     * @param event the event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        nameResolver.remember(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        playerData.get(event.getPlayer().getUniqueId()).setLastSeen(System.currentTimeMillis());
+        onlinePlayers.add(event.getPlayer().getUniqueId());
+        PlayerSession ps = getPlayerSession(event.getPlayer());
+        joinedSessions.put(event.getPlayer(), ps);
+        pendingSessions.remove(ps);
+    }
 
-            // Add the lookup to the cache
-            ignUuidLookupCache.put(mostRecentName, uuid);
+    /**
+     * Returns the time at which the player with the given UUID was last seen on this server, which is the current time
+     * if they are online. The last seen times of all players are kept in memory, so this never reads from disk.
+     *
+     * @param uuid the player's UUID.
+     * @return the time in milliseconds at which the player was last seen, or 0 if they never played on this server.
+     */
+    public long getLastSeen(UUID uuid) {
+        if (onlinePlayers.contains(uuid))
+            return System.currentTimeMillis();
 
-            return mostRecentName;
-        } catch (IOException ex) {
-            // Some error occurred, return null
-            return null;
-        }
+        return Math.max(0L, playerData.getLastSeen(uuid));
     }
 
     /**
-     * Deletes the cached player session for the given player.
+     * Returns whether or not the last seen times of all players are known. This is false while the times which were
+     * recorded before this plugin kept track of them are still being filled in after startup, during which no claim
+     * should be considered expired.
+     *
+     * @return true if the last seen times of all players are known, false otherwise.
+     */
+    public boolean isLastSeenKnown() {
+        return lastSeenKnown;
+    }
+
+    /**
+     * Deletes the cached player session for the given player. If the player already reconnected, then the session of
+     * the new connection is kept.
      *
      * @param event the event.
      */
     @EventHandler(priority = EventPriority.HIGHEST)
-    public synchronized void onPlayerQuit(PlayerQuitEvent event) {
-        if (playerSessionCache.containsKey(event.getPlayer().getUniqueId())) {
-            playerData.get(event.getPlayer().getUniqueId()).setClaimBlocks(playerSessionCache.remove(event.getPlayer()
-                    .getUniqueId()).getClaimBlocks());
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        nameResolver.remember(uuid, event.getPlayer().getName());
+        playerData.get(uuid).setLastSeen(System.currentTimeMillis());
+
+        PlayerSession ps = joinedSessions.remove(event.getPlayer());
+        Player current = Bukkit.getPlayer(uuid);
+        if (current == null || current == event.getPlayer())
+            onlinePlayers.remove(uuid);
+
+        // The claim blocks are held by the persistent data, so the session can just be dropped
+        if (ps != null)
+            playerSessionCache.remove(uuid, ps);
+    }
+
+    /**
+     * Loads the region data of a world when it is loaded after this plugin was enabled. If the data of the world was
+     * accessed before and could not be read then, reading it is attempted again.
+     *
+     * @param event the event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        WorldData worldData = worlds.get(event.getWorld().getUID());
+        if (worldData == null)
+            getWorldData(event.getWorld());
+        else if (!worldData.isLoaded()) {
+            WorldData reloaded = readWorld(event.getWorld());
+            if (reloaded.isLoaded())
+                worlds.replace(event.getWorld().getUID(), worldData, reloaded);
         }
     }
 
     /**
-     * Returns the world data for the given world or creates and stores a new world data object if one is not already
-     * present.
+     * Saves the region data of a world when it is unloaded and releases it from memory.
+     *
+     * @param event the event.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public synchronized void onWorldUnload(WorldUnloadEvent event) {
+        WorldData worldData = worlds.remove(event.getWorld().getUID());
+        if (worldData != null)
+            saveWorld(worldData);
+    }
+
+    /**
+     * Returns the world data for the given world, reading it from the world's region file if it is not present yet.
      *
      * @param world the world.
      * @return the world data for the given world.
      */
     public WorldData getWorldData(World world) {
         WorldData worldData = worlds.get(world.getUID());
+        if (worldData != null)
+            return worldData;
 
-        if (worldData == null) {
-            worldData = new WorldData(world.getUID());
-            worldData.generateLookupTable(LOOKUP_TABLE_SCALE);
-            worlds.put(world.getUID(), worldData);
-        }
-
-        return worldData;
+        // Reading the same world twice at once is harmless, only one of the results is kept
+        worldData = readWorld(world);
+        WorldData present = worlds.putIfAbsent(world.getUID(), worldData);
+        return present == null ? worldData : present;
     }
 
     /**
-     * Returns the world data for the given location's world or creates and stores a new world data object if one is not
-     * already present. Calling this method is equivalent to calling <code>getWorldData(location.getWorld())</code>
+     * Returns the world data for the given location's world, reading it from the world's region file if it is not
+     * present yet. Calling this method is equivalent to calling <code>getWorldData(location.getWorld())</code>
      *
      * @param location the location.
      * @return the world data for the given location's world.
@@ -258,7 +398,8 @@ public class DataManager implements Listener {
      */
     public synchronized void associate(Region parent, Region child) {
         // The child region no longer needs to be in the world region list since it is now managed by the parent
-        getWorldData(child.getWorld()).getRegions().remove(child);
+        WorldData worldData = getWorldData(child.getWorld());
+        worldData.getRegions().remove(child);
 
         // Modify priority
         if (child.getPriority() < parent.getPriority())
@@ -271,6 +412,9 @@ public class DataManager implements Listener {
         child.setOwner(parent.getOwner());
         child.setParent(parent);
         parent.getChildren().add(child);
+
+        // The child is now only indexed by name
+        worldData.getRegionIndex().reindex(child);
     }
 
     /**
@@ -304,20 +448,23 @@ public class DataManager implements Listener {
      * strings.
      */
     public List<String> getRegionNames(World world, boolean includeGlobalName) {
-        List<String> names = new ArrayList<>();
-
-        if (includeGlobalName)
-            names.add(GLOBAL_FLAG_NAME);
-
-        // Add the filtered names
-        getRegionsInWorld(world).stream().filter(region -> region.getRawName() != null &&
-                !region.getRawName().isEmpty()).forEach(region -> {
-            names.add(region.getRawName());
-            // Add the children's names
-            region.getChildren().stream().map(Region::getRawName).forEach(names::add);
-        });
+        return getRegionNames(world, "", includeGlobalName, Integer.MAX_VALUE);
+    }
 
-        return names;
+    /**
+     * Returns at most the given number of region names in the given world starting with the given prefix, ignoring
+     * case. Names of child regions are included, and the names of admin-owned regions come first. If this method is
+     * called with include global name set to true and the global name matches the prefix, then the resulting list will
+     * start with the name denoting the global flags for a world.
+     *
+     * @param world             the world.
+     * @param prefix            the prefix to match.
+     * @param includeGlobalName whether or not the include the name for the global flags of a world.
+     * @param limit             the maximum number of names to return.
+     * @return a list of the matching region names.
+     */
+    public List<String> getRegionNames(World world, String prefix, boolean includeGlobalName, int limit) {
+        return getRegionNames(world, prefix, includeGlobalName, false, limit);
     }
 
     /**
@@ -331,18 +478,33 @@ public class DataManager implements Listener {
      * strings.
      */
     public List<String> getAdminRegionNames(World world, boolean includeGlobalName) {
-        List<String> names = new ArrayList<>();
+        return getAdminRegionNames(world, "", includeGlobalName, Integer.MAX_VALUE);
+    }
 
-        if (includeGlobalName)
-            names.add(GLOBAL_FLAG_NAME);
+    /**
+     * Returns at most the given number of admin region names in the given world starting with the given prefix,
+     * ignoring case. Names of child regions are included. If this method is called with include global name set to
+     * true and the global name matches the prefix, then the resulting list will start with the name denoting the
+     * global flags for a world.
+     *
+     * @param world             the world.
+     * @param prefix            the prefix to match.
+     * @param includeGlobalName whether or not the include the name for the global flags of a world.
+     * @param limit             the maximum number of names to return.
+     * @return a list of the matching admin region names.
+     */
+    public List<String> getAdminRegionNames(World world, String prefix, boolean includeGlobalName, int limit) {
+        return getRegionNames(world, prefix, includeGlobalName, true, limit);
+    }
 
-        // Add the filtered names
-        getRegionsInWorld(world).stream().filter(region -> region.getRawName() != null &&
-                !region.getRawName().isEmpty() && region.isAdminOwned()).forEach(region -> {
-            names.add(region.getRawName());
-            // Add the children's names
-            region.getChildren().stream().map(Region::getRawName).forEach(names::add);
-        });
+    private List<String> getRegionNames(World world, String prefix, boolean includeGlobalName, boolean adminOnly,
+                                        int limit) {
+        boolean global = includeGlobalName && limit > 0 &&
+                GLOBAL_FLAG_NAME.startsWith(prefix.toLowerCase(Locale.ROOT));
+        List<String> names = getWorldData(world).getRegionIndex().getRegionNames(prefix, adminOnly,
+                global ? limit - 1 : limit);
+        if (global)
+            names.add(0, GLOBAL_FLAG_NAME);
 
         return names;
     }
@@ -358,10 +520,8 @@ public class DataManager implements Listener {
         List<String> names = new ArrayList<>();
 
         // Add the filtered names
-        getRegionsInWorld(world).stream().filter(region -> region.getRawName() != null &&
-                !region.getRawName().isEmpty() && region.owner.equals(player.getUniqueId())).forEach(region -> {
-            names.add(region.getRawName());
-        });
+        getPlayerRegions(player, world).stream().filter(region -> region.getRawName() != null &&
+                !region.getRawName().isEmpty()).forEach(region -> names.add(region.getRawName()));
 
         return names;
     }
@@ -374,9 +534,7 @@ public class DataManager implements Listener {
      * @return a list of regions owned by the player
      */
     public List<Region> getPlayerRegions(Player player, World world) {
-        List<Region> names = new ArrayList<>();
-        getRegionsInWorld(world).stream().filter(region -> region.owner.equals(player.getUniqueId())).forEach(names::add);
-        return names;
+        return getPlayerRegions(player.getUniqueId(), world);
     }
     /**
      * Return a list of all regions owned by the specified player in specified world.
@@ -386,19 +544,42 @@ public class DataManager implements Listener {
      * @return a list of regions owned by the player
      */
     public List<Region> getPlayerRegions(UUID uuid, World world) {
-        List<Region> names = new ArrayList<>();
-        getRegionsInWorld(world).stream().filter(region -> region.owner.equals(uuid)).forEach(names::add);
-        return names;
+        return getWorldData(world).getRegionIndex().getOwnedRegions(uuid);
     }
 
-    public Region getPlayerRegionByName(Player player, World world, String name){
-        for (Region region : getPlayerRegions(player, world)) {
-            if(Objects.equals(region.getRawName(), name)){
-                return region;
-            }
-        }
-        return null;
+    /**
+     * Return a list of all regions co-owned by the specified player in specified world.
+     *
+     * @param uuid  The Player's UUID
+     * @param world the world.
+     * @return a list of regions co-owned by the player
+     */
+    public List<Region> getCoOwnedRegions(UUID uuid, World world) {
+        return getWorldData(world).getRegionIndex().getCoOwnedRegions(uuid);
+    }
+
+    /**
+     * Return the regions in the specified world the specified player is explicitly trusted in, along with their trust
+     * level in each region.
+     *
+     * @param uuid  The Player's UUID
+     * @param world the world.
+     * @return a map of the regions the player is trusted in to the player's trust level in that region
+     */
+    public Map<Region, TrustLevel> getTrustedRegions(UUID uuid, World world) {
+        return getWorldData(world).getRegionIndex().getTrustedRegions(uuid);
+    }
 
+    /**
+     * Gets a parent region owned by the given player by the given name and returns it.
+     *
+     * @param player the owner of the region.
+     * @param world  the world that contains the region.
+     * @param name   the name of the region.
+     * @return the region with the given name owned by the given player, or null if it could not be found.
+     */
+    public Region getPlayerRegionByName(Player player, World world, String name) {
+        return getWorldData(world).getRegionIndex().getOwnedRegionByName(player.getUniqueId(), name);
     }
 
     /**
@@ -408,18 +589,8 @@ public class DataManager implements Listener {
      * @param name  the name of the region.
      * @return the region with the given name in the given world, or null if it could not be found.
      */
-    public synchronized Region getRegionByName(World world, String name) {
-        for (Region region : getRegionsInWorld(world)) {
-            if (Objects.equals(region.getRawName(), name))
-                return region;
-
-            for (Region child : region.getChildren()) {
-                if (Objects.equals(child.getRawName(), name))
-                    return child;
-            }
-        }
-
-        return null;
+    public Region getRegionByName(World world, String name) {
+        return getWorldData(world).getRegionIndex().getRegionByName(name);
     }
 
     /**
@@ -533,6 +704,10 @@ public class DataManager implements Listener {
                 flags.setFlag(flag, meta);
         });
 
+        // With a single region, the merged trust and ownership are those of the region if it defines its own trust
+        if (regions.size() == 1 && !regions.get(0).hasParent() && regions.get(0).hasFlag(RegionFlag.TRUST))
+            flags.setTrustSource(regions.get(0));
+
         return flags;
     }
 
@@ -625,8 +800,13 @@ public class DataManager implements Listener {
                 return null;
         }
 
-        // Modify claim blocks
-        ps.subtractClaimBlocks((int) area);
+        // Modify claim blocks, which could have been spent elsewhere in the meantime
+        if (!ps.trySpendClaimBlocks(area)) {
+            notifyDelegate(creator, "&(red)You need {&(gold)%0} more claim blocks to create this claim.",
+                    area - ps.getClaimBlocks());
+            return null;
+        }
+
         // Register the claim
         getWorldData(creator.getWorld()).addRegion(region);
 
@@ -804,27 +984,12 @@ public class DataManager implements Listener {
         // Perform the size modification
         switch (direction) {
             case UP:
-                region.getMax().add(0, amount, 0);
-                break;
-
             case DOWN:
-                region.getMin().subtract(0, amount, 0);
-                break;
-
             case NORTH:
-                region.getMin().subtract(0, 0, amount);
-                break;
-
             case SOUTH:
-                region.getMax().add(0, 0, amount);
-                break;
-
             case EAST:
-                region.getMax().add(amount, 0, 0);
-                break;
-
             case WEST:
-                region.getMin().subtract(amount, 0, 0);
+                region.expand(direction, amount);
                 break;
 
             default:
@@ -895,9 +1060,9 @@ public class DataManager implements Listener {
     public synchronized Region tryCreateSubdivision(Player delegate, Region claim, Location vertex1, Location vertex2) {
         // Convert the given vertices into a minimum and maximum vertex
         Location min = new Location(vertex1.getWorld(), Math.min(vertex1.getX(), vertex2.getX()),
-                claim.getMin().getBlockY(), Math.min(vertex1.getZ(), vertex2.getZ()));
+                claim.getMinY(), Math.min(vertex1.getZ(), vertex2.getZ()));
         Location max = new Location(vertex1.getWorld(), Math.max(vertex1.getX(), vertex2.getX()),
-                claim.getMax().getY(), Math.max(vertex1.getZ(), vertex2.getZ()));
+                claim.getMaxY(), Math.max(vertex1.getZ(), vertex2.getZ()));
 
         // Create the region
         Region subdivision = new Region(null, claim.getPriority() + 1, claim.getOwner(), min, max, claim, claim.getCoOwners());
@@ -1034,6 +1199,22 @@ public class DataManager implements Listener {
         }
     }
 
+    /**
+     * Deletes the claims in the given world for which the time since the last login of the owner, a co-owner, or a
+     * trustee with at least container trust is greater than the given time in milliseconds. Claims are kept in order of
+     * the last activity of their members, so only the claims which may have expired are checked.
+     *
+     * @param world          the world.
+     * @param expirationTime the expiration time in milliseconds.
+     */
+    public synchronized void tryDeleteExpiredRegions(World world, long expirationTime) {
+        if (!lastSeenKnown)
+            return;
+
+        getWorldData(world).getRegionIndex().pollExpiredRegions(expirationTime, System.currentTimeMillis())
+                .forEach(region -> tryDeleteRegion(null, region, true, true));
+    }
+
     /**
      * Actually performs the deletion of the given region. The removal of the given region from the lookup table always
      * occurs however the regions will not be removed from its world's list unless the unregister parameter is true.
@@ -1072,8 +1253,11 @@ public class DataManager implements Listener {
                 modifyClaimBlocks(region.getOwner(), (int) region.area());
         }
 
-        // Remove the region from the lookup table
-        getWorldData(region.getWorld()).getLookupTable().remove(region);
+        // Remove the region from the lookup table and index, and from the holders of its trust meta
+        WorldData worldData = getWorldData(region.getWorld());
+        worldData.getLookupTable().remove(region);
+        worldData.getRegionIndex().remove(region);
+        region.releaseTrustMeta();
 
         return true;
     }
@@ -1223,8 +1407,8 @@ public class DataManager implements Listener {
      */
     private boolean failsSideCheck(Player delegate, Region region) {
         // < 2 is used to counter the off-by-one error (in other words it accounts for the width of the block)
-        if (region.getMax().getBlockX() - region.getMin().getBlockX() < 2 ||
-                region.getMax().getBlockZ() - region.getMin().getBlockZ() < 2) {
+        if (region.getMaxX() - region.getMinX() < 2 ||
+                region.getMaxZ() - region.getMinZ() < 2) {
             notifyDelegate(delegate, "&(red)All sides of your claim must be at least three blocks long.");
             return true;
         }
@@ -1238,18 +1422,16 @@ public class DataManager implements Listener {
      * @param player the player.
      * @return a player session for the given player.
      */
-    public synchronized PlayerSession getPlayerSession(Player player) {
-        // Get the cached entry
-        if (playerSessionCache.containsKey(player.getUniqueId())) {
-            return playerSessionCache.get(player.getUniqueId());
-        }
-        // Enter a new cached entry
-        else {
-            playerData.putIfAbsent(player.getUniqueId(), new PersistentPlayerData(player));
-            PlayerSession ps = new PlayerSession(playerData.get(player.getUniqueId()));
-            playerSessionCache.put(player.getUniqueId(), ps);
-            return ps;
-        }
+    public PlayerSession getPlayerSession(Player player) {
+        // Sessions are normally created before the player joins, so this is a lookup without locking
+        PlayerSession ps = playerSessionCache.get(player.getUniqueId());
+        return ps == null ? createPlayerSession(player.getUniqueId()) : ps;
+    }
+
+    // Enters a new cached entry if there is none yet, which can be done from any thread
+    private PlayerSession createPlayerSession(UUID uuid) {
+        return playerSessionCache.computeIfAbsent(uuid,
+                key -> new PlayerSession(playerData.get(key)));
     }
 
     /**
@@ -1260,45 +1442,33 @@ public class DataManager implements Listener {
      * @return the number of claim blocks associated with the given UUID, or the default amount if there are no claim
      * blocks associated with the given UUID.
      */
-    public synchronized int getClaimBlocks(UUID uuid) {
-        // Use the live player session if it exists
-        if (playerSessionCache.containsKey(uuid)) {
-            return playerSessionCache.get(uuid).getClaimBlocks();
-        }
-        // Default to the persistent player data if the session is not present
-        else if (playerData.containsKey(uuid)) {
-            return playerData.get(uuid).getClaimBlocks();
-        }
-        // If there's no player data either, make new player data
-        else {
-            PersistentPlayerData ppd = new PersistentPlayerData(uuid);
-            playerData.put(uuid, ppd);
-            return ppd.getClaimBlocks();
-        }
+    public int getClaimBlocks(UUID uuid) {
+        // Live player sessions share the persistent data, so no locking is needed
+        return playerData.get(uuid).getClaimBlocks();
     }
 
     /**
      * Modifies the number of claim blocks associated with the given UUID by adding the given amount to the current
-     * number of claim blocks.
+     * number of claim blocks. This method can be called from any thread.
      *
      * @param uuid   the player's UUID.
      * @param amount the amount by which to modify the player's claim blocks.
      */
-    public synchronized void modifyClaimBlocks(UUID uuid, int amount) {
-        // Use the live player session if it exists
-        if (playerSessionCache.containsKey(uuid)) {
-            playerSessionCache.get(uuid).addClaimBlocks(amount);
-        }
-        // Default to the persistent player data if the session is not present
-        else if (playerData.containsKey(uuid)) {
-            playerData.get(uuid).addClaimBlocks(amount);
-        }
-        // If there's no player data either, make new player data
-        else {
-            PersistentPlayerData ppd = new PersistentPlayerData(uuid);
-            ppd.addClaimBlocks(amount);
-            playerData.put(uuid, ppd);
-        }
+    public void modifyClaimBlocks(UUID uuid, int amount) {
+        playerData.get(uuid).addClaimBlocks(amount);
+    }
+
+    /**
+     * Gives the given number of claim blocks (or partial claim blocks) to every online player. This is called
+     * periodically off the main thread.
+     *
+     * @param amount the amount of claim blocks to give to each player.
+     */
+    public void accrueClaimBlocks(double amount) {
+        // Convert the amount once rather than for every player
+        long units = PersistentPlayerData.toClaimBlockUnits(amount);
+        onlinePlayers.forEach(uuid -> playerData.get(uuid)
+                .addClaimBlockUnits(units));
     }
 
     /**
@@ -1306,55 +1476,209 @@ public class DataManager implements Listener {
      * created and initialized.
      */
     public void load() {
+        // Check the player data file first, claims are queued for expiration with the last seen times of their members
+        try {
+            playerData.load();
+        } catch (Throwable ex) {
+            RegionProtection.error("Failed to load player data file: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+
         // Load data for each world
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
         try {
-            File regionsFile = new File(rootDir.getAbsolutePath() + File.separator + "regions.dat");
-            final Map<UUID, WorldData> deserializedWorldData;
-            if (!regionsFile.exists()) {
-                if (!regionsFile.createNewFile()) {
-                    RegionProtection.error("Failed to create regions.dat upon loading data.");
-                    return;
+            loadWorldData(pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        loadNameCache();
+        // Players may already be online if the plugin was reloaded
+        Bukkit.getOnlinePlayers().forEach(player -> {
+            onlinePlayers.add(player.getUniqueId());
+            joinedSessions.put(player, getPlayerSession(player));
+        });
+
+        // Records from before last seen times were tracked are filled in once from the server's own player data
+        if (playerData.hasUnknownLastSeen()) {
+            lastSeenKnown = false;
+            Bukkit.getScheduler().runTaskAsynchronously(RegionProtection.getInstance(), () -> {
+                Map<UUID, Long> lastPlayed = new HashMap<>();
+                for (OfflinePlayer op : Bukkit.getOfflinePlayers()) {
+                    if (op.getLastPlayed() > 0L)
+                        lastPlayed.put(op.getUniqueId(), op.getLastPlayed());
                 }
 
-                deserializedWorldData = new HashMap<>();
-            } else {
-                Deserializer deserializer = new Deserializer(regionsFile, REGION_FORMAT_VERSION);
-                deserializedWorldData = deserializer.readWorldData();
+                try {
+                    playerData.seedLastSeen(lastPlayed);
+                    // Claims were queued before the times were known
+                    worlds.values().forEach(worldData -> worldData.getRegionIndex().rescheduleAll());
+                    lastSeenKnown = true;
+                } catch (IOException ex) {
+                    RegionProtection.error("Failed to fill in last seen times: " + ex.getMessage());
+                    ex.printStackTrace();
+                }
+            });
+        }
+
+        RegionProtection.log("Finished loading data.");
+    }
+
+    // Loads the name cache, or builds it from the names of the players who joined before if there is none in the
+    // current format yet
+    private void loadNameCache() {
+        try {
+            if (nameStore.load())
+                return;
+
+            RegionProtection.log("Building the player name cache.");
+            Map<UUID, String> pairs = new HashMap<>();
+            for (OfflinePlayer op : Bukkit.getOfflinePlayers()) {
+                if (op.getName() != null)
+                    pairs.put(op.getUniqueId(), op.getName());
             }
 
-            // Initialize world data objects
-            Bukkit.getWorlds().stream().map(World::getUID).forEach(uuid ->
-                    worlds.put(uuid, deserializedWorldData.getOrDefault(uuid, new WorldData(uuid)))
-            );
-            deserializedWorldData.entrySet().stream().filter(entry -> !worlds.containsKey(entry.getKey())).forEach(entry ->
-                    worlds.put(entry.getKey(), entry.getValue())
-            );
+            // The cache of the previous format only held recently used names, but they are more recent than the above
+            File nameCacheFile = getNameCacheFile();
+            if (nameCacheFile.exists() && nameCacheFile.length() > 0)
+                pairs.putAll(new Deserializer(nameCacheFile, NAME_CACHE_FORMAT_VERSION).readNameCache());
+
+            nameStore.rebuild(pairs);
         } catch (Throwable ex) {
-            RegionProtection.error("Failed to load regions file:\n" + ex.getClass().getName() + ": " + ex.getMessage());
+            RegionProtection.error("Failed to load player name cache: " + ex.getMessage());
             ex.printStackTrace();
         }
+    }
 
-        // Initialize lookup tables
-        worlds.values().forEach(wd -> wd.generateLookupTable(LOOKUP_TABLE_SCALE));
+    // Loads the region data and builds the lookup table of each loaded world
+    private void loadWorldData(ForkJoinPool pool) {
+        File regionsDir = getRegionsDir();
+        if (!regionsDir.exists() && !regionsDir.mkdirs()) {
+            RegionProtection.error("Failed to create the regions directory upon loading data.");
+            return;
+        }
 
-        // Load player data
-        try {
-            File playerDataFile = new File(rootDir.getAbsolutePath() + File.separator + "playerdata.dat");
-            if (!playerDataFile.exists()) {
-                if (!playerDataFile.createNewFile()) {
-                    RegionProtection.error("Failed to create playerdata.dat upon loading data.");
-                    return;
+        // Up to format 8 the data of all worlds was stored in a single file, so it is split into per-world files
+        File legacyFile = new File(rootDir.getAbsolutePath() + File.separator + "regions.dat");
+        if (legacyFile.exists()) {
+            try {
+                RegionProtection.log("Splitting regions.dat into per-world region files.");
+                Deserializer deserializer = new Deserializer(legacyFile, REGION_FORMAT_VERSION);
+                for (WorldData worldData : deserializer.readWorldData(pool).values()) {
+                    Serializer serializer = new Serializer(getWorldFile(worldData.getWorldUid()), REGION_FORMAT_VERSION);
+                    serializer.writeWorld(worldData);
                 }
-            } else {
-                Deserializer deserializer = new Deserializer(playerDataFile, PLAYER_DATA_FORMAT_VERSION);
-                playerData.putAll(deserializer.readPlayerData());
+
+                // If regions.dat stayed in place it would be split again on the next startup, overwriting any newer
+                // per-world files, so failing to move it aside counts as a failed split
+                Files.move(legacyFile.toPath(), new File(legacyFile.getAbsolutePath() + ".old").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (Throwable ex) {
+                RegionProtection.error("Failed to split regions file:\n" + ex.getClass().getName() + ": " +
+                        ex.getMessage());
+                ex.printStackTrace();
+                legacySplitFailed = true;
+                return;
             }
-        } catch (Throwable ex) {
-            RegionProtection.error("Failed to load player data file: " + ex.getMessage());
+        }
+
+        // The world files are independent of each other, so they are decoded concurrently
+        List<World> loadedWorlds = Bukkit.getWorlds();
+        pool.submit(() -> loadedWorlds.parallelStream().forEach(this::getWorldData)).join();
+    }
+
+    /**
+     * Reads the region data of the given world from its file if it has one, and builds the world's lookup table. If
+     * the file cannot be read, then an empty placeholder is returned which is never written back to the file.
+     *
+     * @param world the world.
+     * @return the world data.
+     */
+    private WorldData readWorld(World world) {
+        WorldData worldData = null;
+        File worldFile = getWorldFile(world.getUID());
+        if (legacySplitFailed) {
+            RegionProtection.error("The region data of world " + world.getName() + " is not loaded since " +
+                    "regions.dat could not be split into per-world files.");
+        } else if (worldFile.exists()) {
+            try {
+                Deserializer deserializer = new Deserializer(worldFile, REGION_FORMAT_VERSION);
+                worldData = deserializer.readWorld(world);
+                worldData.setLoaded();
+            } catch (Throwable ex) {
+                RegionProtection.error("Failed to load region data of world " + world.getName() + ":\n" +
+                        ex.getClass().getName() + ": " + ex.getMessage());
+                ex.printStackTrace();
+            }
+        } else {
+            // There is nothing on disk which the data could overwrite
+            worldData = new WorldData(world.getUID());
+            worldData.setLoaded();
+        }
+
+        if (worldData == null)
+            worldData = new WorldData(world.getUID());
+
+        worldData.generateLookupTable(LOOKUP_TABLE_SCALE);
+        worldData.generateRegionIndex();
+        return worldData;
+    }
+
+    /**
+     * Saves the region data of the given world to its file. Worlds without any data only get a file once they have data,
+     * and data which could not be read from the file is never written back to it.
+     *
+     * @param worldData the world data to save.
+     */
+    private void saveWorld(WorldData worldData) {
+        if (!worldData.isLoaded()) {
+            RegionProtection.error("Not saving the region data of world " + worldData.getWorldUid() + " since it " +
+                    "could not be loaded, its region file is left unchanged.");
+            return;
+        }
+
+        File worldFile = getWorldFile(worldData.getWorldUid());
+        if (!worldFile.exists() && worldData.getRegions().isEmpty() && worldData.isEmpty())
+            return;
+
+        try {
+            File regionsDir = getRegionsDir();
+            if (!regionsDir.exists() && !regionsDir.mkdirs()) {
+                RegionProtection.error("Failed to create the regions directory upon saving data.");
+                return;
+            }
+
+            Serializer serializer = new Serializer(worldFile, REGION_FORMAT_VERSION);
+            serializer.writeWorld(worldData);
+        } catch (IOException ex) {
+            RegionProtection.error("Failed to save region data of world " + worldData.getWorldUid() + ": " +
+                    ex.getMessage());
             ex.printStackTrace();
         }
+    }
 
-        RegionProtection.log("Finished loading data.");
+    /**
+     * @return the directory containing the region data file of each world.
+     */
+    private File getRegionsDir() {
+        return new File(rootDir.getAbsolutePath() + File.separator + "regions");
+    }
+
+    /**
+     * Returns the region data file for the world with the given UID.
+     *
+     * @param worldUid the world's UID.
+     * @return the region data file of the world.
+     */
+    private File getWorldFile(UUID worldUid) {
+        return new File(getRegionsDir(), worldUid + ".dat");
+    }
+
+    /**
+     * @return the file holding the cached player names.
+     */
+    private File getNameCacheFile() {
+        return new File(rootDir.getAbsolutePath() + File.separator + "namecache.dat");
     }
 
     /**
@@ -1362,38 +1686,33 @@ public class DataManager implements Listener {
      */
     public synchronized void save() {
         // Save world data
+        worlds.values().forEach(this::saveWorld);
+
+        // A player who disconnects after logging in but before joining never quits, so their session is dropped here
+        long now = System.currentTimeMillis();
+        pendingSessions.entrySet().removeIf(entry -> {
+            if (now - entry.getValue() < PENDING_SESSION_TIMEOUT_MILLIS)
+                return false;
+
+            playerSessionCache.remove(entry.getKey().getUuid(), entry.getKey());
+            return true;
+        });
+
+        // Save the player data which changed, keeping the data of players with a session in memory
         try {
-            File regionsFile = new File(rootDir.getAbsolutePath() + File.separator + "regions.dat");
-            if (!regionsFile.exists()) {
-                if (!regionsFile.createNewFile()) {
-                    RegionProtection.error("Failed to create regions.dat upon saving data.");
-                    return;
-                }
-            }
-            Serializer serializer = new Serializer(regionsFile, REGION_FORMAT_VERSION);
-            serializer.writeWorldData(worlds.values());
+            playerData.save(playerSessionCache::containsKey);
         } catch (IOException ex) {
-            RegionProtection.error("Failed to save regions file: " + ex.getMessage());
+            RegionProtection.error("Failed to save player data file: " + ex.getMessage());
             ex.printStackTrace();
         }
 
-        // Save player data
-
-        // Dump the cache data into the serialized map
-        playerSessionCache.forEach((uuid, ps) -> playerData.get(uuid).setClaimBlocks(ps.getClaimBlocks()));
-        // Actually save the data to disc
+        // Add the player names learned since the last save to the name cache
+        Map<UUID, String> names = nameResolver.takeUnsaved();
         try {
-            File playerDataFile = new File(rootDir.getAbsolutePath() + File.separator + "playerdata.dat");
-            if (!playerDataFile.exists()) {
-                if (!playerDataFile.createNewFile()) {
-                    RegionProtection.error("Failed to create playerdata.dat upon saving data.");
-                    return;
-                }
-            }
-            Serializer serializer = new Serializer(playerDataFile, PLAYER_DATA_FORMAT_VERSION);
-            serializer.writePlayerData(playerData.values());
+            nameStore.save(names);
         } catch (IOException ex) {
-            RegionProtection.error("Failed to save player data file: " + ex.getMessage());
+            nameResolver.restoreUnsaved(names);
+            RegionProtection.error("Failed to save player name cache: " + ex.getMessage());
             ex.printStackTrace();
         }
     }
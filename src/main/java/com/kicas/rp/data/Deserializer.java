@@ -12,9 +12,15 @@ import org.bukkit.Location;
 import org.bukkit.World;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Deserializes plugin data files, including regions.dat and playerdata.dat. The methods and order of read operations in
@@ -25,19 +31,70 @@ public class Deserializer implements AutoCloseable {
 
     private final Decoder decoder;
     private final int     expectedFormatVersion;
+    private SymbolTable   symbols; // The dictionaries of the world section being read
 
     public Deserializer(File file, int expectedFormatVersion) throws IOException {
-        this.decoder = new Decoder(new FileInputStream(file));
+        this.decoder = new Decoder(mapFile(file));
+        this.expectedFormatVersion = expectedFormatVersion;
+    }
+
+    // Used to decode individual sections of a file
+    private Deserializer(Decoder decoder, int expectedFormatVersion) {
+        this.decoder = decoder;
         this.expectedFormatVersion = expectedFormatVersion;
     }
 
     /**
-     * Translates the data in the file in the given constructor to region data and flag data.
+     * Maps the given file into memory so that it can be decoded without going through a stream. The mapping stays valid
+     * after the channel is closed. On Windows a mapped file cannot be overwritten until the mapping is garbage
+     * collected, which would break the next save, so there the file is read into a heap buffer in one bulk read instead.
+     *
+     * @param file the file to map.
+     * @return a buffer containing the contents of the given file.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static ByteBuffer mapFile(File file) throws IOException {
+        if (System.getProperty("os.name", "").startsWith("Windows"))
+            return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Translates the data in the per-world file in the given constructor to the region data and flag data of the given
+     * world.
+     *
+     * @param world the world the file belongs to.
+     * @return the world data.
+     * @throws IOException if an I/O error occurs.
+     */
+    public WorldData readWorld(World world) throws IOException {
+        // Check the format version
+        int format = decoder.read();
+        if (format < expectedFormatVersion) {
+            RegionProtection.log("Decoding older data format version (" + format + ") for world data file of " +
+                    world.getName() + ".");
+        } else if (format > expectedFormatVersion) {
+            fail("Invalid format encountered. Please make sure you are using the most recent version of the plugin.");
+        }
+
+        WorldData worldData = readWorldSection(world.getUID(), world, format);
+        decoder.close();
+        return worldData;
+    }
+
+    /**
+     * Translates the data in the file in the given constructor to region data and flag data. This is only used for the
+     * single region data file of format 8 and earlier, which contains the data of all worlds. Files in a format that
+     * indexes its world sections have those sections decoded concurrently in the given pool.
      *
+     * @param pool the pool to decode world sections in.
      * @return a map where the keys are Bukkit world UIDs and te values are the corresponding world data.
      * @throws IOException if and I/O error occurs.
      */
-    public Map<UUID, WorldData> readWorldData() throws IOException {
+    public Map<UUID, WorldData> readWorldData(ForkJoinPool pool) throws IOException {
         // Check the format version
         int format = decoder.read();
         if (format < expectedFormatVersion) {
@@ -46,7 +103,7 @@ public class Deserializer implements AutoCloseable {
             fail("Invalid format encountered. Please make sure you are using the most recent version of the plugin.");
         }
 
-        Map<UUID, WorldData> worldData = readWorldData(format);
+        Map<UUID, WorldData> worldData = format < 6 ? readWorldData(format) : readIndexedWorldData(format, pool);
         decoder.close();
         return worldData;
     }
@@ -61,33 +118,104 @@ public class Deserializer implements AutoCloseable {
                 failEOF();
             }
 
-            // Read the global flags
             UUID worldUid = decoder.readUuid();
-            WorldData wd = new WorldData(worldUid);
-            readFlags(wd, format);
-
-            // Read the parent regions
-            World world = Bukkit.getWorld(worldUid);
-            int regionCount = decoder.readCompressedUint();
-            while (regionCount > 0) {
-                wd.getRegions().add(readParentRegion(world, format));
-                --regionCount;
+            worldData.put(worldUid, readWorldSection(worldUid, Bukkit.getWorld(worldUid), format));
+            --len;
+        }
+
+        return worldData;
+    }
+
+    // Format 6 and later: a header of world UIDs and section offsets followed by the length-prefixed sections
+    private Map<UUID, WorldData> readIndexedWorldData(int format, ForkJoinPool pool) throws IOException {
+        int len = decoder.readCompressedUint();
+        UUID[] worldUids = new UUID[len];
+        int[] offsets = new int[len], lengths = new int[len];
+        for (int i = 0; i < len; ++i) {
+            worldUids[i] = decoder.readUuid();
+            offsets[i] = decoder.readInt();
+            lengths[i] = decoder.readInt();
+        }
+
+        if (decoder.isAtEndOfStream()) {
+            failEOF();
+        }
+
+        // The worlds are resolved here since the server's world map should not be read from the worker threads
+        List<ForkJoinTask<WorldData>> tasks = new ArrayList<>(len);
+        for (int i = 0; i < len; ++i) {
+            final UUID worldUid = worldUids[i];
+            final World world = Bukkit.getWorld(worldUid);
+            final Decoder section;
+            try {
+                section = decoder.slice(offsets[i], lengths[i]);
+            } catch (IndexOutOfBoundsException ex) {
+                fail("A world section lies outside of the file. The region data file is likely corrupted.");
+                return null;
             }
 
-            worldData.put(worldUid, wd);
-            --len;
+            tasks.add(pool.submit(() -> new Deserializer(section, expectedFormatVersion)
+                    .readWorldSection(worldUid, world, format)));
+        }
+
+        Map<UUID, WorldData> worldData = new HashMap<>(len);
+        for (ForkJoinTask<WorldData> task : tasks) {
+            try {
+                WorldData wd = task.get();
+                worldData.put(wd.getWorldUid(), wd);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decoding world data.", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException)
+                    throw (IOException) ex.getCause();
+                else if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new IOException(ex.getCause());
+            }
         }
 
         return worldData;
     }
 
+    /**
+     * Reads the global flags and parent regions of a world.
+     *
+     * @param worldUid the UID of the world.
+     * @param world    the world, or null if it is not loaded.
+     * @param format   the format version of the file.
+     * @return the world data.
+     * @throws IOException if an I/O error occurs.
+     */
+    private WorldData readWorldSection(UUID worldUid, World world, int format) throws IOException {
+        // Since format 7, each section starts with the dictionaries its regions refer to
+        if (format >= 7)
+            symbols = new SymbolTable(decoder.readArrayAsList(UUID.class), decoder.readArrayAsList(String.class));
+
+        // Read the global flags
+        WorldData wd = new WorldData(worldUid);
+        if (format >= 8)
+            wd.setSymbols(symbols);
+        readFlags(wd, format);
+
+        // Read the parent regions
+        int regionCount = decoder.readCompressedUint();
+        while (regionCount > 0) {
+            wd.getRegions().add(readParentRegion(world, format));
+            --regionCount;
+        }
+
+        return wd;
+    }
+
     /**
      * Translates the data in the file in the given constructor to region data and flag data.
      *
+     * @param lastSeen the map to put the times at which players were last seen into.
      * @return a map where the keys are player UUIDs and the values are corresponding persistent player data objects.
      * @throws IOException if an I/O error occurs.
      */
-    public Map<UUID, PersistentPlayerData> readPlayerData() throws IOException {
+    public Map<UUID, PersistentPlayerData> readPlayerData(Map<UUID, Long> lastSeen) throws IOException {
         // Check the format version
         int format = decoder.read();
         if (format < expectedFormatVersion) {
@@ -96,13 +224,40 @@ public class Deserializer implements AutoCloseable {
             fail("Invalid format encountered. Please make sure you are using the most recent version of the plugin.");
         }
 
-        Map<UUID, PersistentPlayerData> playerData = readPlayerData(format);
+        Map<UUID, PersistentPlayerData> playerData = readPlayerData(format, lastSeen);
         decoder.close();
         return playerData;
     }
 
+    /**
+     * Reads the UUID-username pairs stored in a name cache file of the first format, which held the recently used
+     * pairs in the order they were written. Later formats are read by the name store.
+     *
+     * @return the UUID-username pairs.
+     * @throws IOException if an I/O error occurs.
+     */
+    public Map<UUID, String> readNameCache() throws IOException {
+        // Check the format version
+        int format = decoder.read();
+        if (format > expectedFormatVersion)
+            fail("Invalid format encountered. Please make sure you are using the most recent version of the plugin.");
+
+        int len = decoder.readCompressedUint();
+        Map<UUID, String> usernames = new LinkedHashMap<>(len);
+        while (len > 0) {
+            if (decoder.isAtEndOfStream())
+                failEOF();
+
+            usernames.put(decoder.readUuid(), decoder.readUTF8Raw());
+            --len;
+        }
+
+        decoder.close();
+        return usernames;
+    }
+
     // Wrapped, format-specific deserialization method
-    private Map<UUID, PersistentPlayerData> readPlayerData(int format) throws IOException {
+    private Map<UUID, PersistentPlayerData> readPlayerData(int format, Map<UUID, Long> lastSeen) throws IOException {
         // Read each individual player data object
         int len = decoder.readCompressedUint();
         Map<UUID, PersistentPlayerData> playerData = new HashMap<>(len);
@@ -119,6 +274,18 @@ public class Deserializer implements AutoCloseable {
             --len;
         }
 
+        // Up to format 1 the last seen times were not stored
+        if (format >= 2) {
+            len = decoder.readCompressedUint();
+            while (len > 0) {
+                if (decoder.isAtEndOfStream())
+                    failEOF();
+
+                lastSeen.put(decoder.readUuid(), decoder.readLong());
+                --len;
+            }
+        }
+
         return playerData;
     }
 
@@ -131,13 +298,13 @@ public class Deserializer implements AutoCloseable {
      * @throws IOException if an I/O error occurs.
      */
     private Region readParentRegion(World world, int format) throws IOException {
-        String name = decoder.readUTF8Raw();
+        String name = readString(format);
         // Contains the priority, and the sign bit is whether or not the region is administrator-owned
         int meta = decoder.read();
 
-        Region region = new Region(name, meta & 0x7F, (meta & 0x80) != 0 ? Utils.UUID_00 : decoder.readUuid(),
+        Region region = new Region(name, meta & 0x7F, (meta & 0x80) != 0 ? Utils.UUID_00 : readUuid(format),
                                    readRegionBound(world, format), readRegionBound(world, format), null,
-                                   format > 0 ? decoder.readArrayAsList(UUID.class) : new ArrayList<>());
+                                   format > 0 ? readUuidList(format) : new ArrayList<>());
 
         readFlags(region, format);
         int len = decoder.readCompressedUint();
@@ -158,9 +325,9 @@ public class Deserializer implements AutoCloseable {
      * @throws IOException if an I/O error occurs.
      */
     private Region readChildRegion(Region parent, int format) throws IOException {
-        Region region = new Region(decoder.readUTF8Raw(), decoder.read() & 0x7F, parent.getOwner(),
+        Region region = new Region(readString(format), decoder.read() & 0x7F, parent.getOwner(),
                                    readRegionBound(parent.getWorld(), format), readRegionBound(parent.getWorld(), format), parent,
-                                   format > 0 ? decoder.readArrayAsList(UUID.class) : parent.coOwners);
+                                   format > 0 ? readUuidList(format) : parent.coOwners);
         readFlags(region, format);
         return region;
     }
@@ -182,22 +349,66 @@ public class Deserializer implements AutoCloseable {
     }
 
     /**
-     * Reads a number of flag-metadata key-value pairs and sets the given container's flags to the read values.
+     * Reads the flags of the given container and sets the container's flags to the read values. Since format 8, only
+     * the flags which are always decoded upon loading are read here, and the remaining flags are kept encoded in the
+     * container until they are accessed.
      *
      * @param container the flag container to add flags to.
      * @param format    the format version of the file.
      * @throws IOException if an I/O error occurs.
      */
     private void readFlags(FlagContainer container, int format) throws IOException {
+        container.setFlags(readFlagMap(format));
+        if (format < 8)
+            return;
+
+        int len = decoder.readCompressedUint();
+        if (len > 0) {
+            // The bytes are copied since the underlying file is overwritten when the data is saved
+            byte[] data = new byte[len];
+            if (decoder.read(data, 0, len) < len)
+                failEOF();
+
+            container.setEncodedFlags(new EncodedFlags(data, symbols, format));
+        }
+    }
+
+    /**
+     * Reads a number of flag-metadata key-value pairs. The metadata is interned, so equivalent values read for
+     * different containers are stored once.
+     *
+     * @param format the format version of the file.
+     * @return the read flag-meta pairs.
+     * @throws IOException if an I/O error occurs.
+     */
+    private Map<RegionFlag, Object> readFlagMap(int format) throws IOException {
         int len = decoder.readCompressedUint();
         Map<RegionFlag, Object> flags = new HashMap<>(len);
         while (len > 0) {
             Pair<RegionFlag, Object> flag = readFlag(format);
-            flags.put(flag.getFirst(), flag.getSecond());
+            flags.put(flag.getFirst(), FlagMetaPool.internValue(flag.getSecond()));
             --len;
         }
 
-        container.setFlags(flags);
+        return flags;
+    }
+
+    /**
+     * Decodes flags which were kept encoded when they were loaded.
+     *
+     * @param encoded the encoded flags.
+     * @return the decoded flag-meta pairs.
+     */
+    static Map<RegionFlag, Object> decodeFlags(EncodedFlags encoded) {
+        Deserializer deserializer = new Deserializer(new Decoder(ByteBuffer.wrap(encoded.getData())),
+                                                     encoded.getFormat());
+        deserializer.symbols = encoded.getSymbols();
+        try {
+            return deserializer.readFlagMap(encoded.getFormat());
+        } catch (IOException ex) {
+            deserializer.fail("Failed to decode flags: " + ex.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -228,7 +439,7 @@ public class Deserializer implements AutoCloseable {
             } else if (GameModeMeta.class.equals(flag.getMetaClass())) {
                 meta = new GameModeMeta(GameModeMeta.Mode.VALUES[decoder.read()]);
             } else if (CommandMeta.class.equals(flag.getMetaClass())) {
-                meta = new CommandMeta(decoder.readBoolean(), decoder.readUTF8Raw());
+                meta = new CommandMeta(decoder.readBoolean(), readString(format));
             } else if (EnumFilter.class.isAssignableFrom(flag.getMetaClass())) {
                 meta = ReflectionHelper.instantiateWithDefaultParams(flag.getMetaClass());
                 boolean isWhitelist = decoder.readBoolean();
@@ -244,23 +455,35 @@ public class Deserializer implements AutoCloseable {
                 } else {
                     Set<String> filter = new HashSet<>();
                     while (len > 0) {
-                        filter.add(decoder.readIdentifier());
+                        filter.add(format < 7 ? decoder.readIdentifier() : readString(format));
                         --len;
                     }
                     ((EnumFilter) meta).setNameFilter(isWhitelist, filter);
                 }
             } else if (LocationMeta.class.equals(flag.getMetaClass())) {
-                meta = new LocationMeta(decoder.readUuid(), decoder.readDouble(), decoder.readDouble(),
+                meta = new LocationMeta(readUuid(format), decoder.readDouble(), decoder.readDouble(),
                                         decoder.readDouble(), decoder.readFloat(), decoder.readFloat());
             } else if (StringFilter.class.equals(flag.getMetaClass())) {
-                meta = new StringFilter(decoder.readBoolean(), new HashSet<>(decoder.readArrayAsList(String.class)));
+                boolean isWhitelist = decoder.readBoolean();
+                Set<String> filter;
+                if (format < 7)
+                    filter = new HashSet<>(decoder.readArrayAsList(String.class));
+                else {
+                    int len = decoder.readCompressedUint();
+                    filter = new HashSet<>(len);
+                    while (len > 0) {
+                        filter.add(readString(format));
+                        --len;
+                    }
+                }
+                meta = new StringFilter(isWhitelist, filter);
             } else if (TextMeta.class.equals(flag.getMetaClass())) {
-                meta = new TextMeta(decoder.readUTF8Raw());
+                meta = new TextMeta(readString(format));
             } else if (TrustMeta.class.equals(flag.getMetaClass())) {
                 TrustMeta trustMeta = new TrustMeta(TrustLevel.VALUES[decoder.read()]);
                 int len = decoder.readCompressedUint();
                 while (len > 0) {
-                    trustMeta.trust(decoder.readUuid(), TrustLevel.VALUES[decoder.read()]);
+                    trustMeta.trust(readUuid(format), TrustLevel.VALUES[decoder.read()]);
                     --len;
                 }
                 meta = trustMeta;
@@ -287,6 +510,65 @@ public class Deserializer implements AutoCloseable {
         return RegionFlag.VALUES[decoder.readCompressedUint()];
     }
 
+    /**
+     * Reads a UUID, which is a reference into the section's dictionary since format 7.
+     *
+     * @param format the format version of the file.
+     * @return the read UUID.
+     * @throws IOException if an I/O error occurs.
+     */
+    private UUID readUuid(int format) throws IOException {
+        if (format < 7)
+            return decoder.readUuid();
+
+        try {
+            return symbols.getUuid(decoder.readCompressedUint());
+        } catch (IndexOutOfBoundsException ex) {
+            fail("An invalid dictionary index was encountered. The region data file is likely corrupted.");
+            return null;
+        }
+    }
+
+    /**
+     * Reads a list of UUIDs.
+     *
+     * @param format the format version of the file.
+     * @return the read UUIDs.
+     * @throws IOException if an I/O error occurs.
+     */
+    private List<UUID> readUuidList(int format) throws IOException {
+        if (format < 7)
+            return decoder.readArrayAsList(UUID.class);
+
+        int len = decoder.readCompressedUint();
+        List<UUID> uuids = new ArrayList<>(len);
+        while (len > 0) {
+            uuids.add(readUuid(format));
+            --len;
+        }
+
+        return uuids;
+    }
+
+    /**
+     * Reads a string, which is a reference into the section's dictionary since format 7.
+     *
+     * @param format the format version of the file.
+     * @return the read string.
+     * @throws IOException if an I/O error occurs.
+     */
+    private String readString(int format) throws IOException {
+        if (format < 7)
+            return decoder.readUTF8Raw();
+
+        try {
+            return symbols.getString(decoder.readCompressedUint());
+        } catch (IndexOutOfBoundsException ex) {
+            fail("An invalid dictionary index was encountered. The region data file is likely corrupted.");
+            return null;
+        }
+    }
+
     /**
      * Closes the decoder in this deserializer.
      *
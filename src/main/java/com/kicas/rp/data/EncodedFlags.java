@@ -0,0 +1,62 @@
+package com.kicas.rp.data;
+
+import java.util.Map;
+
+/**
+ * Holds the still-encoded flags of a flag container as they were read from the region data file. The flags are only
+ * decoded once the container's flags are actually accessed, and if that never happens the bytes are written back to
+ * the file verbatim.
+ */
+final class EncodedFlags {
+    private final byte[] data;
+    private final SymbolTable symbols;
+    private final int format;
+
+    public EncodedFlags(byte[] data, SymbolTable symbols, int format) {
+        this.data = data;
+        this.symbols = symbols;
+        this.format = format;
+    }
+
+    /**
+     * @return the encoded flags.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the dictionaries the encoded flags refer to.
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @return the format version the flags were encoded with.
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * Decodes the flags held by this object.
+     *
+     * @return the decoded flag-meta pairs.
+     */
+    public Map<RegionFlag, Object> decode() {
+        return Deserializer.decodeFlags(this);
+    }
+
+    /**
+     * Returns whether or not the given flag is stored outside of the lazily decoded flag section of a container. Trust
+     * data is needed by nearly every protection check and by the queries over a player's regions, so it is always
+     * decoded up front.
+     *
+     * @param flag the flag.
+     * @return true if the flag is always decoded when loaded, false otherwise.
+     */
+    public static boolean isDecodedEagerly(RegionFlag flag) {
+        return flag == RegionFlag.TRUST;
+    }
+}
@@ -1,6 +1,8 @@
 package com.kicas.rp.data;
 
 import com.kicas.rp.RegionProtection;
+import com.kicas.rp.data.flagdata.FlagMeta;
+import com.kicas.rp.data.flagdata.FlagMetaPool;
 import com.kicas.rp.data.flagdata.TrustMeta;
 import com.kicas.rp.util.*;
 import org.bukkit.Bukkit;
@@ -12,25 +14,32 @@ import java.util.*;
 /**
  * Acts as a general container for region flags. All flag containers have an owner which is stored as a UUID. If the
  * most significant bits and least significant bits of the UUID are all 0, then the container is considered admin-owned.
+ * Flag metadata other than trust is interned when it is set, so it is shared with other containers holding an
+ * equivalent value and has to be copied before it is modified.
  */
 public class FlagContainer {
     protected final Map<RegionFlag, Object> flags;
     protected UUID owner;
     protected final List<UUID> coOwners;
     protected Pair<Location, Location> bounds;
+    // Flags read from disk that have not been accessed yet, decoded on first access
+    private volatile EncodedFlags encodedFlags;
+    // Changes whenever the ownership or the trust meta instance of this container changes
+    private volatile long ownershipEpoch;
+    // A region whose trust table applies to this container, used for containers with merged flags
+    private Region trustSource;
 
     public FlagContainer(UUID owner, List<UUID> coOwners) {
         this.flags = new HashMap<>();
         this.owner = owner;
         this.coOwners = new ArrayList<>(coOwners);
         this.bounds = null;
+        this.ownershipEpoch = TrustMeta.nextEpoch();
+        this.trustSource = null;
     }
 
     public FlagContainer(UUID owner) {
-        this.flags = new HashMap<>();
-        this.owner = owner;
-        this.coOwners = new ArrayList<>();
-        this.bounds = null;
+        this(owner, Collections.emptyList());
     }
 
     /**
@@ -74,8 +83,8 @@ public class FlagContainer {
      */
     public boolean isEffectiveOwner(Player player) {
         return (isAdminOwned() ? player.isOp() : owner.equals(player.getUniqueId())) ||
-                RegionProtection.getDataManager().getPlayerSession(player).isIgnoringTrust() ||
-                coOwners.contains(player.getUniqueId());
+                coOwners.contains(player.getUniqueId()) ||
+                RegionProtection.getDataManager().getPlayerSession(player).isIgnoringTrust();
     }
 
     /**
@@ -96,6 +105,7 @@ public class FlagContainer {
      */
     public void setOwner(UUID uuid) {
         owner = uuid;
+        ownershipChanged();
     }
 
     /**
@@ -105,6 +115,7 @@ public class FlagContainer {
      */
     public void addCoOwner(UUID owner) {
         this.coOwners.add(owner);
+        ownershipChanged();
     }
 
     /**
@@ -114,7 +125,11 @@ public class FlagContainer {
      * @return true if the co-owner was removed, false if not.
      */
     public boolean removeCoOwner(UUID owner) {
-        return this.coOwners.remove(owner);
+        if (!this.coOwners.remove(owner))
+            return false;
+
+        ownershipChanged();
+        return true;
     }
 
     /**
@@ -153,7 +168,7 @@ public class FlagContainer {
      * @return true if this container has no explicitly set flags, false otherwise.
      */
     public boolean isEmpty() {
-        return flags.isEmpty();
+        return loadedFlags().isEmpty();
     }
 
     /**
@@ -163,7 +178,7 @@ public class FlagContainer {
      * @return true if this container has an explicit setting for the given flag, false otherwise.
      */
     public boolean hasFlag(RegionFlag flag) {
-        return flags.containsKey(flag);
+        return loadedFlags(flag).containsKey(flag);
     }
 
     /**
@@ -174,17 +189,21 @@ public class FlagContainer {
      * @return true if this flag is allowed according to this container, false otherwise.
      */
     public boolean isAllowed(RegionFlag flag) {
+        Map<RegionFlag, Object> flags = loadedFlags(flag);
         return flags.containsKey(flag) ? (boolean) flags.get(flag) : flag.getRegionDefaultValue();
     }
 
     /**
-     * Sets the value of the given flag to the given meta in this container, overwriting any preexisting value.
+     * Sets the value of the given flag to the given meta in this container, overwriting any preexisting value. The
+     * given meta is interned, so it should not be modified afterwards.
      *
      * @param flag the flag.
      * @param meta the flag's metadata.
      */
     public void setFlag(RegionFlag flag, Object meta) {
-        flags.put(flag, meta);
+        loadedFlags(flag).put(flag, FlagMetaPool.internValue(meta));
+        if (flag == RegionFlag.TRUST)
+            ownershipChanged();
     }
 
     /**
@@ -193,7 +212,9 @@ public class FlagContainer {
      * @param flag the flag.
      */
     public void deleteFlag(RegionFlag flag) {
-        flags.remove(flag);
+        loadedFlags(flag).remove(flag);
+        if (flag == RegionFlag.TRUST)
+            ownershipChanged();
     }
 
     /**
@@ -207,6 +228,7 @@ public class FlagContainer {
      */
     @SuppressWarnings("unchecked")
     public <T> T getFlagMeta(RegionFlag flag) {
+        Map<RegionFlag, Object> flags = loadedFlags(flag);
         return flags.containsKey(flag) ? (T) flags.get(flag) : flag.getRegionDefaultValue();
     }
 
@@ -214,7 +236,8 @@ public class FlagContainer {
      * Returns the metadata associated with this flag if it is explicitly defined in this flag container, otherwise new
      * flag metadata is created according to the default value of the flag if it is a boolean, or the default
      * constructor of the flag's metadata type. This new metadata is explicitly set as that flag's metadata in this
-     * container, and is then returned.
+     * container, and is then returned. Interned metadata is replaced by a copy which belongs to this container only,
+     * so the returned metadata can be modified.
      *
      * @param flag the flag.
      * @param <T>  the metadata type.
@@ -223,12 +246,21 @@ public class FlagContainer {
      */
     @SuppressWarnings("unchecked")
     public <T> T getAndCreateFlagMeta(RegionFlag flag) {
-        if (flags.containsKey(flag))
-            return (T) flags.get(flag);
-        else {
+        Map<RegionFlag, Object> flags = loadedFlags(flag);
+        if (flags.containsKey(flag)) {
+            Object meta = flags.get(flag);
+            if (meta instanceof FlagMeta && ((FlagMeta) meta).isInterned()) {
+                meta = ((FlagMeta) meta).copy();
+                flags.put(flag, meta);
+            }
+
+            return (T) meta;
+        } else {
             Object meta = flag.isBoolean() ? flag.getRegionDefaultValue()
                     : ReflectionHelper.instantiate(flag.getMetaClass());
             flags.put(flag, meta);
+            if (flag == RegionFlag.TRUST)
+                ownershipChanged();
             return (T) meta;
         }
     }
@@ -237,19 +269,111 @@ public class FlagContainer {
      * @return an exact copy of the flag-meta value pairs within this class.
      */
     public Map<RegionFlag, Object> getFlags() {
+        Map<RegionFlag, Object> flags = loadedFlags();
         Map<RegionFlag, Object> copy = new HashMap<>(flags.size());
         flags.forEach((flag, meta) -> copy.put(flag, meta instanceof TrustMeta ? ((TrustMeta) meta).copy() : meta));
         return copy;
     }
 
     /**
-     * Sets this container's flags by copying the specified map's contents into this container's flag map.
+     * Sets this container's flags by copying the specified map's contents into this container's flag map. The metadata
+     * in the given map is interned.
      *
      * @param flags the new flags.
      */
-    public void setFlags(Map<RegionFlag, Object> flags) {
+    public synchronized void setFlags(Map<RegionFlag, Object> flags) {
+        encodedFlags = null;
         this.flags.clear();
-        this.flags.putAll(flags);
+        flags.forEach((flag, meta) -> this.flags.put(flag, FlagMetaPool.internValue(meta)));
+        ownershipChanged();
+    }
+
+    /**
+     * @return the epoch of the last change to the ownership or trust meta instance of this container.
+     */
+    protected long getOwnershipEpoch() {
+        return ownershipEpoch;
+    }
+
+    /**
+     * Called whenever the owner, co-owners or trust meta instance of this container change.
+     */
+    protected void ownershipChanged() {
+        ownershipEpoch = TrustMeta.nextEpoch();
+    }
+
+    /**
+     * @return the region whose trust table applies to this container, or null if there is no such region.
+     */
+    public Region getTrustSource() {
+        return trustSource;
+    }
+
+    /**
+     * Sets the region whose trust table applies to this container. This should only be set if the given region's
+     * trust table yields the same results as the trust meta, owner and co-owners of this container.
+     *
+     * @param trustSource the region.
+     */
+    void setTrustSource(Region trustSource) {
+        this.trustSource = trustSource;
+    }
+
+    /**
+     * Returns the flag map of this container with all of its flags decoded.
+     *
+     * @return the flag map of this container.
+     */
+    protected Map<RegionFlag, Object> loadedFlags() {
+        if (encodedFlags != null)
+            decodeFlags();
+
+        return flags;
+    }
+
+    /**
+     * Returns the flag map of this container, making sure that the given flag is decoded if it was set.
+     *
+     * @param flag the flag that will be accessed.
+     * @return the flag map of this container.
+     */
+    protected Map<RegionFlag, Object> loadedFlags(RegionFlag flag) {
+        if (encodedFlags != null && !EncodedFlags.isDecodedEagerly(flag))
+            decodeFlags();
+
+        return flags;
+    }
+
+    // Decodes the lazily stored flags into the flag map
+    private synchronized void decodeFlags() {
+        if (encodedFlags == null)
+            return;
+
+        flags.putAll(encodedFlags.decode());
+        encodedFlags = null;
+    }
+
+    /**
+     * @return the flags of this container which have not been decoded yet, or null if there are no such flags.
+     */
+    EncodedFlags getEncodedFlags() {
+        return encodedFlags;
+    }
+
+    /**
+     * Sets the flags of this container which will be decoded upon first access.
+     *
+     * @param encodedFlags the encoded flags.
+     */
+    void setEncodedFlags(EncodedFlags encodedFlags) {
+        this.encodedFlags = encodedFlags;
+    }
+
+    /**
+     * @return the flag map of this container without decoding any lazily stored flags.
+     */
+    Map<RegionFlag, Object> getRawFlags() {
+        return flags;
     }
 
     /**
@@ -268,6 +392,6 @@ public class FlagContainer {
             return false;
 
         FlagContainer flags = (FlagContainer) other;
-        return owner.equals(flags.owner) && this.flags.equals(flags.flags);
+        return owner.equals(flags.owner) && loadedFlags().equals(flags.loadedFlags());
     }
 }
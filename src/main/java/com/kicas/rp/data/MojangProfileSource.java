@@ -0,0 +1,84 @@
+package com.kicas.rp.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.kicas.rp.util.Pair;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Looks up player profiles using the Mojang API.
+ */
+public class MojangProfileSource implements ProfileSource {
+    private static final String API_BASE = "https://api.mojang.com";
+    private static final String SESSION_SERVER_BASE = "https://sessionserver.mojang.com";
+    private static final int TIMEOUT_MILLIS = 5000;
+    // Every Minecraft username matches this, anything else cannot belong to a profile
+    private static final Pattern VALID_USERNAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+
+    @Override
+    public Pair<UUID, String> lookupProfile(String username) throws IOException {
+        // The username is part of the URL, so it is checked before any request is made
+        if (!VALID_USERNAME.matcher(username).matches())
+            return null;
+
+        JsonObject profile = fetchProfile(API_BASE + "/users/profiles/minecraft/" + username);
+        if (profile == null || !profile.has("id") || !profile.has("name"))
+            return null;
+
+        return new Pair<>(parseUuid(profile.get("id").getAsString()), profile.get("name").getAsString());
+    }
+
+    @Override
+    public String lookupUsername(UUID uuid) throws IOException {
+        JsonObject profile = fetchProfile(SESSION_SERVER_BASE + "/session/minecraft/profile/" +
+                uuid.toString().replace("-", ""));
+        return profile == null || !profile.has("name") ? null : profile.get("name").getAsString();
+    }
+
+    // Returns the profile object at the given URL, or null if there is no such profile
+    private static JsonObject fetchProfile(String address) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(address).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        try {
+            // Unknown profiles are answered with no content or not found
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK)
+                return null;
+
+            // Read the data
+            StringBuilder responseBuffer = new StringBuilder();
+            try (Reader in = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                char[] buffer = new char[1024];
+                int len;
+                while ((len = in.read(buffer)) > -1)
+                    responseBuffer.append(buffer, 0, len);
+            }
+
+            if (responseBuffer.length() == 0)
+                return null;
+
+            // The provided JSON should be an object
+            JsonElement response = JsonParser.parseString(responseBuffer.toString());
+            return response.isJsonObject() ? (JsonObject) response : null;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Formats the UUID with -'s and parses it
+    private static UUID parseUuid(String unformatted) {
+        return UUID.fromString(String.format("%s-%s-%s-%s-%s", unformatted.substring(0, 8),
+                unformatted.substring(8, 12), unformatted.substring(12, 16), unformatted.substring(16, 20),
+                unformatted.substring(20)));
+    }
+}
@@ -0,0 +1,378 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.RegionProtection;
+import com.kicas.rp.util.Pair;
+import com.kicas.rp.util.PrefixTrie;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Resolves player usernames to UUIDs and back. Recently used pairs are held in bidirectional maps which are bounded by
+ * evicting the least recently used pair, while every pair ever known is kept in a store on disk, which receives the new
+ * pairs whenever data is saved. Pairs which are not in memory are looked up asynchronously from the store and then from
+ * the other profile sources in order, and concurrent lookups of the same player share a single request. Lookups which
+ * find no player or fail are not repeated for a while. Usernames are matched ignoring case.
+ */
+public class NameResolver {
+    // The maximum number of pairs held in memory
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    // How long a lookup which found no player or failed is remembered before the player is looked up again
+    private static final long FAILED_LOOKUP_EXPIRY = 10L * 60L * 1000L;
+
+    private final int capacity;
+    // Key: UUID, value: the last known username, in least to most recently used order
+    private final LinkedHashMap<UUID, String> usernames;
+    // Key: lower case username, value: UUID
+    private final Map<String, UUID> uuids;
+    // The usernames held in memory, used for tab completion
+    private final PrefixTrie usernameTrie;
+    // Lookups from the profile source which are in progress
+    private final Map<String, CompletableFuture<UUID>> pendingUuids;
+    private final Map<UUID, CompletableFuture<String>> pendingUsernames;
+    // Key: lower case username or UUID, value: the time at which the failed lookup may be retried
+    private final Map<String, Long> failedUuids;
+    private final Map<UUID, Long> failedUsernames;
+    // Key: UUID, value: username, of the pairs which are not in the store yet
+    private final Map<UUID, String> unsaved;
+    private final ExecutorService executor;
+    // The store of every known pair, followed by the sources queried for players who are not in it
+    private final ProfileSource store;
+    private final List<ProfileSource> sources;
+
+    public NameResolver(ProfileSource store, List<ProfileSource> sources, int capacity) {
+        this.capacity = capacity;
+        this.usernames = new LinkedHashMap<UUID, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+                if (size() <= NameResolver.this.capacity)
+                    return false;
+
+                forget(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+        this.uuids = new HashMap<>();
+        this.usernameTrie = new PrefixTrie();
+        this.pendingUuids = new ConcurrentHashMap<>();
+        this.pendingUsernames = new ConcurrentHashMap<>();
+        this.failedUuids = new ConcurrentHashMap<>();
+        this.failedUsernames = new ConcurrentHashMap<>();
+        this.unsaved = new LinkedHashMap<>();
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "RegionProtection-NameResolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.store = store;
+        this.sources = new ArrayList<>(sources.size() + 1);
+        this.sources.add(store);
+        this.sources.addAll(sources);
+    }
+
+    public NameResolver(ProfileSource store, List<ProfileSource> sources) {
+        this(store, sources, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Records the given UUID-username pair, replacing the previous username of the player if they changed it.
+     *
+     * @param uuid     the player's UUID.
+     * @param username the player's current username.
+     */
+    public void remember(UUID uuid, String username) {
+        remember(uuid, username, true);
+    }
+
+    // Records the pair in memory, and marks it to be written to the store unless it was read from there
+    private synchronized void remember(UUID uuid, String username, boolean unstored) {
+        if (uuid == null || username == null)
+            return;
+
+        failedUuids.remove(username.toLowerCase(Locale.ROOT));
+        failedUsernames.remove(uuid);
+
+        String previous = usernames.put(uuid, username);
+        if (username.equals(previous))
+            return;
+
+        // The store skips pairs it already has, such as those of players who were only evicted from memory
+        if (unstored)
+            unsaved.put(uuid, username);
+
+        if (previous != null)
+            forget(uuid, previous);
+
+        // Another player may have had this username before
+        UUID previousOwner = uuids.put(username.toLowerCase(Locale.ROOT), uuid);
+        if (previousOwner != null && !previousOwner.equals(uuid)) {
+            String previousOwnerName = usernames.remove(previousOwner);
+            if (previousOwnerName != null)
+                usernameTrie.remove(previousOwnerName);
+        }
+
+        usernameTrie.add(username);
+    }
+
+    // Removes the reverse mapping and trie entry of the given pair
+    private void forget(UUID uuid, String username) {
+        uuids.remove(username.toLowerCase(Locale.ROOT), uuid);
+        usernameTrie.remove(username);
+    }
+
+    /**
+     * @param username the username.
+     * @return the UUID of the player with the given username if it is known locally, null otherwise.
+     */
+    public synchronized UUID getCachedUuid(String username) {
+        UUID uuid = uuids.get(username.toLowerCase(Locale.ROOT));
+        // Mark the pair as used
+        if (uuid != null)
+            usernames.get(uuid);
+
+        return uuid;
+    }
+
+    /**
+     * @param uuid the UUID.
+     * @return the last known username of the player with the given UUID, or null if it is not known locally.
+     */
+    public synchronized String getCachedUsername(UUID uuid) {
+        return usernames.get(uuid);
+    }
+
+    /**
+     * Returns the UUID of the player with the given username if it is held in memory or in the store. This may read
+     * from the store on disk, which only takes a few reads, but never queries any other source.
+     *
+     * @param username the username.
+     * @return the UUID of the player with the given username, or null if it is not known locally.
+     */
+    public UUID getKnownUuid(String username) {
+        UUID cached = getCachedUuid(username);
+        if (cached != null)
+            return cached;
+
+        try {
+            Pair<UUID, String> profile = store.lookupProfile(username);
+            if (profile == null)
+                return null;
+
+            remember(profile.getFirst(), profile.getSecond(), false);
+            return profile.getFirst();
+        } catch (IOException ex) {
+            RegionProtection.error("Failed to read the UUID of " + username + " from the name cache: " +
+                    ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the username of the player with the given UUID if it is held in memory or in the store. This may read
+     * from the store on disk, which only takes a few reads, but never queries any other source.
+     *
+     * @param uuid the UUID.
+     * @return the last known username of the player with the given UUID, or null if it is not known locally.
+     */
+    public String getKnownUsername(UUID uuid) {
+        String cached = getCachedUsername(uuid);
+        if (cached != null)
+            return cached;
+
+        try {
+            String username = store.lookupUsername(uuid);
+            remember(uuid, username, false);
+            return username;
+        } catch (IOException ex) {
+            RegionProtection.error("Failed to read the username of " + uuid + " from the name cache: " +
+                    ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns at most the given number of known usernames which start with the given prefix, ignoring case.
+     *
+     * @param prefix the prefix to match.
+     * @param limit  the maximum number of usernames to return.
+     * @return a list of the matching usernames in alphabetical order.
+     */
+    public List<String> getUsernamesStartingWith(String prefix, int limit) {
+        return usernameTrie.startingWith(prefix, limit);
+    }
+
+    /**
+     * Resolves the UUID of the player with the given username. If the player is held in memory, then the returned
+     * future is already completed, otherwise the player is looked up from the store and then the other profile sources
+     * off the calling thread.
+     * The future completes with null if there is no such player or if the lookup failed, including when a lookup of
+     * the same username failed recently.
+     *
+     * @param username the username.
+     * @return a future completing with the UUID of the player with the given username, or null.
+     */
+    public CompletableFuture<UUID> resolveUuid(String username) {
+        UUID cached = getCachedUuid(username);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+
+        String key = username.toLowerCase(Locale.ROOT);
+        if (hasFailedRecently(failedUuids, key))
+            return CompletableFuture.completedFuture(null);
+
+        return lookUp(pendingUuids, failedUuids, key, () -> {
+            Pair<Pair<UUID, String>, ProfileSource> found = query(source -> source.lookupProfile(username));
+            if (found == null)
+                return null;
+
+            // Keep the username as the player spells it rather than as it was typed
+            Pair<UUID, String> profile = found.getFirst();
+            remember(profile.getFirst(), profile.getSecond(), found.getSecond() != store);
+            return profile.getFirst();
+        }, "UUID of " + username);
+    }
+
+    /**
+     * Resolves the current username of the player with the given UUID. If the player is held in memory, then the
+     * returned future is already completed, otherwise the player is looked up from the store and then the other profile
+     * sources off the calling thread. The future completes with null if there is no such player or if the lookup failed, including when a
+     * lookup of the same UUID failed recently.
+     *
+     * @param uuid the UUID.
+     * @return a future completing with the username of the player with the given UUID, or null.
+     */
+    public CompletableFuture<String> resolveUsername(UUID uuid) {
+        String cached = getCachedUsername(uuid);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+
+        if (hasFailedRecently(failedUsernames, uuid))
+            return CompletableFuture.completedFuture(null);
+
+        return lookUp(pendingUsernames, failedUsernames, uuid, () -> {
+            Pair<String, ProfileSource> found = query(source -> source.lookupUsername(uuid));
+            if (found == null)
+                return null;
+
+            remember(uuid, found.getFirst(), found.getSecond() != store);
+            return found.getFirst();
+        }, "username of " + uuid);
+    }
+
+    // Queries the sources in order until one of them knows the player, and returns the result along with that source.
+    // A source which fails does not keep the next ones from being queried, the failure is only thrown if none of them
+    // knew the player.
+    private <T> Pair<T, ProfileSource> query(SourceQuery<T> query) throws IOException {
+        IOException failure = null;
+        for (ProfileSource source : sources) {
+            try {
+                T result = query.query(source);
+                if (result != null)
+                    return new Pair<>(result, source);
+            } catch (IOException ex) {
+                if (failure == null)
+                    failure = ex;
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+
+        return null;
+    }
+
+    // Returns whether or not a lookup with the given key failed and may not be retried yet
+    private static <K> boolean hasFailedRecently(Map<K, Long> failed, K key) {
+        Long retryTime = failed.get(key);
+        if (retryTime == null)
+            return false;
+
+        if (retryTime > System.currentTimeMillis())
+            return true;
+
+        failed.remove(key, retryTime);
+        return false;
+    }
+
+    // Runs the given lookup on the lookup threads unless a lookup with the same key is already in progress, and
+    // remembers the key if the lookup found nothing
+    private <K, V> CompletableFuture<V> lookUp(Map<K, CompletableFuture<V>> pending, Map<K, Long> failed, K key,
+                                               Callable<V> lookup, String description) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = pending.putIfAbsent(key, created);
+        if (existing != null)
+            return existing;
+
+        try {
+            executor.execute(() -> {
+                V result = null;
+                try {
+                    result = lookup.call();
+                } catch (Exception ex) {
+                    RegionProtection.error("Failed to look up the " + description + ": " + ex.getMessage());
+                } finally {
+                    if (result == null) {
+                        long now = System.currentTimeMillis();
+                        failed.put(key, now + FAILED_LOOKUP_EXPIRY);
+                        // Keep the failed lookups bounded like the known pairs
+                        if (failed.size() > capacity)
+                            failed.values().removeIf(retryTime -> retryTime <= now);
+                    }
+
+                    pending.remove(key, created);
+                    created.complete(result);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // The resolver was shut down
+            pending.remove(key, created);
+            created.complete(null);
+        }
+
+        return created;
+    }
+
+    /**
+     * Returns the pairs which were learned since they were last taken and which may not be in the store yet, and stops
+     * tracking them.
+     *
+     * @return key: UUID, value: username.
+     */
+    synchronized Map<UUID, String> takeUnsaved() {
+        Map<UUID, String> pairs = new LinkedHashMap<>(unsaved);
+        unsaved.clear();
+        return pairs;
+    }
+
+    /**
+     * Tracks the given pairs again after they could not be written to the store, unless newer pairs replaced them.
+     *
+     * @param pairs key: UUID, value: username.
+     */
+    synchronized void restoreUnsaved(Map<UUID, String> pairs) {
+        pairs.forEach(unsaved::putIfAbsent);
+    }
+
+    /**
+     * Stops the threads used for lookups. Lookups which are in progress are abandoned.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A lookup which can be performed by any profile source.
+     *
+     * @param <T> the result type.
+     */
+    @FunctionalInterface
+    private interface SourceQuery<T> {
+        T query(ProfileSource source) throws IOException;
+    }
+}
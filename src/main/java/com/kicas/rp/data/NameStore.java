@@ -0,0 +1,314 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.RegionProtection;
+import com.kicas.rp.util.Pair;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Stores the username of every player whose name was ever known to this plugin, so that names which are no longer held
+ * in memory by the name resolver can still be found without asking the profile source. The name cache file consists of
+ * a header, fixed-size records sorted by UUID, and the positions of those records sorted by lower case username, so
+ * that players can be found either way by a binary search on disk. Pairs which are new or changed since the file was
+ * last compacted are appended to a separate overflow file, which is held in memory and merged into the sorted file once
+ * it grew large enough. Lookups only ever happen off the main thread or as a few reads of a small file region.
+ */
+class NameStore implements ProfileSource {
+    // The format version byte, the number of records and the number of name index entries
+    private static final int HEADER_SIZE = 9;
+    // UUID, username length and the username in UTF-8, padded to the maximum length
+    private static final int RECORD_SIZE = 48;
+    private static final int MAX_NAME_BYTES = RECORD_SIZE - 17;
+    // The overflow file is merged into the sorted file once it holds this many pairs, or a sixteenth of the sorted
+    // pairs if that is more
+    private static final int MIN_COMPACTION_SIZE = 1024;
+
+    private final File file;
+    private final File overflowFile;
+    // The number of records and name index entries in the sorted file, or -1 if the file was not loaded
+    private int recordCount;
+    private int nameCount;
+    // Key: UUID, value: username, of the pairs in the overflow file, which take precedence over the sorted file
+    private final Map<UUID, String> overflowNames;
+    // Key: lower case username, value: UUID
+    private final Map<String, UUID> overflowUuids;
+    private int overflowSize;
+
+    NameStore(File file) {
+        this.file = file;
+        this.overflowFile = new File(file.getPath() + ".overflow");
+        this.recordCount = -1;
+        this.nameCount = 0;
+        this.overflowNames = new HashMap<>();
+        this.overflowUuids = new HashMap<>();
+        this.overflowSize = 0;
+    }
+
+    /**
+     * Checks the name cache files and reads the overflow file into memory.
+     *
+     * @return true if the files were loaded, false if there is no name cache file in the current format yet, in which
+     * case the store should be rebuilt.
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized boolean load() throws IOException {
+        if (!file.exists() || file.length() == 0)
+            return false;
+
+        int format, records, names;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            format = in.read();
+            if (format < DataManager.NAME_CACHE_FORMAT_VERSION)
+                return false;
+
+            records = in.readInt();
+            names = in.readInt();
+        }
+
+        if (format > DataManager.NAME_CACHE_FORMAT_VERSION) {
+            throw new Deserializer.DeserializationException("Invalid format encountered. Please make sure you are " +
+                    "using the most recent version of the plugin.");
+        }
+
+        if (file.length() != HEADER_SIZE + (long) records * RECORD_SIZE + 4L * names)
+            throw new Deserializer.DeserializationException("The name cache file is truncated.");
+
+        overflowNames.clear();
+        overflowUuids.clear();
+        overflowSize = 0;
+        if (!overflowFile.exists() || overflowFile.length() == 0)
+            writeOverflowHeader();
+        else {
+            long count = (overflowFile.length() - 1) / RECORD_SIZE;
+            if ((overflowFile.length() - 1) % RECORD_SIZE != 0) {
+                // Only the last append can be incomplete, the pairs before it are intact
+                RegionProtection.error("Dropping an incomplete pair at the end of the name cache overflow file.");
+                try (RandomAccessFile raf = new RandomAccessFile(overflowFile, "rw")) {
+                    raf.setLength(1 + count * RECORD_SIZE);
+                }
+            }
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(overflowFile)))) {
+                in.skipBytes(1);
+                for (long i = 0; i < count; ++i) {
+                    UUID uuid = new UUID(in.readLong(), in.readLong());
+                    putOverflow(uuid, readName(in));
+                    ++overflowSize;
+                }
+            }
+        }
+
+        recordCount = records;
+        nameCount = names;
+        return true;
+    }
+
+    /**
+     * Replaces the contents of this store with the given pairs and loads it.
+     *
+     * @param pairs key: UUID, value: username.
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized void rebuild(Map<UUID, String> pairs) throws IOException {
+        writeSorted(new TreeMap<>(pairs), Collections.emptySet());
+        writeOverflowHeader();
+        load();
+    }
+
+    /**
+     * Writes the given pairs which differ from the stored ones, and merges the overflow file into the sorted file if it
+     * grew large enough.
+     *
+     * @param pairs key: UUID, value: the player's current username.
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized void save(Map<UUID, String> pairs) throws IOException {
+        if (recordCount < 0 || pairs.isEmpty())
+            return;
+
+        try (RandomAccessFile main = new RandomAccessFile(file, "r");
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(overflowFile,
+                     true)))) {
+            for (Map.Entry<UUID, String> pair : pairs.entrySet()) {
+                // Names which do not fit into a record are left to the other sources
+                if (pair.getValue().getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES ||
+                        pair.getValue().equals(findUsername(main, pair.getKey()))) {
+                    continue;
+                }
+
+                writeRecord(out, pair.getKey(), pair.getValue());
+                putOverflow(pair.getKey(), pair.getValue());
+                ++overflowSize;
+            }
+        }
+
+        if (overflowSize >= Math.max(MIN_COMPACTION_SIZE, recordCount / 16))
+            compact();
+    }
+
+    @Override
+    public synchronized Pair<UUID, String> lookupProfile(String username) throws IOException {
+        if (recordCount < 0)
+            return null;
+
+        String key = username.toLowerCase(Locale.ROOT);
+        UUID uuid = overflowUuids.get(key);
+        if (uuid != null)
+            return new Pair<>(uuid, overflowNames.get(uuid));
+
+        try (RandomAccessFile main = new RandomAccessFile(file, "r")) {
+            int low = 0, high = nameCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                main.seek(HEADER_SIZE + (long) recordCount * RECORD_SIZE + 4L * mid);
+                main.seek(HEADER_SIZE + (long) main.readInt() * RECORD_SIZE);
+                UUID candidate = new UUID(main.readLong(), main.readLong());
+                String name = readName(main);
+                int cmp = name.toLowerCase(Locale.ROOT).compareTo(key);
+                if (cmp < 0)
+                    low = mid + 1;
+                else if (cmp > 0)
+                    high = mid - 1;
+                else {
+                    // The player may have changed their name since it was written to the sorted file
+                    String current = overflowNames.get(candidate);
+                    return current == null || current.equalsIgnoreCase(name) ? new Pair<>(candidate, name) : null;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized String lookupUsername(UUID uuid) throws IOException {
+        if (recordCount < 0)
+            return null;
+
+        String name = overflowNames.get(uuid);
+        if (name != null)
+            return name;
+
+        try (RandomAccessFile main = new RandomAccessFile(file, "r")) {
+            return findUsername(main, uuid);
+        }
+    }
+
+    // Returns the username of the given player in the overflow or sorted file, or null if the player is not stored
+    private String findUsername(RandomAccessFile main, UUID uuid) throws IOException {
+        String name = overflowNames.get(uuid);
+        if (name != null)
+            return name;
+
+        int low = 0, high = recordCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            main.seek(HEADER_SIZE + (long) mid * RECORD_SIZE);
+            int cmp = new UUID(main.readLong(), main.readLong()).compareTo(uuid);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return readName(main);
+        }
+
+        return null;
+    }
+
+    // Records a pair from the overflow file, replacing the pair of a player who previously had this name
+    private void putOverflow(UUID uuid, String username) {
+        String previous = overflowNames.put(uuid, username);
+        if (previous != null)
+            overflowUuids.remove(previous.toLowerCase(Locale.ROOT), uuid);
+
+        overflowUuids.put(username.toLowerCase(Locale.ROOT), uuid);
+    }
+
+    // Merges the overflow pairs into the sorted file and empties the overflow file
+    private void compact() throws IOException {
+        TreeMap<UUID, String> pairs = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.skipBytes(HEADER_SIZE);
+            for (int i = 0; i < recordCount; ++i)
+                pairs.put(new UUID(in.readLong(), in.readLong()), readName(in));
+        }
+
+        pairs.putAll(overflowNames);
+        writeSorted(pairs, overflowNames.keySet());
+
+        // If this is interrupted before the overflow file is emptied, its pairs are merged again next time
+        writeOverflowHeader();
+        load();
+    }
+
+    // Writes the sorted file from the given pairs. If several players share a name, the newer pair is the one indexed.
+    private void writeSorted(SortedMap<UUID, String> pairs, Set<UUID> newer) throws IOException {
+        List<UUID> uuids = new ArrayList<>(pairs.size());
+        List<String> lowerNames = new ArrayList<>(pairs.size());
+        int names = 0;
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.write(DataManager.NAME_CACHE_FORMAT_VERSION);
+            out.writeInt(0);
+            out.writeInt(0);
+            for (Map.Entry<UUID, String> pair : pairs.entrySet()) {
+                if (pair.getValue() == null || pair.getValue().getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES)
+                    continue;
+
+                writeRecord(out, pair.getKey(), pair.getValue());
+                uuids.add(pair.getKey());
+                lowerNames.add(pair.getValue().toLowerCase(Locale.ROOT));
+            }
+
+            Integer[] order = new Integer[uuids.size()];
+            for (int i = 0; i < order.length; ++i)
+                order[i] = i;
+
+            Arrays.sort(order, Comparator.<Integer, String>comparing(lowerNames::get)
+                    .thenComparing(i -> !newer.contains(uuids.get(i))));
+            for (int i = 0; i < order.length; ++i) {
+                if (i > 0 && lowerNames.get(order[i]).equals(lowerNames.get(order[i - 1])))
+                    continue;
+
+                out.writeInt(order[i]);
+                ++names;
+            }
+        }
+
+        // The counts are only known once everything else was written
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.seek(1);
+            raf.writeInt(uuids.size());
+            raf.writeInt(names);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void writeOverflowHeader() throws IOException {
+        try (OutputStream out = new FileOutputStream(overflowFile)) {
+            out.write(DataManager.NAME_CACHE_FORMAT_VERSION);
+        }
+    }
+
+    private static void writeRecord(DataOutput out, UUID uuid, String username) throws IOException {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.write(name.length);
+        out.write(name);
+        out.write(new byte[MAX_NAME_BYTES - name.length]);
+    }
+
+    private static String readName(DataInput in) throws IOException {
+        int length = in.readUnsignedByte();
+        byte[] name = new byte[MAX_NAME_BYTES];
+        in.readFully(name);
+        return new String(name, 0, Math.min(length, MAX_NAME_BYTES), StandardCharsets.UTF_8);
+    }
+}
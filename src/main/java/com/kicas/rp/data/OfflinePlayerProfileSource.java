@@ -0,0 +1,23 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.util.Pair;
+import org.bukkit.Bukkit;
+
+import java.util.UUID;
+
+/**
+ * Looks up player profiles in the data the server keeps of the players who joined it. This covers players who joined
+ * while this plugin was not installed, or whose names were never written to the name cache.
+ */
+public class OfflinePlayerProfileSource implements ProfileSource {
+    @Override
+    public Pair<UUID, String> lookupProfile(String username) {
+        // Bukkit may look names up from Mojang itself, which is left to the profile sources after this one
+        return null;
+    }
+
+    @Override
+    public String lookupUsername(UUID uuid) {
+        return Bukkit.getOfflinePlayer(uuid).getName();
+    }
+}
@@ -0,0 +1,231 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.RegionProtection;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The edges of a collection of regions drawn with particles for a single player. The bounds of the regions are copied
+ * when the outline is created, and the particle positions along the edges within the view range of the player are
+ * computed off the main thread. They are computed again once the player moved far enough. The particle renderer emits
+ * the positions in turns, so every position is refreshed while the outline is shown.
+ */
+class ParticleOutline {
+    // Distance between two particles on an edge
+    private static final double SPACING = 1.0;
+    // How far the player can move before the particle positions are computed again
+    private static final double RECOMPUTE_DISTANCE = 8.0;
+
+    private final Player player;
+    private final World world;
+    private final List<Box> boxes;
+    private final double viewRange;
+    // Flattened x, y, z triples along with the dust of each position, replaced as a whole off the main thread
+    private volatile Points points;
+    private boolean computing;
+    private double computedX, computedY, computedZ;
+    // The next position to emit
+    private int cursor;
+
+    ParticleOutline(Player player, Collection<Region> regions, Material block, boolean includeChildren) {
+        this.player = player;
+        this.world = player.getWorld();
+        this.boxes = new ArrayList<>();
+        this.viewRange = RegionProtection.getRPConfig().getInt("general.highlight-particle-range");
+        this.points = new Points(new double[0], new Particle.DustOptions[0]);
+        this.computing = false;
+        this.computedX = this.computedY = this.computedZ = Double.NaN;
+        this.cursor = 0;
+        addBoxes(regions, block, includeChildren);
+    }
+
+    // Copies the bounds of the given regions
+    private void addBoxes(Collection<Region> regions, Material block, boolean includeChildren) {
+        regions.forEach(region -> {
+            // The block a region would be highlighted with determines its color
+            Material bk = block == null ? (region.hasParent() ? Material.IRON_BLOCK : Material.GOLD_BLOCK) : block;
+            boxes.add(new Box(region, new Particle.DustOptions(bk.createBlockData().getMapColor(), 1.0F)));
+
+            if (includeChildren)
+                addBoxes(region.getChildren(), block, includeChildren);
+        });
+    }
+
+    /**
+     * Starts computing the particle positions again if the player moved far enough since they were last computed.
+     *
+     * @return false if the player is no longer online or in the world of the regions, true otherwise.
+     */
+    boolean update() {
+        if (!player.isOnline() || !world.equals(player.getWorld()))
+            return false;
+
+        Location location = player.getLocation();
+        double dx = location.getX() - computedX, dy = location.getY() - computedY, dz = location.getZ() - computedZ;
+        if (computing || dx * dx + dy * dy + dz * dz < RECOMPUTE_DISTANCE * RECOMPUTE_DISTANCE)
+            return true;
+
+        computing = true;
+        computedX = location.getX();
+        computedY = location.getY();
+        computedZ = location.getZ();
+        double x = computedX, y = computedY, z = computedZ;
+        Bukkit.getScheduler().runTaskAsynchronously(RegionProtection.getInstance(), () -> {
+            points = computePoints(x, y, z);
+            Bukkit.getScheduler().runTask(RegionProtection.getInstance(), () -> computing = false);
+        });
+
+        return true;
+    }
+
+    /**
+     * Emits at most the given number of particles to the player, continuing where the previous call stopped.
+     *
+     * @param budget the maximum number of particles to emit.
+     * @return the number of particles emitted.
+     */
+    int emit(int budget) {
+        Points current = points;
+        int count = Math.min(budget, current.dust.length);
+        for (int i = 0; i < count; ++i) {
+            if (cursor >= current.dust.length)
+                cursor = 0;
+
+            player.spawnParticle(Particle.DUST, current.coordinates[3 * cursor], current.coordinates[3 * cursor + 1],
+                    current.coordinates[3 * cursor + 2], 1, 0.0, 0.0, 0.0, 0.0, current.dust[cursor]);
+            ++cursor;
+        }
+
+        return count;
+    }
+
+    // Computes the positions along the edges within the view range of the given position
+    private Points computePoints(double x, double y, double z) {
+        PointList list = new PointList();
+        boxes.forEach(box -> {
+            if (box.hasYLimits) {
+                // Subdivisions limited in height are drawn as boxes
+                drawRectangle(list, box, box.minY, x, y, z);
+                drawRectangle(list, box, box.maxY, x, y, z);
+                drawVerticalEdge(list, box, box.minX, box.minZ, x, y, z);
+                drawVerticalEdge(list, box, box.maxX, box.minZ, x, y, z);
+                drawVerticalEdge(list, box, box.minX, box.maxZ, x, y, z);
+                drawVerticalEdge(list, box, box.maxX, box.maxZ, x, y, z);
+            } else {
+                // Other regions are drawn at the player's eye level, as long as that is within the region
+                drawRectangle(list, box, Math.max(box.minY, Math.min(box.maxY, y + 1.5)), x, y, z);
+            }
+        });
+
+        return list.toPoints();
+    }
+
+    private void drawRectangle(PointList list, Box box, double level, double x, double y, double z) {
+        if (Math.abs(level - y) > viewRange)
+            return;
+
+        drawLine(list, box.dust, box.minX, box.maxX, level, box.minZ, true, x, z);
+        drawLine(list, box.dust, box.minX, box.maxX, level, box.maxZ, true, x, z);
+        drawLine(list, box.dust, box.minZ, box.maxZ, level, box.minX, false, x, z);
+        drawLine(list, box.dust, box.minZ, box.maxZ, level, box.maxX, false, x, z);
+    }
+
+    // Adds the positions on a horizontal line which are within the view range, skipping the rest of the line
+    private void drawLine(PointList list, Particle.DustOptions dust, double from, double to, double level,
+                          double fixed, boolean alongX, double x, double z) {
+        double center = alongX ? x : z, offset = alongX ? z - fixed : x - fixed;
+        if (Math.abs(offset) > viewRange)
+            return;
+
+        // The part of the line within the view range
+        double halfLength = Math.sqrt(viewRange * viewRange - offset * offset);
+        double start = Math.max(from, Math.ceil((center - halfLength - from) / SPACING) * SPACING + from),
+                end = Math.min(to, center + halfLength);
+        for (double t = start; t <= end; t += SPACING) {
+            if (alongX)
+                list.add(t, level, fixed, dust);
+            else
+                list.add(fixed, level, t, dust);
+        }
+    }
+
+    private void drawVerticalEdge(PointList list, Box box, double edgeX, double edgeZ, double x, double y, double z) {
+        double dx = edgeX - x, dz = edgeZ - z;
+        if (dx * dx + dz * dz > viewRange * viewRange)
+            return;
+
+        double start = Math.max(box.minY, Math.ceil(y - viewRange)), end = Math.min(box.maxY, y + viewRange);
+        for (double t = start; t <= end; t += SPACING)
+            list.add(edgeX, t, edgeZ, box.dust);
+    }
+
+    /**
+     * The outer bounds of a region at the time the outline was created.
+     */
+    private static final class Box {
+        final double minX, minY, minZ, maxX, maxY, maxZ;
+        final boolean hasYLimits;
+        final Particle.DustOptions dust;
+
+        Box(Region region, Particle.DustOptions dust) {
+            // Regions include their maximum block, so the edges are on the far side of it
+            this.minX = region.getMinX();
+            this.minY = region.getMinY();
+            this.minZ = region.getMinZ();
+            this.maxX = region.getMaxX() + 1;
+            this.maxY = region.getMaxY() + 1;
+            this.maxZ = region.getMaxZ() + 1;
+            this.hasYLimits = region.hasParent() && (region.getMinY() > region.getParent().getMinY() ||
+                    region.getMaxY() < region.getParent().getMaxY());
+            this.dust = dust;
+        }
+    }
+
+    /**
+     * The computed particle positions of an outline.
+     */
+    private static final class Points {
+        final double[] coordinates;
+        final Particle.DustOptions[] dust;
+
+        Points(double[] coordinates, Particle.DustOptions[] dust) {
+            this.coordinates = coordinates;
+            this.dust = dust;
+        }
+    }
+
+    /**
+     * Collects particle positions without boxing them.
+     */
+    private static final class PointList {
+        double[] coordinates = new double[3 * 64];
+        Particle.DustOptions[] dust = new Particle.DustOptions[64];
+        int size = 0;
+
+        void add(double x, double y, double z, Particle.DustOptions options) {
+            if (size == dust.length) {
+                coordinates = Arrays.copyOf(coordinates, 6 * size);
+                dust = Arrays.copyOf(dust, 2 * size);
+            }
+
+            coordinates[3 * size] = x;
+            coordinates[3 * size + 1] = y;
+            coordinates[3 * size + 2] = z;
+            dust[size] = options;
+            ++size;
+        }
+
+        Points toPoints() {
+            return new Points(Arrays.copyOf(coordinates, 3 * size), Arrays.copyOf(dust, size));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.kicas.rp.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emits the particles of every shown particle outline under a budget of particles per tick which is shared by all
+ * viewers, so that the cost of particle highlighting does not grow with the number of players using it at once. Each
+ * outline gets an equal share of the budget, and the outlines which are served first rotate every tick.
+ */
+public class ParticleRenderer {
+    private final List<ParticleOutline> outlines;
+    private int particlesPerTick;
+    // The outline which is served first in the next tick
+    private int offset;
+
+    public ParticleRenderer() {
+        this.outlines = new ArrayList<>();
+        this.particlesPerTick = 400;
+        this.offset = 0;
+    }
+
+    /**
+     * Sets the number of particles which can be emitted each tick across all outlines.
+     *
+     * @param particlesPerTick the budget.
+     */
+    public void setParticlesPerTick(int particlesPerTick) {
+        this.particlesPerTick = Math.max(1, particlesPerTick);
+    }
+
+    /**
+     * Starts showing the given outline. This method should only be called on the main thread.
+     *
+     * @param outline the outline.
+     */
+    void add(ParticleOutline outline) {
+        outlines.add(outline);
+    }
+
+    /**
+     * Stops showing the given outline. This method should only be called on the main thread.
+     *
+     * @param outline the outline.
+     */
+    void remove(ParticleOutline outline) {
+        outlines.remove(outline);
+    }
+
+    /**
+     * Emits the particles for this tick. This should be called every tick on the main thread.
+     */
+    public void tick() {
+        if (outlines.isEmpty())
+            return;
+
+        // Drop the outlines of players who left
+        outlines.removeIf(outline -> !outline.update());
+        if (outlines.isEmpty())
+            return;
+
+        int remaining = particlesPerTick, count = outlines.size();
+        offset %= count;
+        for (int i = 0; i < count && remaining > 0; ++i) {
+            // Budget which is not used by an outline is passed on to the next ones
+            int share = Math.max(1, remaining / (count - i));
+            remaining -= outlines.get((offset + i) % count).emit(share);
+        }
+
+        ++offset;
+    }
+}
@@ -4,28 +4,54 @@ import com.kicas.rp.RegionProtection;
 import org.bukkit.entity.Player;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class contains player data this is stored to disk between server instances. This class should not be directly
- * used since it is managed by the plugin internally.
+ * used since it is managed by the plugin internally. The claim block balance is the ledger shared with the player's
+ * session, and is stored as a fixed-point number in an atomic long so that partial claim blocks can accrue off the
+ * main thread while claim blocks are spent on it without any locking. The values last written to disk are kept so that
+ * the player data store only writes back data which changed.
  */
 class PersistentPlayerData {
-    private UUID uuid;
-    private int claimBlocks;
+    // The number of fixed-point units in one claim block
+    private static final long CLAIM_BLOCK_UNIT = 1L << 16;
+    // The last seen time of players who never joined
+    static final long NEVER_SEEN = -1L;
+    // The last seen time of players whose data predates the last seen times being recorded
+    static final long UNKNOWN_LAST_SEEN = 0L;
 
-    public PersistentPlayerData(UUID uuid, int claimBlocks) {
+    private final UUID uuid;
+    private final AtomicLong claimBlocks;
+    private volatile long lastSeen;
+    // The values in the player data file, managed by the player data store
+    private long storedClaimBlocks;
+    private long storedLastSeen;
+    // When the player data store last handed out this object
+    private long lastAccessed;
+
+    PersistentPlayerData(UUID uuid, long claimBlockUnits, long lastSeen) {
         this.uuid = uuid;
-        this.claimBlocks = claimBlocks;
+        this.claimBlocks = new AtomicLong(claimBlockUnits);
+        this.lastSeen = lastSeen;
+        this.storedClaimBlocks = claimBlockUnits;
+        this.storedLastSeen = lastSeen;
+        this.lastAccessed = 0L;
+    }
+
+    public PersistentPlayerData(UUID uuid, int claimBlocks) {
+        this(uuid, claimBlocks * CLAIM_BLOCK_UNIT, UNKNOWN_LAST_SEEN);
     }
 
     /**
-     * Constructs a new instance of <code>PersistentPlayerData</code> with the given UUID and the starting claim block
-     * amount specified in the config.
+     * Constructs a new instance of <code>PersistentPlayerData</code> for a player who never joined, with the given UUID
+     * and the starting claim block amount specified in the config.
      *
      * @param uuid the associated player's UUID.
      */
     public PersistentPlayerData(UUID uuid) {
-        this(uuid, RegionProtection.getRPConfig().getInt("general.starting-claim-blocks"));
+        this(uuid, RegionProtection.getRPConfig().getInt("general.starting-claim-blocks") * CLAIM_BLOCK_UNIT,
+                NEVER_SEEN);
     }
 
     public PersistentPlayerData(Player player) {
@@ -40,10 +66,28 @@ class PersistentPlayerData {
     }
 
     /**
-     * @return the number of claim blocks the associated player has.
+     * @return the time in milliseconds at which the associated player last joined or quit, NEVER_SEEN if they never
+     * joined, or UNKNOWN_LAST_SEEN if it was not recorded.
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Sets the time at which the associated player last joined or quit.
+     *
+     * @param lastSeen the time in milliseconds.
+     */
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    /**
+     * @return the number of whole claim blocks the associated player has, rounded down so that a negative balance with
+     * a fractional part is not reported as more than it is.
      */
     public int getClaimBlocks() {
-        return claimBlocks;
+        return (int) Math.floorDiv(claimBlocks.get(), CLAIM_BLOCK_UNIT);
     }
 
     /**
@@ -52,7 +96,7 @@ class PersistentPlayerData {
      * @param claimBlocks the new claim block amount.
      */
     public void setClaimBlocks(int claimBlocks) {
-        this.claimBlocks = claimBlocks;
+        this.claimBlocks.set(claimBlocks * CLAIM_BLOCK_UNIT);
     }
 
     /**
@@ -61,6 +105,87 @@ class PersistentPlayerData {
      * @param amount the amount to add.
      */
     public void addClaimBlocks(int amount) {
-        claimBlocks += amount;
+        claimBlocks.addAndGet(amount * CLAIM_BLOCK_UNIT);
+    }
+
+    /**
+     * Adds the given number of claim blocks or partial claim blocks to this player's claim block count.
+     *
+     * @param amount the amount to add.
+     */
+    public void addClaimBlocks(double amount) {
+        claimBlocks.addAndGet(toClaimBlockUnits(amount));
+    }
+
+    /**
+     * @return the claim block count of the associated player in fixed-point units.
+     */
+    long getClaimBlockUnits() {
+        return claimBlocks.get();
+    }
+
+    /**
+     * Adds the given number of fixed-point units to this player's claim block count.
+     *
+     * @param units the number of units to add.
+     * @see #toClaimBlockUnits(double)
+     */
+    public void addClaimBlockUnits(long units) {
+        claimBlocks.addAndGet(units);
+    }
+
+    /**
+     * Converts the given number of claim blocks or partial claim blocks to the fixed-point units the claim block count
+     * is stored in.
+     *
+     * @param amount the amount of claim blocks.
+     * @return the number of units, rounded to the nearest unit.
+     */
+    public static long toClaimBlockUnits(double amount) {
+        return Math.round(amount * CLAIM_BLOCK_UNIT);
+    }
+
+    /**
+     * Subtracts the given number of claim blocks from this player's claim block count if they have at least that many
+     * claim blocks. The check and the subtraction happen atomically.
+     *
+     * @param amount the amount to subtract.
+     * @return true if the claim blocks were subtracted, false if the player does not have enough claim blocks.
+     */
+    public boolean trySpendClaimBlocks(long amount) {
+        long units = amount * CLAIM_BLOCK_UNIT, current;
+        do {
+            current = claimBlocks.get();
+            if (current < units)
+                return false;
+        } while (!claimBlocks.compareAndSet(current, current - units));
+
+        return true;
+    }
+
+    /**
+     * @return true if this data differs from what was last written to the player data file, false otherwise.
+     */
+    boolean isDirty() {
+        return claimBlocks.get() != storedClaimBlocks || lastSeen != storedLastSeen;
+    }
+
+    /**
+     * Records that the given values were written to the player data file.
+     *
+     * @param claimBlockUnits the claim block count that was written, in fixed-point units.
+     * @param lastSeen        the last seen time that was written.
+     */
+    void markStored(long claimBlockUnits, long lastSeen) {
+        storedClaimBlocks = claimBlockUnits;
+        storedLastSeen = lastSeen;
+    }
+
+    long getLastAccessed() {
+        return lastAccessed;
+    }
+
+    void setLastAccessed(long lastAccessed) {
+        this.lastAccessed = lastAccessed;
     }
 }
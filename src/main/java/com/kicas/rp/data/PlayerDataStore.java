@@ -0,0 +1,507 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.RegionProtection;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Stores the persistent data of every player who ever played, of which only the data of recently active players is
+ * held in memory. The player data file consists of the format version followed by fixed-size records sorted by UUID.
+ * Records of players who are new since the file was last compacted are appended to a separate overflow file, and are
+ * only merged into the sorted file once there are enough of them. Saving therefore only writes the records which
+ * changed, and then drops the data of players who were not active since the previous save, so both the memory used and
+ * the time spent saving depend on the number of active players rather than on every player who ever joined the server.
+ * The UUID and last seen time of each record are also kept in memory, so records are located without searching the
+ * file, and last seen times never need to be read from disk.
+ */
+class PlayerDataStore {
+    // The format version byte
+    private static final int HEADER_SIZE = 1;
+    // UUID, claim blocks in fixed-point units and the last seen time
+    private static final int RECORD_SIZE = 32;
+    // Offset of the claim blocks within a record
+    private static final int VALUES_OFFSET = 16;
+    // How long data stays in memory after it was last used
+    private static final long RESIDENT_TIME = 10L * 60L * 1000L;
+    // The overflow file is merged into the sorted file once it holds this many records, or a sixteenth of the sorted
+    // records if that is more
+    private static final int MIN_COMPACTION_SIZE = 1024;
+
+    private final File file;
+    private final File overflowFile;
+    // Key: player UUID, value: the data of a player who was active recently
+    private final Map<UUID, PersistentPlayerData> resident;
+    // The UUIDs and last seen times of every record, replaced as a whole when the files are compacted
+    private volatile RecordIndex index;
+    // Guards both player data files
+    private final Object fileLock;
+
+    public PlayerDataStore(File file) {
+        this.file = file;
+        this.overflowFile = new File(file.getPath() + ".overflow");
+        this.resident = new ConcurrentHashMap<>();
+        this.index = new RecordIndex(new long[0], new long[0], new long[0]);
+        this.fileLock = new Object();
+    }
+
+    /**
+     * Checks the player data files, converting the data if it was written in an older format where every player was
+     * stored in a single compressed block, and reads the UUID and last seen time of every record into memory.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void load() throws IOException {
+        synchronized (fileLock) {
+            if (!file.exists() || file.length() == 0)
+                writeHeader(file);
+            else {
+                int format;
+                try (InputStream in = new FileInputStream(file)) {
+                    format = in.read();
+                }
+
+                if (format > DataManager.PLAYER_DATA_FORMAT_VERSION) {
+                    throw new Deserializer.DeserializationException("Invalid format encountered. Please make sure you " +
+                            "are using the most recent version of the plugin.");
+                }
+
+                if (format < DataManager.PLAYER_DATA_FORMAT_VERSION) {
+                    RegionProtection.log("Converting player data from format version " + format + ".");
+                    convert();
+                } else if ((file.length() - HEADER_SIZE) % RECORD_SIZE != 0)
+                    throw new Deserializer.DeserializationException("The player data file is truncated.");
+            }
+
+            if (!overflowFile.exists() || overflowFile.length() == 0)
+                writeHeader(overflowFile);
+            else if ((overflowFile.length() - HEADER_SIZE) % RECORD_SIZE != 0) {
+                // Only the last append can be incomplete, the records before it are intact
+                RegionProtection.error("Dropping an incomplete record at the end of the player data overflow file.");
+                try (RandomAccessFile raf = new RandomAccessFile(overflowFile, "rw")) {
+                    raf.setLength(HEADER_SIZE + (raf.length() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE);
+                }
+            }
+
+            index = readIndex();
+        }
+    }
+
+    // Rewrites a player data file of an older format as a sorted record file
+    private void convert() throws IOException {
+        Map<UUID, Long> lastSeen = new HashMap<>();
+        Deserializer deserializer = new Deserializer(file, DataManager.PLAYER_DATA_FORMAT_VERSION);
+        Map<UUID, PersistentPlayerData> playerData = deserializer.readPlayerData(lastSeen);
+
+        // Older formats stored the last seen times separately
+        lastSeen.forEach((uuid, time) ->
+                playerData.computeIfAbsent(uuid, PersistentPlayerData::new).setLastSeen(time));
+
+        List<PersistentPlayerData> records = new ArrayList<>(playerData.values());
+        records.sort(Comparator.comparing(PersistentPlayerData::getUuid));
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.write(DataManager.PLAYER_DATA_FORMAT_VERSION);
+            for (PersistentPlayerData ppd : records)
+                writeRecord(out, ppd.getUuid(), ppd.getClaimBlockUnits(), ppd.getLastSeen());
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Reads the UUIDs and last seen times of the records in both files
+    private RecordIndex readIndex() throws IOException {
+        int count = (int) ((file.length() - HEADER_SIZE) / RECORD_SIZE);
+        long[] mostSigBits = new long[count], leastSigBits = new long[count], lastSeen = new long[count];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.skipBytes(HEADER_SIZE);
+            for (int i = 0; i < count; ++i) {
+                mostSigBits[i] = in.readLong();
+                leastSigBits[i] = in.readLong();
+                in.readLong();
+                lastSeen[i] = in.readLong();
+            }
+        }
+
+        RecordIndex index = new RecordIndex(mostSigBits, leastSigBits, lastSeen);
+        int overflowCount = (int) ((overflowFile.length() - HEADER_SIZE) / RECORD_SIZE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(overflowFile)))) {
+            in.skipBytes(HEADER_SIZE);
+            for (int i = 0; i < overflowCount; ++i) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                in.readLong();
+                long time = in.readLong();
+                // Records left over from an interrupted compaction are already in the sorted file
+                if (index.find(uuid) < 0)
+                    index.overflow.put(uuid, new OverflowRecord(i, time));
+            }
+        }
+
+        index.overflowSize = overflowCount;
+        return index;
+    }
+
+    /**
+     * Returns the data of the player with the given UUID, loading it from disk if it is not in memory. If the player
+     * has no data yet, then new data with the starting claim block amount is created, which is only written to disk
+     * once it is modified. The returned object should not be held on to, unless the player is pinned when saving.
+     *
+     * @param uuid the player's UUID.
+     * @return the data of the player with the given UUID.
+     */
+    public PersistentPlayerData get(UUID uuid) {
+        // The access time is updated while holding the entry so that the data cannot be dropped right after this
+        return resident.compute(uuid, (key, ppd) -> {
+            if (ppd == null)
+                ppd = read(key);
+
+            ppd.setLastAccessed(System.currentTimeMillis());
+            return ppd;
+        });
+    }
+
+    /**
+     * Returns the time at which the player with the given UUID was last seen without reading from disk or loading the
+     * player's data into memory.
+     *
+     * @param uuid the player's UUID.
+     * @return the last seen time in milliseconds, PersistentPlayerData.NEVER_SEEN if the player never joined, or
+     * PersistentPlayerData.UNKNOWN_LAST_SEEN if the time was not recorded.
+     */
+    public long getLastSeen(UUID uuid) {
+        PersistentPlayerData ppd = resident.get(uuid);
+        return ppd == null ? index.getLastSeen(uuid) : ppd.getLastSeen();
+    }
+
+    /**
+     * @return true if there are records whose last seen time was not recorded, false otherwise.
+     */
+    public boolean hasUnknownLastSeen() {
+        return index.hasUnknownLastSeen();
+    }
+
+    /**
+     * Fills in the last seen times which were not recorded, along with the last seen times of players who have no
+     * record yet, from the given times. Records which are still missing a last seen time afterwards are marked as never
+     * seen, so this only needs to be done once.
+     *
+     * @param lastPlayed key: player UUID, value: the time in milliseconds at which the player last played.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void seedLastSeen(Map<UUID, Long> lastPlayed) throws IOException {
+        synchronized (fileLock) {
+            RecordIndex index = this.index;
+            Map<UUID, Long> remaining = new HashMap<>(lastPlayed);
+            List<Record> changed = new ArrayList<>();
+
+            for (int i = 0; i < index.size(); ++i) {
+                UUID uuid = new UUID(index.mostSigBits[i], index.leastSigBits[i]);
+                Long time = remaining.remove(uuid);
+                if (index.lastSeen[i] == PersistentPlayerData.UNKNOWN_LAST_SEEN)
+                    changed.add(new Record(uuid, time == null ? PersistentPlayerData.NEVER_SEEN : time));
+            }
+
+            index.overflow.forEach((uuid, record) -> {
+                Long time = remaining.remove(uuid);
+                if (record.lastSeen == PersistentPlayerData.UNKNOWN_LAST_SEEN)
+                    changed.add(new Record(uuid, time == null ? PersistentPlayerData.NEVER_SEEN : time));
+            });
+
+            // Only the last seen times are replaced in existing records
+            try (RandomAccessFile main = new RandomAccessFile(file, "rw");
+                 RandomAccessFile overflow = new RandomAccessFile(overflowFile, "rw")) {
+                for (Record record : changed) {
+                    int i = index.find(record.uuid);
+                    if (i >= 0) {
+                        main.seek(HEADER_SIZE + (long) i * RECORD_SIZE + VALUES_OFFSET + 8);
+                        main.writeLong(record.lastSeen);
+                        index.lastSeen[i] = record.lastSeen;
+                    } else {
+                        OverflowRecord overflowRecord = index.overflow.get(record.uuid);
+                        overflow.seek(HEADER_SIZE + (long) overflowRecord.index * RECORD_SIZE + VALUES_OFFSET + 8);
+                        overflow.writeLong(record.lastSeen);
+                        overflowRecord.lastSeen = record.lastSeen;
+                    }
+                }
+            }
+
+            // Players without a record get one with the starting claim blocks, which is what they would get anyway
+            List<Record> added = new ArrayList<>(remaining.size());
+            remaining.forEach((uuid, time) -> {
+                PersistentPlayerData ppd = new PersistentPlayerData(uuid);
+                added.add(new Record(uuid, ppd.getClaimBlockUnits(), time));
+            });
+
+            if (!added.isEmpty())
+                compact(added);
+        }
+
+        // Data in memory which was read before the times were filled in would otherwise write back the old time
+        resident.values().forEach(ppd -> {
+            if (ppd.getLastSeen() == PersistentPlayerData.UNKNOWN_LAST_SEEN)
+                ppd.setLastSeen(lastPlayed.getOrDefault(ppd.getUuid(), PersistentPlayerData.NEVER_SEEN));
+            else if (ppd.getLastSeen() == PersistentPlayerData.NEVER_SEEN && lastPlayed.containsKey(ppd.getUuid()))
+                ppd.setLastSeen(lastPlayed.get(ppd.getUuid()));
+        });
+    }
+
+    // Reads the data of the given player from disk, or creates new data if the player has no record
+    private PersistentPlayerData read(UUID uuid) {
+        synchronized (fileLock) {
+            RecordIndex index = this.index;
+            int i = index.find(uuid);
+            OverflowRecord overflowRecord = i < 0 ? index.overflow.get(uuid) : null;
+            if (i >= 0 || overflowRecord != null) {
+                try (RandomAccessFile raf = new RandomAccessFile(i >= 0 ? file : overflowFile, "r")) {
+                    raf.seek(HEADER_SIZE + (long) (i >= 0 ? i : overflowRecord.index) * RECORD_SIZE + VALUES_OFFSET);
+                    return new PersistentPlayerData(uuid, raf.readLong(), raf.readLong());
+                } catch (IOException ex) {
+                    RegionProtection.error("Failed to read the data of player " + uuid + ": " + ex.getMessage());
+                }
+            }
+        }
+
+        return new PersistentPlayerData(uuid);
+    }
+
+    /**
+     * Writes the data which changed since the last save to disk, and then drops the data of players who were not
+     * active recently from memory. The data of pinned players is always kept in memory. Records of new players are
+     * appended to the overflow file, which is merged into the sorted file once it grew large enough.
+     *
+     * @param pinned tests whether or not the data of a player is referenced elsewhere and must stay in memory.
+     * @throws IOException if an I/O error occurs.
+     */
+    public synchronized void save(Predicate<UUID> pinned) throws IOException {
+        // Take the values to write before writing them, so that any change made while saving stays dirty
+        List<Record> changed = new ArrayList<>();
+        resident.values().forEach(ppd -> {
+            if (ppd.isDirty())
+                changed.add(new Record(ppd));
+        });
+
+        if (!changed.isEmpty()) {
+            synchronized (fileLock) {
+                write(changed);
+                RecordIndex index = this.index;
+                if (index.overflowSize >= Math.max(MIN_COMPACTION_SIZE, index.size() / 16))
+                    compact(Collections.emptyList());
+            }
+
+            changed.forEach(record -> record.ppd.markStored(record.claimBlocks, record.lastSeen));
+        }
+
+        // Data which changed after it was written is kept until the next save
+        long cutoff = System.currentTimeMillis() - RESIDENT_TIME;
+        new ArrayList<>(resident.keySet()).forEach(uuid -> resident.computeIfPresent(uuid, (key, ppd) ->
+                ppd.getLastAccessed() < cutoff && !ppd.isDirty() && !pinned.test(key) ? null : ppd));
+    }
+
+    // Overwrites the records of the given players in place, appending the records of players who have none
+    private void write(List<Record> changed) throws IOException {
+        RecordIndex index = this.index;
+        try (RandomAccessFile main = new RandomAccessFile(file, "rw");
+             RandomAccessFile overflow = new RandomAccessFile(overflowFile, "rw")) {
+            for (Record record : changed) {
+                int i = index.find(record.uuid);
+                if (i >= 0) {
+                    main.seek(HEADER_SIZE + (long) i * RECORD_SIZE + VALUES_OFFSET);
+                    main.writeLong(record.claimBlocks);
+                    main.writeLong(record.lastSeen);
+                    index.lastSeen[i] = record.lastSeen;
+                    continue;
+                }
+
+                OverflowRecord overflowRecord = index.overflow.get(record.uuid);
+                if (overflowRecord == null) {
+                    overflowRecord = new OverflowRecord(index.overflowSize++, record.lastSeen);
+                    overflow.seek(HEADER_SIZE + (long) overflowRecord.index * RECORD_SIZE);
+                    writeRecord(overflow, record.uuid, record.claimBlocks, record.lastSeen);
+                    index.overflow.put(record.uuid, overflowRecord);
+                } else {
+                    overflow.seek(HEADER_SIZE + (long) overflowRecord.index * RECORD_SIZE + VALUES_OFFSET);
+                    overflow.writeLong(record.claimBlocks);
+                    overflow.writeLong(record.lastSeen);
+                    overflowRecord.lastSeen = record.lastSeen;
+                }
+            }
+        }
+    }
+
+    // Merges the overflow records and the given new records into the sorted file, and empties the overflow file
+    private void compact(List<Record> added) throws IOException {
+        RecordIndex index = this.index;
+        List<Record> records = new ArrayList<>(added);
+        int overflowCount = (int) ((overflowFile.length() - HEADER_SIZE) / RECORD_SIZE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(overflowFile)))) {
+            in.skipBytes(HEADER_SIZE);
+            for (int i = 0; i < overflowCount; ++i) {
+                Record record = new Record(new UUID(in.readLong(), in.readLong()), in.readLong(), in.readLong());
+                if (index.find(record.uuid) < 0)
+                    records.add(record);
+            }
+        }
+
+        records.sort(Comparator.comparing(record -> record.uuid));
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            in.skipBytes(HEADER_SIZE);
+            out.write(DataManager.PLAYER_DATA_FORMAT_VERSION);
+
+            long count = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+            Iterator<Record> iterator = records.iterator();
+            Record next = iterator.hasNext() ? iterator.next() : null;
+            for (long i = 0; i < count; ++i) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                long claimBlocks = in.readLong(), lastSeen = in.readLong();
+
+                // Insert the new records which come before this one
+                while (next != null && next.uuid.compareTo(uuid) < 0) {
+                    writeRecord(out, next.uuid, next.claimBlocks, next.lastSeen);
+                    next = iterator.hasNext() ? iterator.next() : null;
+                }
+
+                if (next != null && next.uuid.equals(uuid)) {
+                    writeRecord(out, next.uuid, next.claimBlocks, next.lastSeen);
+                    next = iterator.hasNext() ? iterator.next() : null;
+                } else
+                    writeRecord(out, uuid, claimBlocks, lastSeen);
+            }
+
+            while (next != null) {
+                writeRecord(out, next.uuid, next.claimBlocks, next.lastSeen);
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+        }
+
+        // If this is interrupted before the overflow file is emptied, its records are merged again next time
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        writeHeader(overflowFile);
+        this.index = readIndex();
+    }
+
+    private static void writeHeader(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(DataManager.PLAYER_DATA_FORMAT_VERSION);
+        }
+    }
+
+    private static void writeRecord(DataOutput out, UUID uuid, long claimBlocks, long lastSeen) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeLong(claimBlocks);
+        out.writeLong(lastSeen);
+    }
+
+    /**
+     * The UUIDs and last seen times of the records in the sorted file, in the same order, and of the records in the
+     * overflow file. Only the last seen times change, and only while holding the file lock.
+     */
+    private static final class RecordIndex {
+        final long[] mostSigBits;
+        final long[] leastSigBits;
+        final long[] lastSeen;
+        // Key: player UUID, value: the position and last seen time of the player's record in the overflow file
+        final Map<UUID, OverflowRecord> overflow;
+        // The number of records in the overflow file
+        int overflowSize;
+
+        RecordIndex(long[] mostSigBits, long[] leastSigBits, long[] lastSeen) {
+            this.mostSigBits = mostSigBits;
+            this.leastSigBits = leastSigBits;
+            this.lastSeen = lastSeen;
+            this.overflow = new ConcurrentHashMap<>();
+            this.overflowSize = 0;
+        }
+
+        int size() {
+            return mostSigBits.length;
+        }
+
+        // Returns the index of the given player's record in the sorted file, or -1 if it is not in that file
+        int find(UUID uuid) {
+            long most = uuid.getMostSignificantBits(), least = uuid.getLeastSignificantBits();
+            int low = 0, high = mostSigBits.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                // Same order as UUID.compareTo
+                int cmp = mostSigBits[mid] != most ? Long.compare(mostSigBits[mid], most)
+                        : Long.compare(leastSigBits[mid], least);
+                if (cmp < 0)
+                    low = mid + 1;
+                else if (cmp > 0)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+
+            return -1;
+        }
+
+        long getLastSeen(UUID uuid) {
+            int i = find(uuid);
+            if (i >= 0)
+                return lastSeen[i];
+
+            OverflowRecord record = overflow.get(uuid);
+            return record == null ? PersistentPlayerData.NEVER_SEEN : record.lastSeen;
+        }
+
+        boolean hasUnknownLastSeen() {
+            for (long time : lastSeen) {
+                if (time == PersistentPlayerData.UNKNOWN_LAST_SEEN)
+                    return true;
+            }
+
+            return overflow.values().stream().anyMatch(record -> record.lastSeen ==
+                    PersistentPlayerData.UNKNOWN_LAST_SEEN);
+        }
+    }
+
+    /**
+     * The position and last seen time of a record in the overflow file.
+     */
+    private static final class OverflowRecord {
+        final int index;
+        volatile long lastSeen;
+
+        OverflowRecord(int index, long lastSeen) {
+            this.index = index;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    /**
+     * The values of a player's data at the time it was collected for saving.
+     */
+    private static final class Record {
+        final PersistentPlayerData ppd;
+        final UUID uuid;
+        final long claimBlocks;
+        final long lastSeen;
+
+        Record(PersistentPlayerData ppd) {
+            this.ppd = ppd;
+            this.uuid = ppd.getUuid();
+            this.claimBlocks = ppd.getClaimBlockUnits();
+            this.lastSeen = ppd.getLastSeen();
+        }
+
+        Record(UUID uuid, long claimBlocks, long lastSeen) {
+            this.ppd = null;
+            this.uuid = uuid;
+            this.claimBlocks = claimBlocks;
+            this.lastSeen = lastSeen;
+        }
+
+        // Only used to carry a last seen time
+        Record(UUID uuid, long lastSeen) {
+            this(uuid, 0L, lastSeen);
+        }
+    }
+}
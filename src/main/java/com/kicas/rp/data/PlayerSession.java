@@ -1,9 +1,11 @@
 package com.kicas.rp.data;
 
 import com.kicas.rp.RegionProtection;
+import com.kicas.rp.data.flagdata.TrustLevel;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
@@ -11,23 +13,30 @@ import java.util.UUID;
  */
 public class PlayerSession {
     private final UUID uuid;
-    private double claimBlocks;
+    // Holds the claim block ledger, which is shared with the persistent data
+    private final PersistentPlayerData playerData;
     private boolean isInAdminRegionMode;
-    private boolean isIgnoringTrust;
+    // Read without synchronization by trust checks
+    private volatile boolean isIgnoringTrust;
     // All of the following can be null
     private RegionHighlighter currentHighlighter;
     private PlayerRegionAction action;
     private Region currentSelectedRegion;
     private Location lastClickedBlock;
+    // Direct-mapped cache of recent trust decisions, see getCachedTrustDecision
+    private final TrustDecision[] trustDecisions;
+
+    private static final int TRUST_DECISION_CACHE_SIZE = 32; // Must be a power of two
 
     public PlayerSession(PersistentPlayerData playerData) {
         this.uuid = playerData.getUuid();
-        this.claimBlocks = playerData.getClaimBlocks();
+        this.playerData = playerData;
         this.currentHighlighter = null;
         this.action = null;
         this.isInAdminRegionMode = false;
         this.currentSelectedRegion = null;
         this.lastClickedBlock = null;
+        this.trustDecisions = new TrustDecision[TRUST_DECISION_CACHE_SIZE];
     }
 
     /**
@@ -41,26 +50,37 @@ public class PlayerSession {
      * @return the number of claim blocks the associated player has.
      */
     public int getClaimBlocks() {
-        return (int) claimBlocks;
+        return playerData.getClaimBlocks();
     }
 
     /**
      * Adds the given number of claim blocks (or partial claim blocks) to the associated player's claim block count.
+     * This method can be called from any thread.
      *
      * @param amount the amount of blocks to add.
      */
     public void addClaimBlocks(double amount) {
-        claimBlocks += amount;
+        playerData.addClaimBlocks(amount);
     }
 
     /**
-     * Subtracts the given number of claim blocks (or partial claim blocks) from the associated player's claim block
-     * count.
+     * Subtracts the given number of claim blocks from the associated player's claim block count.
      *
      * @param amount the amount of blocks to subtract.
      */
     public void subtractClaimBlocks(int amount) {
-        claimBlocks -= amount;
+        playerData.addClaimBlocks(-amount);
+    }
+
+    /**
+     * Subtracts the given number of claim blocks from the associated player's claim block count if they have at least
+     * that many claim blocks, without any other thread modifying the count in between.
+     *
+     * @param amount the amount of blocks to subtract.
+     * @return true if the claim blocks were subtracted, false if the player does not have enough claim blocks.
+     */
+    public boolean trySpendClaimBlocks(long amount) {
+        return playerData.trySpendClaimBlocks(amount);
     }
 
     /**
@@ -169,6 +189,64 @@ public class PlayerSession {
      */
     public void setIgnoringTrust(boolean ignoringTrust) {
         isIgnoringTrust = ignoringTrust;
+        clearTrustDecisions();
+    }
+
+    /**
+     * Returns the cached decision of whether the associated player has the given trust level in the given region. A
+     * cached decision is only returned if it was made at the given trust epoch of the region.
+     *
+     * @param region the region.
+     * @param trust  the trust level.
+     * @param epoch  the current trust epoch of the region.
+     * @return the cached decision, or null if there is no valid cached decision.
+     */
+    public Boolean getCachedTrustDecision(Region region, TrustLevel trust, long epoch) {
+        TrustDecision decision = trustDecisions[trustDecisionIndex(region, trust)];
+        return decision != null && decision.region == region && decision.trust == trust && decision.epoch == epoch
+                ? decision.hasTrust : null;
+    }
+
+    /**
+     * Caches the decision of whether the associated player has the given trust level in the given region, replacing
+     * any decision cached in the same slot.
+     *
+     * @param region   the region.
+     * @param trust    the trust level.
+     * @param epoch    the trust epoch of the region the decision was made at.
+     * @param hasTrust the decision.
+     */
+    public void cacheTrustDecision(Region region, TrustLevel trust, long epoch, boolean hasTrust) {
+        trustDecisions[trustDecisionIndex(region, trust)] = new TrustDecision(region, trust, epoch, hasTrust);
+    }
+
+    /**
+     * Removes all cached trust decisions.
+     */
+    public void clearTrustDecisions() {
+        Arrays.fill(trustDecisions, null);
+    }
+
+    private static int trustDecisionIndex(Region region, TrustLevel trust) {
+        int hash = System.identityHashCode(region) * 31 + trust.ordinal();
+        return (hash ^ (hash >>> 16)) & (TRUST_DECISION_CACHE_SIZE - 1);
+    }
+
+    /**
+     * A cached trust decision. Entries are immutable so that they can be replaced without synchronization.
+     */
+    private static final class TrustDecision {
+        final Region region;
+        final TrustLevel trust;
+        final long epoch;
+        final boolean hasTrust;
+
+        TrustDecision(Region region, TrustLevel trust, long epoch, boolean hasTrust) {
+            this.region = region;
+            this.trust = trust;
+            this.epoch = epoch;
+            this.hasTrust = hasTrust;
+        }
     }
 
     /**
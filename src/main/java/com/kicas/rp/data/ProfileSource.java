@@ -0,0 +1,30 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.util.Pair;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A source of player profiles which is queried for players whose name or UUID is not known locally. Lookups are only
+ * ever performed off the main thread, so implementations are free to block.
+ */
+public interface ProfileSource {
+    /**
+     * Looks up the UUID of the player with the given username, along with the username as the player spells it.
+     *
+     * @param username the username, in any case.
+     * @return the UUID and the correctly capitalized username of the player, or null if there is no such player.
+     * @throws IOException if the lookup failed.
+     */
+    Pair<UUID, String> lookupProfile(String username) throws IOException;
+
+    /**
+     * Looks up the current username of the player with the given UUID.
+     *
+     * @param uuid the UUID.
+     * @return the current username of the player with the given UUID, or null if there is no such player.
+     * @throws IOException if the lookup failed.
+     */
+    String lookupUsername(UUID uuid) throws IOException;
+}
@@ -1,12 +1,12 @@
 package com.kicas.rp.data;
 
+import com.kicas.rp.RegionProtection;
 import com.kicas.rp.data.flagdata.TrustLevel;
 import com.kicas.rp.data.flagdata.TrustMeta;
 import com.kicas.rp.util.*;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
+import org.bukkit.block.BlockFace;
 
 import java.util.*;
 
@@ -14,26 +14,33 @@ import java.util.*;
  * Contains the data pertaining to a region. Regions can have child regions as well. These child regions are, to some
  * extent, managed by the parent region in terms of serialization, deserialization, and deletion. Child regions also
  * have a priority greater than or equal to the parent region. If their priority is equal to the parent region, then
- * they will adopt the flags of the parent region and are updated whenever the parent's flags change.
+ * they will adopt the flags of the parent region and are updated whenever the parent's flags change. The bounds of a
+ * region are stored as block coordinates, and are only converted to locations when they are requested as such.
  */
 public class Region extends FlagContainer {
     // Can be null, such as in default claims
     private String name;
     private int priority;
     private final World world;
-    private Location min, max;
+    // Block coordinates of the minimum and maximum vertices, both inclusive
+    private int minX, minY, minZ, maxX, maxY, maxZ;
     private Region parent;
     private boolean recentlyStolen;
     private final List<Region> children;
-
-    // Copies the given location
+    // Compiled on demand, and recompiled once the trust epoch of this region changes
+    private volatile TrustTable trustTable;
+    // The trust meta this region is registered as a holder of
+    private TrustMeta heldTrustMeta;
+    // The index of this region's world if this is an indexed parent region
+    private RegionIndex regionIndex;
+
+    // Copies the block coordinates of the given locations
     public Region(String name, int priority, UUID owner, Location min, Location max, Region parent, List<UUID> coOwners) {
         super(owner, coOwners);
         this.name = name;
         this.priority = priority;
         this.world = min.getWorld();
-        this.min = min.clone();
-        this.max = max.clone();
+        setBounds(min, max);
         this.parent = parent;
         this.recentlyStolen = false;
         this.children = new ArrayList<>();
@@ -50,8 +57,6 @@ public class Region extends FlagContainer {
         this.name = null;
         this.priority = 0;
         this.world = world;
-        this.min = null;
-        this.max = null;
         this.parent = null;
         this.children = new ArrayList<>();
     }
@@ -62,8 +67,6 @@ public class Region extends FlagContainer {
         this.name = null;
         this.priority = 0;
         this.world = parent.getWorld();
-        this.min = null;
-        this.max = null;
         this.parent = parent;
         this.children = new ArrayList<>();
     }
@@ -89,6 +92,8 @@ public class Region extends FlagContainer {
      */
     public void setName(String name) {
         this.name = name;
+        if (regionIndex != null)
+            regionIndex.reindex(this);
     }
 
     /**
@@ -169,6 +174,7 @@ public class Region extends FlagContainer {
      */
     public void setParent(Region parent) {
         this.parent = parent;
+        ownershipChanged();
     }
 
     /**
@@ -189,6 +195,7 @@ public class Region extends FlagContainer {
      */
     public void addCoOwner(UUID owner) {
         this.coOwners.add(owner);
+        ownershipChanged();
         children.forEach(child -> child.addCoOwner(owner));
     }
 
@@ -202,10 +209,100 @@ public class Region extends FlagContainer {
         if (!this.coOwners.remove(owner))
             return false;
 
+        ownershipChanged();
         children.forEach(child -> child.removeCoOwner(owner));
         return true;
     }
 
+    /**
+     * Registers this region with its current trust meta and updates the index of this region's world.
+     */
+    @Override
+    protected void ownershipChanged() {
+        super.ownershipChanged();
+
+        TrustMeta trustMeta = (TrustMeta) getRawFlags().get(RegionFlag.TRUST);
+        if (trustMeta != heldTrustMeta) {
+            if (heldTrustMeta != null)
+                heldTrustMeta.removeHolder(this);
+            if (trustMeta != null)
+                trustMeta.addHolder(this);
+            heldTrustMeta = trustMeta;
+        }
+
+        if (regionIndex != null)
+            regionIndex.reindex(this);
+    }
+
+    /**
+     * Unregisters this region from the trust meta it holds, so that a deleted region is no longer referenced by it.
+     */
+    void releaseTrustMeta() {
+        if (heldTrustMeta != null) {
+            heldTrustMeta.removeHolder(this);
+            heldTrustMeta = null;
+        }
+    }
+
+    /**
+     * Called by the trust meta of this region whenever it is modified.
+     */
+    public void trustChanged() {
+        if (regionIndex != null)
+            regionIndex.reindex(this);
+    }
+
+    /**
+     * Sets the index this region is a part of.
+     *
+     * @param regionIndex the index, or null if this region is no longer indexed.
+     */
+    void setRegionIndex(RegionIndex regionIndex) {
+        this.regionIndex = regionIndex;
+    }
+
+    /**
+     * Returns the trust epoch of this region, which changes whenever the trust or ownership of this region or its
+     * parent changes.
+     *
+     * @return the trust epoch of this region.
+     */
+    public long getTrustEpoch() {
+        long epoch = Math.max(getOwnershipEpoch(), this.<TrustMeta>getFlagMeta(RegionFlag.TRUST).getEpoch());
+        if (parent != null) {
+            epoch = Math.max(epoch, Math.max(parent.getOwnershipEpoch(),
+                    parent.<TrustMeta>getFlagMeta(RegionFlag.TRUST).getEpoch()));
+        }
+
+        return epoch;
+    }
+
+    /**
+     * Returns the compiled trust table of this region, compiling it first if the trust or ownership of this region
+     * changed since it was last compiled.
+     *
+     * @return the trust table of this region.
+     */
+    public TrustTable getTrustTable() {
+        // The epoch is taken before compiling so that changes made during compilation cause a recompilation
+        return getTrustTable(getTrustEpoch());
+    }
+
+    /**
+     * Returns the compiled trust table of this region for the given trust epoch, which should have been obtained from
+     * getTrustEpoch right before calling this method.
+     *
+     * @param epoch the current trust epoch of this region.
+     * @return the trust table of this region.
+     */
+    public TrustTable getTrustTable(long epoch) {
+        TrustTable table = trustTable;
+        if (table == null || table.getEpoch() != epoch)
+            trustTable = table = new TrustTable(this, epoch);
+
+        return table;
+    }
+
     /**
      * Returns whether or not the given location is within this region in 3D space, including if the location is on the
      * edge of this region.
@@ -214,9 +311,22 @@ public class Region extends FlagContainer {
      * @return true if the given location is in this region, false otherwise.
      */
     public boolean contains(Location loc) {
-        return  min.getBlockX() <= loc.getBlockX() && loc.getBlockX() <= max.getBlockX() &&
-                min.getBlockY() <= loc.getBlockY() && loc.getBlockY() <= max.getBlockY() &&
-                min.getBlockZ() <= loc.getBlockZ() && loc.getBlockZ() <= max.getBlockZ();
+        return contains(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    }
+
+    /**
+     * Returns whether or not the given block coordinates are within this region in 3D space, including if they are on
+     * the edge of this region.
+     *
+     * @param x the x-coordinate.
+     * @param y the y-coordinate.
+     * @param z the z-coordinate.
+     * @return true if the given block coordinates are in this region, false otherwise.
+     */
+    public boolean contains(int x, int y, int z) {
+        return  minX <= x && x <= maxX &&
+                minY <= y && y <= maxY &&
+                minZ <= z && z <= maxZ;
     }
 
     /**
@@ -226,8 +336,18 @@ public class Region extends FlagContainer {
      * @return true if the given location is in this region ignoring the y-axis, false otherwise.
      */
     public boolean containsIgnoreY(Location loc) {
-        return  min.getBlockX() <= loc.getBlockX() && loc.getBlockX() <= max.getBlockX() &&
-                min.getBlockZ() <= loc.getBlockZ() && loc.getBlockZ() <= max.getBlockZ();
+        return containsIgnoreY(loc.getBlockX(), loc.getBlockZ());
+    }
+
+    /**
+     * Returns whether or not the given block coordinates are within this region ignoring any restriction in the y-axis.
+     *
+     * @param x the x-coordinate.
+     * @param z the z-coordinate.
+     * @return true if the given block coordinates are in this region ignoring the y-axis, false otherwise.
+     */
+    public boolean containsIgnoreY(int x, int z) {
+        return minX <= x && x <= maxX && minZ <= z && z <= maxZ;
     }
 
     /**
@@ -237,7 +357,7 @@ public class Region extends FlagContainer {
      * @return true if the given region is completely within this region, false otherwise.
      */
     public boolean contains(Region region) {
-        return contains(region.getMin()) && contains(region.getMax());
+        return contains(region.minX, region.minY, region.minZ) && contains(region.maxX, region.maxY, region.maxZ);
     }
 
     /**
@@ -248,9 +368,9 @@ public class Region extends FlagContainer {
      * @return true if this region and the given region overlap, false otherwise.
      */
     public boolean overlaps(Region other) {
-        return max.getBlockX() >= other.getMin().getBlockX() && min.getBlockX() <= other.max.getBlockX() &&
-                max.getBlockY() >= other.getMin().getBlockY() && min.getBlockY() <= other.max.getBlockY() &&
-                max.getBlockZ() >= other.getMin().getBlockZ() && min.getBlockZ() <= other.max.getBlockZ();
+        return maxX >= other.minX && minX <= other.maxX &&
+                maxY >= other.minY && minY <= other.maxY &&
+                maxZ >= other.minZ && minZ <= other.maxZ;
     }
 
     /**
@@ -260,22 +380,64 @@ public class Region extends FlagContainer {
      * @return true if the given location is a corner of this region, false otherwise.
      */
     public boolean isCorner(Location loc) {
-        return (loc.getBlockX() == min.getBlockX() || loc.getBlockX() == max.getBlockX()) &&
-                (loc.getBlockZ() == min.getBlockZ() || loc.getBlockZ() == max.getBlockZ());
+        return (loc.getBlockX() == minX || loc.getBlockX() == maxX) &&
+                (loc.getBlockZ() == minZ || loc.getBlockZ() == maxZ);
     }
 
     /**
-     * @return the minimum (more negative) vertex of this region.
+     * @return a new location at the minimum (more negative) vertex of this region.
      */
     public Location getMin() {
-        return min;
+        return new Location(world, minX, minY, minZ);
     }
 
     /**
-     * @return the maximum (more positive) vertex of this region.
+     * @return a new location at the maximum (more positive) vertex of this region.
      */
     public Location getMax() {
-        return max;
+        return new Location(world, maxX, maxY, maxZ);
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    /**
+     * Sets the y-coordinate of the bottom of this region.
+     *
+     * @param y the new minimum y-coordinate.
+     */
+    public void setMinY(int y) {
+        minY = y;
+    }
+
+    /**
+     * Sets the y-coordinate of the top of this region.
+     *
+     * @param y the new maximum y-coordinate.
+     */
+    public void setMaxY(int y) {
+        maxY = y;
     }
 
     /**
@@ -286,7 +448,7 @@ public class Region extends FlagContainer {
      */
     @Override
     public Pair<Location, Location> getBounds() {
-        return new Pair<>(min.clone(), max.clone());
+        return new Pair<>(getMin(), getMax());
     }
 
     /**
@@ -304,42 +466,45 @@ public class Region extends FlagContainer {
         if (containsIgnoreY(location))
             return 0;
 
-        // Check the diagonal areas that require less computation
-        location = location.clone();
-        location.setY(0);
-        if (location.getX() < min.getX() && location.getZ() > max.getZ())
-            return location.distance(new Location(min.getWorld(), min.getX(), 0, max.getZ()));
-        if (location.getX() > max.getX() && location.getZ() < min.getZ())
-            return location.distance(new Location(min.getWorld(), max.getX(), 0, min.getZ()));
-
-        // Check the other two diagonal areas
-        Location min0 = min.clone(), max0 = max.clone();
-        min0.setY(0);
-        max0.setY(0);
-        if (location.getX() < min.getX() && location.getZ() < min.getZ())
-            return location.distance(min0);
-        if (location.getX() > max.getX() && location.getZ() > max.getZ())
-            return location.distance(max0);
+        double x = location.getX(), z = location.getZ();
+
+        // Check the diagonal areas
+        if (x < minX && z > maxZ)
+            return Math.hypot(x - minX, z - maxZ);
+        if (x > maxX && z < minZ)
+            return Math.hypot(x - maxX, z - minZ);
+        if (x < minX && z < minZ)
+            return Math.hypot(x - minX, z - minZ);
+        if (x > maxX && z > maxZ)
+            return Math.hypot(x - maxX, z - maxZ);
 
         // Check the other four areas aligned with this region
-        if (location.getX() > min.getX() && location.getX() < max.getX())
-            return location.getZ() < min.getZ() ? min.getZ() - location.getZ() : location.getZ() - max.getZ();
-        if (location.getZ() > min.getZ() && location.getZ() < max.getZ())
-            return location.getX() < min.getX() ? min.getX() - location.getX() : location.getX() - max.getX();
+        if (x > minX && x < maxX)
+            return z < minZ ? minZ - z : z - maxZ;
+        if (z > minZ && z < maxZ)
+            return x < minX ? minX - x : x - maxX;
 
         // This is an unreachable statement
         return Double.MAX_VALUE;
     }
 
     /**
-     * Sets the bounds of this region by copying the given minimum and maximum vertices respectively.
+     * Sets the bounds of this region to the block coordinates of the given minimum and maximum vertices respectively.
      *
      * @param bounds the bounds of the region. Minimum and maximum vertex respectively.
      */
     @Override
     public void setBounds(Pair<Location, Location> bounds) {
-        min = bounds.getFirst().clone();
-        max = bounds.getSecond().clone();
+        setBounds(bounds.getFirst(), bounds.getSecond());
+    }
+
+    private void setBounds(Location min, Location max) {
+        minX = min.getBlockX();
+        minY = min.getBlockY();
+        minZ = min.getBlockZ();
+        maxX = max.getBlockX();
+        maxY = max.getBlockY();
+        maxZ = max.getBlockZ();
     }
 
     /**
@@ -350,32 +515,52 @@ public class Region extends FlagContainer {
      */
     public void moveVertex(Location originalVertex, Location newVertex) {
         // Update x
-        if (min.getBlockX() == originalVertex.getBlockX())
-            min.setX(newVertex.getX());
+        if (minX == originalVertex.getBlockX())
+            minX = newVertex.getBlockX();
         else
-            max.setX(newVertex.getX());
+            maxX = newVertex.getBlockX();
 
         // Update z
-        if (min.getBlockZ() == originalVertex.getBlockZ())
-            min.setZ(newVertex.getBlockZ());
+        if (minZ == originalVertex.getBlockZ())
+            minZ = newVertex.getBlockZ();
         else
-            max.setZ(newVertex.getBlockZ());
+            maxZ = newVertex.getBlockZ();
 
         // Handle the extraneous case where the player moves the vertex so far that the relative location of the vertex
         // to the other four changes, changing the min and max
         reevaluateBounds();
     }
 
+    /**
+     * Moves the side of this region facing the given direction outwards by the given amount, or inwards if the amount
+     * is negative.
+     *
+     * @param direction the direction of the side to move, which should be one of the four cardinal directions or up or
+     *                  down.
+     * @param amount    the amount by which to move the side.
+     */
+    public void expand(BlockFace direction, int amount) {
+        if (direction.getModX() + direction.getModY() + direction.getModZ() > 0) {
+            maxX += direction.getModX() * amount;
+            maxY += direction.getModY() * amount;
+            maxZ += direction.getModZ() * amount;
+        } else {
+            minX += direction.getModX() * amount;
+            minY += direction.getModY() * amount;
+            minZ += direction.getModZ() * amount;
+        }
+    }
+
     /**
      * Re-evaluates the minimum and maximum locations of the region. This method should be called if the region could
      * have been contorted to such an extent that the original minimum or maximum location is not anymore.
      */
     public void reevaluateBounds() {
-        Location oldMin = min.clone();
-        min.setX(Math.min(min.getX(), max.getX()));
-        min.setZ(Math.min(min.getZ(), max.getZ()));
-        max.setX(Math.max(oldMin.getX(), max.getX()));
-        max.setZ(Math.max(oldMin.getZ(), max.getZ()));
+        int oldMinX = minX, oldMinZ = minZ;
+        minX = Math.min(minX, maxX);
+        minZ = Math.min(minZ, maxZ);
+        maxX = Math.max(oldMinX, maxX);
+        maxZ = Math.max(oldMinZ, maxZ);
     }
 
     /**
@@ -384,7 +569,7 @@ public class Region extends FlagContainer {
      * @return the area of this region.
      */
     public long area() {
-        return (long) (1 + max.getBlockX() - min.getBlockX()) * (long) (1 + max.getBlockZ() - min.getBlockZ());
+        return (long) (1 + maxX - minX) * (long) (1 + maxZ - minZ);
     }
 
     /**
@@ -399,41 +584,39 @@ public class Region extends FlagContainer {
         if (isAdminOwned() || expirationTime == 0)
             return false;
 
-        // Find the most recent login
-        Map<TrustLevel, List<UUID>> trustList = this.<TrustMeta>getFlagMeta(RegionFlag.TRUST).getTrustList();
-        long mostRecentLogin = 0;
-        for (Map.Entry<TrustLevel, List<UUID>> entry : trustList.entrySet()) {
-            // Trust check
-            if (!entry.getKey().isAtLeast(TrustLevel.CONTAINER))
-                continue;
-
-            for (UUID uuid : entry.getValue()) {
-                OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-                if (offlinePlayer.isOnline())
-                    return false;
-                if (offlinePlayer.getLastPlayed() > mostRecentLogin)
-                    mostRecentLogin = offlinePlayer.getLastPlayed();
-            }
-        }
+        // Members may look inactive until their last seen times are known
+        if (!RegionProtection.getDataManager().isLastSeenKnown())
+            return false;
 
-        // Check co-owners
-        for (UUID coOwner : coOwners) {
-            OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(coOwner);
-            if (offlinePlayer.isOnline())
-                return false;
-            if (offlinePlayer.getLastPlayed() > mostRecentLogin)
-                mostRecentLogin = offlinePlayer.getLastPlayed();
-        }
+        long now = System.currentTimeMillis();
+        RegionIndex index = regionIndex;
+        return index == null ? now - getLastActivity() > expirationTime : index.hasExpired(this, expirationTime, now);
+    }
+
+    /**
+     * Returns the most recent time at which the owner, a co-owner, or a trustee with at least container trust of this
+     * region was seen on the server. If any of them is online, then the current time is returned.
+     *
+     * @return the time of the most recent activity in this region in milliseconds.
+     */
+    public long getLastActivity() {
+        DataManager dm = RegionProtection.getDataManager();
 
         // Don't forget the owner
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(owner);
-        if (offlinePlayer.isOnline())
-            return false;
-        if (offlinePlayer.getLastPlayed() > mostRecentLogin)
-            mostRecentLogin = offlinePlayer.getLastPlayed();
+        long mostRecentLogin = dm.getLastSeen(owner);
+
+        // Check co-owners
+        for (UUID coOwner : coOwners)
+            mostRecentLogin = Math.max(mostRecentLogin, dm.getLastSeen(coOwner));
+
+        // Check the trustees
+        for (Map.Entry<UUID, TrustLevel> entry : this.<TrustMeta>getFlagMeta(RegionFlag.TRUST).getRawTrustDataCopy()
+                .entrySet()) {
+            if (entry.getValue().isAtLeast(TrustLevel.CONTAINER))
+                mostRecentLogin = Math.max(mostRecentLogin, dm.getLastSeen(entry.getKey()));
+        }
 
-        // Perform the check
-        return (System.currentTimeMillis() - mostRecentLogin) > expirationTime;
+        return mostRecentLogin;
     }
 
     /**
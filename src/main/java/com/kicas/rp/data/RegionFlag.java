@@ -272,14 +272,14 @@ public enum RegionFlag {
 
     /**
      * Registers the given flag with the given region default value, and given function to get the default value for a
-     * world.
+     * world. The region default value is interned, so containers explicitly set to the default share it.
      *
      * @param flag          the flag to register default values for.
      * @param regionDefault the region default value.
      * @param worldDefault  the function to get world default values.
      */
     private static void registerDefault(RegionFlag flag, Object regionDefault, Function<World, Object> worldDefault) {
-        DEFAULT_VALUES.put(flag, new Pair<>(regionDefault, worldDefault));
+        DEFAULT_VALUES.put(flag, new Pair<>(FlagMetaPool.internValue(regionDefault), worldDefault));
     }
 
     /**
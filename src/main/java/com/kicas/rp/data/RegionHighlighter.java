@@ -2,33 +2,70 @@ package com.kicas.rp.data;
 
 import com.kicas.rp.RegionProtection;
 import org.bukkit.Bukkit;
+import org.bukkit.HeightMap;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.block.Block;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
 import org.bukkit.entity.Player;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
- * Highlights a region or collection of regions client-side for a certain player.
+ * Highlights a region or collection of regions client-side for a certain player. The marker columns are chosen when
+ * the highlighter is created, and the height of each marker is taken from the world's heightmap unless the player is
+ * below the surface, after which all changes are sent to the player at once. If the highlight mode in the config is
+ * set to particles, then the edges of the regions are drawn with particles instead, which needs neither world reads
+ * nor reverting.
  */
 public class RegionHighlighter {
-    private final Player player;
-    // Store the original blocks for reversion
-    private final Map<Location, Material> changes;
+    // The radius around the player in which markers are shown by default
+    private static final double DEFAULT_RADIUS = 100;
+
+    final Player player;
+    final World world;
+    // The player's position when this highlighter was created
+    private final double originX, originZ;
+    private final int originY;
+    // Markers further away from the player's initial position are left out
+    private final double radius;
+    // Key: packed x-z column, value: the material to display there
+    final Map<Long, Material> markers;
+    // The particle outline shown instead of the markers, or null if fake blocks are used
+    private final ParticleOutline outline;
+    // Store the changed locations for reversion, these are only known once the changes were sent
+    private Map<Location, Material> changes;
     // Task ID of the delayed task to revert the client-side changes
     private int removalTaskId;
     private boolean complete;
+    private boolean removed;
 
-    public RegionHighlighter(Player player, Collection<Region> regions, Material lightSource, Material block,
-                             boolean includeChildren) {
+    RegionHighlighter(Player player, Collection<Region> regions, Material lightSource, Material block,
+                      boolean includeChildren, double radius) {
+        Location location = player.getLocation();
         this.player = player;
-        this.changes = new HashMap<>();
+        this.world = player.getWorld();
+        this.originX = location.getX();
+        this.originZ = location.getZ();
+        this.originY = Math.max(world.getMinHeight(), Math.min(location.getBlockY(), world.getMaxHeight() - 1));
+        this.radius = radius;
+        this.markers = new LinkedHashMap<>();
+        this.changes = Collections.emptyMap();
+        this.removalTaskId = -1;
         this.complete = false;
-        initBlocks(regions, lightSource, block, includeChildren);
+        this.removed = false;
+
+        if ("particles".equalsIgnoreCase(RegionProtection.getRPConfig().getString("general.highlight-mode"))) {
+            this.outline = new ParticleOutline(player, regions, block, includeChildren);
+        } else {
+            this.outline = null;
+            initBlocks(regions, lightSource, block, includeChildren);
+        }
+    }
+
+    public RegionHighlighter(Player player, Collection<Region> regions, Material lightSource, Material block,
+                             boolean includeChildren) {
+        this(player, regions, lightSource, block, includeChildren, DEFAULT_RADIUS);
     }
 
     public RegionHighlighter(Player player, Collection<Region> regions, boolean includeChildren) {
@@ -52,8 +89,8 @@ public class RegionHighlighter {
     }
 
     /**
-     * Initialize the changes and saves the original blocks. If the light source or block is null, the default materials
-     * will be used, with parent regions using glowstone and gold, and child regions using iron blocks and sea lanterns.
+     * Initialize the marker columns. If the light source or block is null, the default materials will be used, with
+     * parent regions using glowstone and gold, and child regions using iron blocks and sea lanterns.
      *
      * @param regions         the regions to highlight.
      * @param lightSource     the light source to use, or null if the default should be used.
@@ -69,35 +106,35 @@ public class RegionHighlighter {
             Material bk = block == null ? (region.hasParent() ? Material.IRON_BLOCK : Material.GOLD_BLOCK)
                     : block;
 
+            int minX = region.getMinX(), minZ = region.getMinZ(),
+                    maxX = region.getMaxX(), maxZ = region.getMaxZ();
+
             // Corners
-            putChange(region.getMin(), ls);
-            putChange(region.getMin().clone().add(1, 0, 0), bk);
-            putChange(region.getMin().clone().add(0, 0, 1), bk);
+            putChange(minX, minZ, ls);
+            putChange(minX + 1, minZ, bk);
+            putChange(minX, minZ + 1, bk);
 
-            putChange(region.getMax(), ls);
-            putChange(region.getMax().clone().subtract(1, 0, 0), bk);
-            putChange(region.getMax().clone().subtract(0, 0, 1), bk);
+            putChange(maxX, maxZ, ls);
+            putChange(maxX - 1, maxZ, bk);
+            putChange(maxX, maxZ - 1, bk);
 
-            Location vertex = new Location(region.getWorld(), region.getMin().getX(), 0,
-                    region.getMax().getZ());
-            putChange(vertex, ls);
-            putChange(vertex.clone().add(1, 0, 0), bk);
-            putChange(vertex.clone().subtract(0, 0, 1), bk);
+            putChange(minX, maxZ, ls);
+            putChange(minX + 1, maxZ, bk);
+            putChange(minX, maxZ - 1, bk);
 
-            vertex = new Location(region.getWorld(), region.getMax().getX(), 0, region.getMin().getZ());
-            putChange(vertex, ls);
-            putChange(vertex.clone().subtract(1, 0, 0), bk);
-            putChange(vertex.clone().add(0, 0, 1), bk);
+            putChange(maxX, minZ, ls);
+            putChange(maxX - 1, minZ, bk);
+            putChange(maxX, minZ + 1, bk);
 
             // Sides
-            for (int i = region.getMin().getBlockX() + 10; i < region.getMax().getBlockX() - 5; i += 10) {
-                putChange(new Location(region.getWorld(), i, 0, region.getMin().getZ()), bk);
-                putChange(new Location(region.getWorld(), i, 0, region.getMax().getZ()), bk);
+            for (int i = minX + 10; i < maxX - 5; i += 10) {
+                putChange(i, minZ, bk);
+                putChange(i, maxZ, bk);
             }
 
-            for (int i = region.getMin().getBlockZ() + 10; i < region.getMax().getBlockZ() - 5; i += 10) {
-                putChange(new Location(region.getWorld(), region.getMin().getX(), 0, i), bk);
-                putChange(new Location(region.getWorld(), region.getMax().getX(), 0, i), bk);
+            for (int i = minZ + 10; i < maxZ - 5; i += 10) {
+                putChange(minX, i, bk);
+                putChange(maxX, i, bk);
             }
 
             if (includeChildren)
@@ -106,14 +143,35 @@ public class RegionHighlighter {
     }
 
     /**
-     * Sends the client-side changes to the player this object was initialized with.
+     * Resolves the height of each marker and then sends the client-side changes to the player this object was
+     * initialized with in a single batch. Only markers in loaded chunks are shown.
      */
     public void showChanges() {
-        changes.forEach((loc, mat) -> {
-            if (distanceCheck(loc))
-                player.sendBlockChange(loc, mat.createBlockData());
+        if (outline != null) {
+            RegionProtection.getParticleRenderer().add(outline);
+            scheduleRemoval();
+            return;
+        }
+
+        if (removed || !player.isOnline())
+            return;
+
+        Map<Location, Material> resolved = new LinkedHashMap<>();
+        markers.forEach((column, material) -> {
+            int x = unpackX(column), z = unpackZ(column);
+            if (world.isChunkLoaded(x >> 4, z >> 4))
+                resolved.put(new Location(world, x, findReplacementY(x, z, originY), z), material);
         });
 
+        changes = resolved;
+        List<BlockState> states = new ArrayList<>(changes.size());
+        changes.forEach((loc, mat) -> states.add(mat.createBlockData().createBlockState().copy(loc)));
+        player.sendBlockChanges(states);
+        scheduleRemoval();
+    }
+
+    // Hides the highlight again after a minute
+    private void scheduleRemoval() {
         removalTaskId = Bukkit.getScheduler().runTaskLater(RegionProtection.getInstance(), () -> {
             revertChanges();
             setComplete();
@@ -121,17 +179,20 @@ public class RegionHighlighter {
     }
 
     /**
-     * Reverts the changes shows by the showChanges method.
+     * Reverts the changes shows by the showChanges method in a single batch.
      */
     private void revertChanges() {
-        if (player.isOnline()) {
+        if (outline != null)
+            RegionProtection.getParticleRenderer().remove(outline);
+        else if (player.isOnline() && !changes.isEmpty()) {
+            List<BlockState> states = new ArrayList<>(changes.size());
             changes.keySet().forEach(loc -> {
-                if (distanceCheck(loc)) {
-                    Block block = loc.getBlock();
-                    if (block != null)
-                        player.sendBlockChange(loc, block.getBlockData());
-                }
+                // Avoid loading chunks, the client does not have unloaded chunks either
+                if (world.isChunkLoaded(loc.getBlockX() >> 4, loc.getBlockZ() >> 4))
+                    states.add(actualState(loc));
             });
+
+            player.sendBlockChanges(states);
         }
     }
 
@@ -139,8 +200,17 @@ public class RegionHighlighter {
      * Cancels the automatic removal task and removes the client-side changes if the player is online.
      */
     public void remove() {
+        removed = true;
         revertChanges();
-        Bukkit.getScheduler().cancelTask(removalTaskId);
+        if (removalTaskId != -1)
+            Bukkit.getScheduler().cancelTask(removalTaskId);
+    }
+
+    /**
+     * @return true if the regions are drawn with particles rather than with fake blocks, false otherwise.
+     */
+    boolean isParticleMode() {
+        return outline != null;
     }
 
     /**
@@ -154,59 +224,91 @@ public class RegionHighlighter {
     /**
      * Sets the status of this highlighter to complete.
      */
-    private void setComplete() {
+    void setComplete() {
         complete = true;
     }
 
     /**
-     * Adds or overwrites the change for the given location and also stores the original data if it's not already
-     * stored if the given location is within 100 blocks horizontally of the player.
+     * Adds or overwrites the marker for the given column if the column is within the radius of this highlighter
+     * horizontally of the player.
      *
-     * @param location    the location to change.
-     * @param replacement the material to replace the location with.
+     * @param x           the x-coordinate of the column.
+     * @param z           the z-coordinate of the column.
+     * @param replacement the material to replace the marker block with.
      */
-    private void putChange(Location location, Material replacement) {
-        if (distanceCheck(location)) {
-            location = findReplacementLocation(location.clone());
-            changes.put(location, replacement);
-        }
+    private void putChange(int x, int z, Material replacement) {
+        if (distanceCheck(x, z))
+            markers.put(pack(x, z), replacement);
+    }
+
+    /**
+     * @param x the x-coordinate.
+     * @param z the z-coordinate.
+     * @return true if the given coordinates on the x-z plane are within the radius of this highlighter of the player.
+     */
+    private boolean distanceCheck(int x, int z) {
+        double dx = x - originX, dz = z - originZ;
+        return dx * dx + dz * dz < radius * radius;
     }
 
     /**
-     * @param location the location to check.
-     * @return true if the given location on the x-z plane is within 100 blocks of the player.
+     * Returns a block state holding the actual block data at the given location, without copying any tile entity data,
+     * which is all the client needs to revert a marker.
+     *
+     * @param loc the location.
+     * @return the actual block state at the given location.
      */
-    private boolean distanceCheck(Location location) {
-        double dx = location.getX() - player.getLocation().getX(), dz = location.getZ() - player.getLocation().getZ();
-        return dx * dx + dz * dz < 100 * 100;
+    BlockState actualState(Location loc) {
+        return world.getBlockData(loc).createBlockState().copy(loc);
     }
 
     /**
-     * Make the block you want to display more likely to be visible to the player
+     * Make the block you want to display more likely to be visible to the player. The column must be in a loaded
+     * chunk.
      *
-     * @param replacement input block location
-     * @return A location with modified Y to be on surface closest to the players foot level
+     * @param x      the x-coordinate of the column.
+     * @param z      the z-coordinate of the column.
+     * @param startY the player's foot level.
+     * @return the y-coordinate of the surface closest to the player's foot level
      */
-    private Location findReplacementLocation(Location replacement) {
-        replacement.setY(Math.min(player.getLocation().getBlockY(), player.getWorld().getMaxHeight()));
+    int findReplacementY(int x, int z, int startY) {
+        // At or above the surface, the closest ground below the player is the top of the column
+        int surfaceY = world.getHighestBlockYAt(x, z, HeightMap.MOTION_BLOCKING);
+        if (startY >= surfaceY)
+            return surfaceY;
+
+        int y = startY, minY = world.getMinHeight();
 
         // We don't go from the max height down in case the player is inside a cave
-        if (replacement.getBlock().getType().isSolid() || replacement.getBlock().isLiquid()) {
-            // Replacement is in the ground, so we need to move up
-            while ((replacement.getBlock().getType().isSolid() || replacement.getBlock().isLiquid())
-                    && replacement.getBlockY() < replacement.getWorld().getMaxHeight()) {
-                replacement.setY(replacement.getY() + 1);
-            }
+        if (isGround(world.getType(x, y, z))) {
+            // Replacement is in the ground, so we need to move up, but never past the surface
+            while (y < surfaceY && isGround(world.getType(x, y, z)))
+                ++y;
 
-            replacement.setY(replacement.getY() - 1); // make sure it's in the ground and not above it
+            if (!isGround(world.getType(x, y, z)))
+                --y; // make sure it's in the ground and not above it
         } else {
             // Replacement is in the air, so we need to move down
-            while (!replacement.getBlock().getType().isSolid() && !replacement.getBlock().isLiquid()
-                    && replacement.getBlockY() > 0) {
-                replacement.setY(replacement.getY() - 1);
-            }
+            while (y > minY && !isGround(world.getType(x, y, z)))
+                --y;
         }
 
-        return replacement;
+        return y;
+    }
+
+    private static boolean isGround(Material material) {
+        return material.isSolid() || material == Material.WATER || material == Material.LAVA;
+    }
+
+    static long pack(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    static int unpackZ(long packed) {
+        return (int) packed;
     }
 }
@@ -0,0 +1,352 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.RegionProtection;
+import com.kicas.rp.data.flagdata.TrustLevel;
+import com.kicas.rp.data.flagdata.TrustMeta;
+import com.kicas.rp.util.PrefixTrie;
+
+import java.util.*;
+
+/**
+ * Indexes the regions of a world by name, and the parent regions by the players related to them, so that regions can
+ * be found by name and the regions a player owns, co-owns or is trusted in can be found without scanning every region
+ * in the world. Regions notify the index of their world whenever their name, ownership or trust changes.
+ */
+public class RegionIndex {
+    // Key: region name, value: the regions with that name, since claim names do not have to be unique
+    private final Map<String, List<Region>> byName;
+    // Region names for tab completion, split by whether the region is admin-owned
+    private final PrefixTrie adminNames;
+    private final PrefixTrie playerNames;
+    // Key: owner UUID, value: the named parent regions of that owner by name
+    private final Map<UUID, Map<String, List<Region>>> ownedByName;
+    // Key: player UUID, value: the parent regions related to that player
+    private final Map<UUID, Set<Region>> owned;
+    private final Map<UUID, Set<Region>> coOwned;
+    private final Map<UUID, Map<Region, TrustLevel>> trusted;
+    // Claims ordered by the last activity of their members, used to find expired claims without checking every claim
+    private final PriorityQueue<ScheduledExpiration> expirationQueue;
+    // Key: claim, value: the last activity the claim is currently queued with
+    private final Map<Region, Long> lastActivities;
+    // What each region was last indexed with, so it can be removed again after it changed
+    private final Map<Region, IndexedState> indexedStates;
+
+    public RegionIndex() {
+        this.byName = new HashMap<>();
+        this.adminNames = new PrefixTrie();
+        this.playerNames = new PrefixTrie();
+        this.ownedByName = new HashMap<>();
+        this.owned = new HashMap<>();
+        this.coOwned = new HashMap<>();
+        this.trusted = new HashMap<>();
+        this.expirationQueue = new PriorityQueue<>();
+        this.lastActivities = new HashMap<>();
+        this.indexedStates = new HashMap<>();
+    }
+
+    /**
+     * Adds the given region to this index. Child regions are only indexed by name. The region will notify this index
+     * of any changes until it is removed.
+     *
+     * @param region the region to add.
+     */
+    public synchronized void add(Region region) {
+        IndexedState state = new IndexedState(region);
+        indexedStates.put(region, state);
+        if (state.name != null) {
+            byName.computeIfAbsent(state.name, key -> new ArrayList<>(1)).add(region);
+            (state.adminOwned ? adminNames : playerNames).add(state.name);
+        }
+
+        if (state.isParent) {
+            if (state.name != null) {
+                ownedByName.computeIfAbsent(state.owner, key -> new HashMap<>())
+                        .computeIfAbsent(state.name, key -> new ArrayList<>(1)).add(region);
+            }
+
+            owned.computeIfAbsent(state.owner, key -> new LinkedHashSet<>()).add(region);
+            state.coOwners.forEach(uuid -> coOwned.computeIfAbsent(uuid, key -> new LinkedHashSet<>()).add(region));
+            state.trustData.forEach((uuid, trust) ->
+                    trusted.computeIfAbsent(uuid, key -> new LinkedHashMap<>()).put(region, trust));
+
+            // The members of the claim may have changed, so it is queued again with their last activity
+            if (!state.adminOwned)
+                schedule(region, state.getLastActivity());
+        }
+
+        region.setRegionIndex(this);
+    }
+
+    /**
+     * Removes the given region from this index.
+     *
+     * @param region the region to remove.
+     */
+    public synchronized void remove(Region region) {
+        IndexedState state = indexedStates.remove(region);
+        if (state == null)
+            return;
+
+        region.setRegionIndex(null);
+        if (state.name != null) {
+            removeFrom(byName, state.name, region);
+            (state.adminOwned ? adminNames : playerNames).remove(state.name);
+        }
+
+        if (!state.isParent)
+            return;
+
+        // Queued entries of the claim are skipped once it has no last activity anymore
+        lastActivities.remove(region);
+
+        if (state.name != null) {
+            Map<String, List<Region>> ownerNames = ownedByName.get(state.owner);
+            if (ownerNames != null) {
+                removeFrom(ownerNames, state.name, region);
+                if (ownerNames.isEmpty())
+                    ownedByName.remove(state.owner);
+            }
+        }
+
+        removeFrom(owned, state.owner, region);
+        state.coOwners.forEach(uuid -> removeFrom(coOwned, uuid, region));
+        state.trustData.keySet().forEach(uuid -> {
+            Map<Region, TrustLevel> regions = trusted.get(uuid);
+            if (regions != null) {
+                regions.remove(region);
+                if (regions.isEmpty())
+                    trusted.remove(uuid);
+            }
+        });
+    }
+
+    /**
+     * Updates the entries of the given region after its name, ownership or trust changed.
+     *
+     * @param region the region.
+     */
+    public synchronized void reindex(Region region) {
+        if (indexedStates.containsKey(region)) {
+            remove(region);
+            add(region);
+        }
+    }
+
+    /**
+     * Returns a region with the given name. If multiple regions share the name, the one indexed first is returned.
+     *
+     * @param name the region name.
+     * @return a region with the given name, or null if there is no such region.
+     */
+    public synchronized Region getRegionByName(String name) {
+        List<Region> regions = byName.get(name);
+        return regions == null ? null : regions.get(0);
+    }
+
+    /**
+     * Returns at most the given number of region names starting with the given prefix, ignoring case. The names of
+     * admin-owned regions come first.
+     *
+     * @param prefix    the prefix to match.
+     * @param adminOnly whether or not to only include the names of admin-owned regions.
+     * @param limit     the maximum number of names to return.
+     * @return a list of the matching region names.
+     */
+    public List<String> getRegionNames(String prefix, boolean adminOnly, int limit) {
+        List<String> names = adminNames.startingWith(prefix, limit);
+        if (!adminOnly && names.size() < limit)
+            names.addAll(playerNames.startingWith(prefix, limit - names.size()));
+
+        return names;
+    }
+
+    /**
+     * Returns a parent region with the given name owned by the player with the given UUID.
+     *
+     * @param owner the owner's UUID.
+     * @param name  the region name.
+     * @return a region with the given name owned by the given player, or null if there is no such region.
+     */
+    public synchronized Region getOwnedRegionByName(UUID owner, String name) {
+        Map<String, List<Region>> ownerNames = ownedByName.get(owner);
+        List<Region> regions = ownerNames == null ? null : ownerNames.get(name);
+        return regions == null ? null : regions.get(0);
+    }
+
+    /**
+     * Returns the regions owned by the player with the given UUID, including admin-owned regions if the given UUID is
+     * the admin UUID.
+     *
+     * @param uuid the player's UUID.
+     * @return a list of the regions owned by the player.
+     */
+    public synchronized List<Region> getOwnedRegions(UUID uuid) {
+        Set<Region> regions = owned.get(uuid);
+        return regions == null ? new ArrayList<>() : new ArrayList<>(regions);
+    }
+
+    /**
+     * Returns the regions the player with the given UUID is a co-owner of.
+     *
+     * @param uuid the player's UUID.
+     * @return a list of the regions co-owned by the player.
+     */
+    public synchronized List<Region> getCoOwnedRegions(UUID uuid) {
+        Set<Region> regions = coOwned.get(uuid);
+        return regions == null ? new ArrayList<>() : new ArrayList<>(regions);
+    }
+
+    /**
+     * Returns the regions the player with the given UUID is explicitly trusted in, along with their trust level.
+     *
+     * @param uuid the player's UUID.
+     * @return a map of the regions the player is trusted in to the player's trust level in that region.
+     */
+    public synchronized Map<Region, TrustLevel> getTrustedRegions(UUID uuid) {
+        Map<Region, TrustLevel> regions = trusted.get(uuid);
+        return regions == null ? new LinkedHashMap<>() : new LinkedHashMap<>(regions);
+    }
+
+    /**
+     * Removes and returns the claims in this index for which the time since the last activity of their members is
+     * greater than the given expiration time. Only claims whose queued last activity is old enough are checked, and
+     * those which turn out to have had more recent activity are queued again.
+     *
+     * @param expirationTime the expiration time in milliseconds.
+     * @param now            the current time in milliseconds.
+     * @return a list of the expired claims.
+     */
+    public synchronized List<Region> pollExpiredRegions(long expirationTime, long now) {
+        List<Region> expired = new ArrayList<>();
+        while (!expirationQueue.isEmpty() && now - expirationQueue.peek().lastActivity > expirationTime) {
+            ScheduledExpiration scheduled = expirationQueue.poll();
+
+            // Skip entries which were replaced or whose claim was removed
+            Long lastActivity = lastActivities.get(scheduled.region);
+            if (lastActivity == null || lastActivity != scheduled.lastActivity)
+                continue;
+
+            // Members may have been online since the claim was queued
+            long currentLastActivity = indexedStates.get(scheduled.region).getLastActivity();
+            if (now - currentLastActivity > expirationTime) {
+                lastActivities.remove(scheduled.region);
+                expired.add(scheduled.region);
+            } else
+                schedule(scheduled.region, currentLastActivity);
+        }
+
+        return expired;
+    }
+
+    /**
+     * Returns whether or not the time since the last activity of the members of the given claim is greater than the
+     * given expiration time. If the queued last activity of the claim is recent enough, then it is not recomputed.
+     *
+     * @param region         the claim.
+     * @param expirationTime the expiration time in milliseconds.
+     * @param now            the current time in milliseconds.
+     * @return true if the claim has expired, false otherwise.
+     */
+    public synchronized boolean hasExpired(Region region, long expirationTime, long now) {
+        Long lastActivity = lastActivities.get(region);
+        if (lastActivity == null)
+            return now - region.getLastActivity() > expirationTime;
+
+        if (now - lastActivity <= expirationTime)
+            return false;
+
+        long currentLastActivity = indexedStates.get(region).getLastActivity();
+        schedule(region, currentLastActivity);
+        return now - currentLastActivity > expirationTime;
+    }
+
+    /**
+     * Recomputes the last activity of every claim in this index and queues them again. This only reads the members of
+     * each claim as they were indexed, so it can be called off the main thread.
+     */
+    public synchronized void rescheduleAll() {
+        expirationQueue.clear();
+        lastActivities.clear();
+        indexedStates.forEach((region, state) -> {
+            if (state.isParent && !state.adminOwned)
+                schedule(region, state.getLastActivity());
+        });
+    }
+
+    // Queues the given claim with the given last activity, replacing any previous entry
+    private void schedule(Region region, long lastActivity) {
+        lastActivities.put(region, lastActivity);
+        expirationQueue.add(new ScheduledExpiration(region, lastActivity));
+
+        // Drop the replaced entries once they make up most of the queue
+        if (expirationQueue.size() > 2 * lastActivities.size() + 16) {
+            expirationQueue.clear();
+            lastActivities.forEach((claim, activity) -> expirationQueue.add(new ScheduledExpiration(claim, activity)));
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, ? extends Collection<Region>> index, K key, Region region) {
+        Collection<Region> regions = index.get(key);
+        if (regions != null) {
+            regions.remove(region);
+            if (regions.isEmpty())
+                index.remove(key);
+        }
+    }
+
+    /**
+     * A claim in the expiration queue along with the last activity it was queued with.
+     */
+    private static final class ScheduledExpiration implements Comparable<ScheduledExpiration> {
+        final Region region;
+        final long lastActivity;
+
+        ScheduledExpiration(Region region, long lastActivity) {
+            this.region = region;
+            this.lastActivity = lastActivity;
+        }
+
+        @Override
+        public int compareTo(ScheduledExpiration other) {
+            return Long.compare(lastActivity, other.lastActivity);
+        }
+    }
+
+    /**
+     * A snapshot of the name, ownership and trust of a region at the time it was indexed.
+     */
+    private static final class IndexedState {
+        final String name;
+        final boolean isParent;
+        final boolean adminOwned;
+        final UUID owner;
+        final List<UUID> coOwners;
+        final Map<UUID, TrustLevel> trustData;
+
+        IndexedState(Region region) {
+            this.name = region.getRawName() == null || region.getRawName().isEmpty() ? null : region.getRawName();
+            this.isParent = !region.hasParent();
+            this.adminOwned = region.isAdminOwned();
+            this.owner = region.getOwner();
+            this.coOwners = isParent ? new ArrayList<>(region.getCoOwners()) : Collections.emptyList();
+            this.trustData = isParent
+                    ? new HashMap<>(region.<TrustMeta>getFlagMeta(RegionFlag.TRUST).getRawTrustDataCopy())
+                    : Collections.emptyMap();
+        }
+
+        // The most recent time at which the owner, a co-owner, or a trustee with at least container trust was seen
+        long getLastActivity() {
+            DataManager dm = RegionProtection.getDataManager();
+            long lastActivity = dm.getLastSeen(owner);
+            for (UUID coOwner : coOwners)
+                lastActivity = Math.max(lastActivity, dm.getLastSeen(coOwner));
+
+            for (Map.Entry<UUID, TrustLevel> entry : trustData.entrySet()) {
+                if (entry.getValue().isAtLeast(TrustLevel.CONTAINER))
+                    lastActivity = Math.max(lastActivity, dm.getLastSeen(entry.getKey()));
+            }
+
+            return lastActivity;
+        }
+    }
+}
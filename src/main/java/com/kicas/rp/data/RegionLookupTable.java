@@ -23,6 +23,19 @@ public class RegionLookupTable {
         this.scale = scale;
     }
 
+    /**
+     * Builds a lookup table containing all of the given regions in a single pass. The table is sized up front so that
+     * no inflation occurs while the regions are added.
+     *
+     * @param regions the regions to add.
+     * @param scale   how much to scale down coordinate positions.
+     */
+    public RegionLookupTable(Collection<Region> regions, int scale) {
+        this((int) (regions.size() / LOAD_FACTOR_THRESHOLD) + 1, scale);
+        regions.forEach(this::addSilent);
+        this.size = regions.size();
+    }
+
     /**
      * Adds the given region to the lookup table.
      *
@@ -42,8 +55,8 @@ public class RegionLookupTable {
      */
     private void addSilent(Region region) {
         // Traverse the scaled down version of the region
-        for (int x = region.getMin().getBlockX() >> scale; x <= region.getMax().getBlockX() >> scale; ++x) {
-            for (int z = region.getMin().getBlockZ() >> scale; z <= region.getMax().getBlockZ() >> scale; ++z) {
+        for (int x = region.getMinX() >> scale; x <= region.getMaxX() >> scale; ++x) {
+            for (int z = region.getMinZ() >> scale; z <= region.getMaxZ() >> scale; ++z) {
                 // Add the region
                 int index = hash(x, z);
                 if (table[index] == null)
@@ -110,8 +123,8 @@ public class RegionLookupTable {
         Set<Region> regions = new HashSet<>();
 
         // Traverse the scaled down region
-        for (int x = region.getMin().getBlockX() >> scale; x <= region.getMax().getBlockX() >> scale; ++x) {
-            for (int z = region.getMin().getBlockZ() >> scale; z <= region.getMax().getBlockZ() >> scale; ++z) {
+        for (int x = region.getMinX() >> scale; x <= region.getMaxX() >> scale; ++x) {
+            for (int z = region.getMinZ() >> scale; z <= region.getMaxZ() >> scale; ++z) {
                 // Get the node at each part of the region
                 int index = hash(x, z);
                 Node node = table[index];
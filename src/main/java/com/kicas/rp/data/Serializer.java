@@ -5,6 +5,8 @@ import com.kicas.rp.util.Encoder;
 import com.kicas.rp.util.Utils;
 import org.bukkit.Location;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -16,47 +18,91 @@ import java.util.*;
 public class Serializer implements AutoCloseable {
     private final Encoder encoder;
     private final int formatVersion;
+    private final SymbolTable symbols;
 
     public Serializer(File file, int formatVersion) throws IOException {
+        this(new Encoder(new BufferedOutputStream(new FileOutputStream(file))), formatVersion, null);
+    }
+
+    // Used to encode individual sections of a file
+    private Serializer(Encoder encoder, int formatVersion, SymbolTable symbols) {
+        this.encoder = encoder;
         this.formatVersion = formatVersion;
-        this.encoder = new Encoder(new FileOutputStream(file));
+        this.symbols = symbols;
     }
 
     /**
-     * Writes the given world data to the output file.
+     * Writes the given world data to the output file, which only holds the data of that world.
      *
      * @param worldData the world data to write.
      * @throws IOException if an I/O error occurs.
      */
-    public void writeWorldData(Collection<WorldData> worldData) throws IOException {
+    public void writeWorld(WorldData worldData) throws IOException {
         encoder.write(formatVersion);
-
-        encoder.write(worldData.size());
-        for (WorldData wd : worldData) {
-            encoder.writeUuid(wd.getWorldUid());
-            writeFlags(wd);
-            encoder.writeUintCompressed(wd.getRegions().size());
-            for (Region region : wd.getRegions())
-                writeRegion(region);
-        }
-
+        encoder.write(encodeWorldSection(worldData));
         encoder.close();
     }
 
     /**
-     * Writes the given persistent player data collection to the output file.
+     * Encodes the section of the given world. The section starts with the UUID and string dictionaries used by the
+     * world's regions, followed by the global flags and regions themselves.
      *
-     * @param playerData the player data to write.
+     * @param worldData the world data to encode.
+     * @return the encoded section.
      * @throws IOException if an I/O error occurs.
      */
-    public void writePlayerData(Collection<PersistentPlayerData> playerData) throws IOException {
-        encoder.write(formatVersion);
+    private byte[] encodeWorldSection(WorldData worldData) throws IOException {
+        // Flags that were never decoded are written back as they were read, so the dictionaries they refer to must be
+        // kept intact. Otherwise the dictionaries are rebuilt from scratch, which drops entries that are no longer used.
+        SymbolTable sectionSymbols = hasEncodedFlags(worldData) ? worldData.getSymbols().copy() : new SymbolTable();
 
-        encoder.writeUintCompressed(playerData.size());
-        for (PersistentPlayerData ppd : playerData) {
-            encoder.writeUuid(ppd.getUuid());
-            encoder.writeIntCompressed(ppd.getClaimBlocks());
+        // The dictionaries are only complete once the regions are encoded, so they are prepended afterwards
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        new Serializer(new Encoder(body), formatVersion, sectionSymbols).writeWorldSection(worldData);
+
+        ByteArrayOutputStream section = new ByteArrayOutputStream(body.size() + 16 * sectionSymbols.getUuids().size());
+        Encoder sectionEncoder = new Encoder(section);
+        sectionEncoder.writeArray(sectionSymbols.getUuids(), UUID.class);
+        sectionEncoder.writeArray(sectionSymbols.getStrings(), String.class);
+        body.writeTo(section);
+        return section.toByteArray();
+    }
+
+    /**
+     * Returns whether or not the given world or any of its regions still have flags which have not been decoded since
+     * they were loaded.
+     *
+     * @param worldData the world data.
+     * @return true if there are still encoded flags in the world, false otherwise.
+     */
+    private static boolean hasEncodedFlags(WorldData worldData) {
+        if (worldData.getEncodedFlags() != null)
+            return true;
+
+        for (Region region : worldData.getRegions()) {
+            if (region.getEncodedFlags() != null)
+                return true;
+
+            for (Region child : region.getChildren()) {
+                if (child.getEncodedFlags() != null)
+                    return true;
+            }
         }
+
+        return false;
+    }
+
+    /**
+     * Writes the global flags and regions of the given world.
+     *
+     * @param worldData the world data to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeWorldSection(WorldData worldData) throws IOException {
+        writeFlags(worldData);
+        encoder.writeUintCompressed(worldData.getRegions().size());
+        for (Region region : worldData.getRegions())
+            writeRegion(region);
     }
 
     /**
@@ -67,7 +113,7 @@ public class Serializer implements AutoCloseable {
      */
     private void writeRegion(Region region) throws IOException {
         // Name
-        encoder.writeUTF8Raw(region.getRawName() == null ? "" : region.getRawName());
+        writeString(region.getRawName() == null ? "" : region.getRawName());
 
         // Priority and the admin-ownership bit
         int meta = (region.isAdminOwned() ? 0x80 : 0) | Utils.constrain(region.getPriority(), 0, 127);
@@ -75,20 +121,20 @@ public class Serializer implements AutoCloseable {
 
         // Write the actual owner
         if (!region.hasParent() && !region.isAdminOwned())
-            encoder.writeUuid(region.getOwner());
+            writeUuid(region.getOwner());
 
         // Bounds
-        Location loc = region.getMin();
-        encoder.writeIntCompressed(loc.getBlockX());
-        encoder.writeIntCompressed(loc.getBlockY());
-        encoder.writeIntCompressed(loc.getBlockZ());
-        loc = region.getMax();
-        encoder.writeIntCompressed(loc.getBlockX());
-        encoder.writeIntCompressed(loc.getBlockY());
-        encoder.writeIntCompressed(loc.getBlockZ());
+        encoder.writeIntCompressed(region.getMinX());
+        encoder.writeIntCompressed(region.getMinY());
+        encoder.writeIntCompressed(region.getMinZ());
+        encoder.writeIntCompressed(region.getMaxX());
+        encoder.writeIntCompressed(region.getMaxY());
+        encoder.writeIntCompressed(region.getMaxZ());
 
         // Co-owners
-        encoder.writeArray(region.getCoOwners(), UUID.class);
+        encoder.writeUintCompressed(region.getCoOwners().size());
+        for (UUID coOwner : region.getCoOwners())
+            writeUuid(coOwner);
 
         writeFlags(region);
 
@@ -101,13 +147,43 @@ public class Serializer implements AutoCloseable {
     }
 
     /**
-     * Writes the flags in a given flag container to the output file.
+     * Writes the flags in a given flag container to the output file. Flags which are always decoded upon loading are
+     * written first, followed by a length-prefixed section with the remaining flags. If the container's flags were
+     * never accessed since they were loaded, that section is written back verbatim.
      *
      * @param container the container with the flags to write.
      * @throws IOException if an I/O error occurs.
      */
     private void writeFlags(FlagContainer container) throws IOException {
-        Map<RegionFlag, Object> flags = container.getFlags();
+        // Fetched before the flag map so that a concurrent decode cannot cause flags to be written twice or not at all
+        EncodedFlags encoded = container.getEncodedFlags();
+
+        Map<RegionFlag, Object> eagerFlags = new HashMap<>(), lazyFlags = new HashMap<>();
+        container.getRawFlags().forEach((flag, meta) ->
+                (EncodedFlags.isDecodedEagerly(flag) ? eagerFlags : lazyFlags).put(flag, meta));
+
+        writeFlagMap(eagerFlags);
+
+        if (encoded != null) {
+            encoder.writeUintCompressed(encoded.getData().length);
+            encoder.write(encoded.getData());
+        } else if (lazyFlags.isEmpty())
+            encoder.writeUintCompressed(0);
+        else {
+            ByteArrayOutputStream section = new ByteArrayOutputStream();
+            new Serializer(new Encoder(section), formatVersion, symbols).writeFlagMap(lazyFlags);
+            encoder.writeUintCompressed(section.size());
+            section.writeTo(encoder.getOutputStream());
+        }
+    }
+
+    /**
+     * Writes the number of given flags followed by each flag-meta pair.
+     *
+     * @param flags the flags to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeFlagMap(Map<RegionFlag, Object> flags) throws IOException {
         encoder.writeUintCompressed(flags.size());
         for (Map.Entry<RegionFlag, Object> entry : flags.entrySet())
             writeFlag(entry.getKey(), entry.getValue());
@@ -130,16 +206,16 @@ public class Serializer implements AutoCloseable {
             encoder.write(((GameModeMeta) meta).getMode().ordinal());
         else if (meta instanceof CommandMeta) {
             encoder.writeBoolean(((CommandMeta) meta).runFromConsole());
-            encoder.writeUTF8Raw(((CommandMeta) meta).getCommand());
+            writeString(((CommandMeta) meta).getCommand());
         } else if (meta instanceof EnumFilter) {
             encoder.writeBoolean(((EnumFilter) meta).isWhitelist());
             Set<? extends Enum<?>> filter = ((EnumFilter<? extends Enum<?>>) meta).getFilter();
             encoder.writeUintCompressed(filter.size());
             for (Enum<?> element : filter)
-                encoder.writeIdentifier(element.name());
+                writeString(element.name());
         } else if (meta instanceof LocationMeta) {
             Location loc = ((LocationMeta) meta).getLocation();
-            encoder.writeUuid(loc.getWorld().getUID());
+            writeUuid(loc.getWorld().getUID());
             encoder.writeDouble(loc.getX());
             encoder.writeDouble(loc.getY());
             encoder.writeDouble(loc.getZ());
@@ -147,20 +223,43 @@ public class Serializer implements AutoCloseable {
             encoder.writeFloat(loc.getPitch());
         } else if (meta instanceof StringFilter) {
             encoder.writeBoolean(((StringFilter) meta).isWhitelist());
-            encoder.writeArray(((StringFilter) meta).getFilter(), String.class);
+            Set<String> filter = ((StringFilter) meta).getFilter();
+            encoder.writeUintCompressed(filter.size());
+            for (String element : filter)
+                writeString(element);
         } else if (meta instanceof TextMeta)
-            encoder.writeUTF8Raw(((TextMeta) meta).getText());
+            writeString(((TextMeta) meta).getText());
         else if (meta instanceof TrustMeta) {
             encoder.write(((TrustMeta) meta).getPublicTrustLevel().ordinal());
             Map<UUID, TrustLevel> rawTrustData = ((TrustMeta) meta).getRawTrustDataCopy();
             encoder.writeUintCompressed(rawTrustData.size());
             for (Map.Entry<UUID, TrustLevel> trust : rawTrustData.entrySet()) {
-                encoder.writeUuid(trust.getKey());
+                writeUuid(trust.getKey());
                 encoder.write(trust.getValue().ordinal());
             }
         }
     }
 
+    /**
+     * Writes a reference to the given UUID in the dictionary of the world section being written.
+     *
+     * @param uuid the UUID.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeUuid(UUID uuid) throws IOException {
+        encoder.writeUintCompressed(symbols.indexOf(uuid));
+    }
+
+    /**
+     * Writes a reference to the given string in the dictionary of the world section being written.
+     *
+     * @param string the string.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeString(String string) throws IOException {
+        encoder.writeUintCompressed(symbols.indexOf(string));
+    }
+
     /**
      * Closes the encoder in this serializer.
      *
@@ -0,0 +1,193 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.RegionProtection;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+
+/**
+ * A region highlighter which follows the player, so that the whole border of a large region can be walked. The border
+ * markers of the regions are computed once, and as the player moves only the markers entering or leaving the streaming
+ * radius around the player are sent or reverted. The heights of entering markers are resolved as they enter, and the
+ * number of block changes sent to the player each tick is capped. Particle outlines already follow the player, so
+ * in particle mode this behaves like a regular highlighter.
+ */
+public class StreamingRegionHighlighter extends RegionHighlighter {
+    // How long the highlighter stays active, in ticks
+    private static final long LIFETIME = 20L * 60L * 5L;
+
+    private final int streamingRadius;
+    private final int blocksPerTick;
+    // Key: packed chunk coordinates, value: the marker columns in that chunk
+    private final Map<Long, List<Long>> markersByChunk;
+    // Key: marker column within the radius, value: the location the marker was sent at
+    private final Map<Long, Location> shown;
+    // Changes waiting for the per-tick budget
+    private final Deque<Long> toSend;
+    private final Map<Long, Location> resolvedLocations;
+    private final Deque<Location> toRevert;
+    private int lastBlockX, lastBlockZ;
+    private long ticksActive;
+    private int taskId;
+
+    public StreamingRegionHighlighter(Player player, Collection<Region> regions, boolean includeChildren) {
+        super(player, regions, null, null, includeChildren, Double.POSITIVE_INFINITY);
+        this.streamingRadius = RegionProtection.getRPConfig().getInt("general.highlight-streaming-radius");
+        this.blocksPerTick = RegionProtection.getRPConfig().getInt("general.highlight-blocks-per-tick");
+        this.markersByChunk = new HashMap<>();
+        this.shown = new HashMap<>();
+        this.toSend = new ArrayDeque<>();
+        this.resolvedLocations = new HashMap<>();
+        this.toRevert = new ArrayDeque<>();
+        this.lastBlockX = Integer.MIN_VALUE;
+        this.lastBlockZ = Integer.MIN_VALUE;
+        this.ticksActive = 0L;
+        this.taskId = -1;
+
+        markers.keySet().forEach(column -> markersByChunk.computeIfAbsent(pack(unpackX(column) >> 4,
+                unpackZ(column) >> 4), key -> new ArrayList<>()).add(column));
+    }
+
+    public StreamingRegionHighlighter(Player player, Region region, boolean includeChildren) {
+        this(player, Collections.singleton(region), includeChildren);
+    }
+
+    /**
+     * Starts following the player. The markers around the player are sent over the following ticks.
+     */
+    @Override
+    public void showChanges() {
+        if (isParticleMode()) {
+            super.showChanges();
+            return;
+        }
+
+        if (taskId == -1 && !isComplete()) {
+            taskId = Bukkit.getScheduler().runTaskTimer(RegionProtection.getInstance(), this::tick, 0L, 1L)
+                    .getTaskId();
+        }
+    }
+
+    // Follows the player's movement and sends the queued changes within the budget
+    private void tick() {
+        if (!player.isOnline() || !world.equals(player.getWorld()) || ++ticksActive > LIFETIME) {
+            remove();
+            return;
+        }
+
+        // Only update the markers in range once the player moved to another block
+        Location location = player.getLocation();
+        if (location.getBlockX() != lastBlockX || location.getBlockZ() != lastBlockZ) {
+            lastBlockX = location.getBlockX();
+            lastBlockZ = location.getBlockZ();
+            updateMarkersInRange(location.getBlockY());
+        }
+
+        // Reverts go first so that markers out of range disappear before new ones show up
+        List<BlockState> states = new ArrayList<>();
+        while (states.size() < blocksPerTick && !toRevert.isEmpty()) {
+            Location loc = toRevert.poll();
+            if (world.isChunkLoaded(loc.getBlockX() >> 4, loc.getBlockZ() >> 4))
+                states.add(actualState(loc));
+        }
+
+        while (states.size() < blocksPerTick && !toSend.isEmpty()) {
+            long column = toSend.poll();
+            Location loc = resolvedLocations.remove(column);
+            // The marker may have left the range while it was queued
+            if (loc == null)
+                continue;
+
+            shown.put(column, loc);
+            states.add(markers.get(column).createBlockData().createBlockState().copy(loc));
+        }
+
+        if (!states.isEmpty())
+            player.sendBlockChanges(states);
+    }
+
+    // Finds the markers which entered or left the streaming radius since the last update
+    private void updateMarkersInRange(int footY) {
+        Set<Long> inRange = new HashSet<>();
+        List<Long> entering = new ArrayList<>();
+        long radiusSquared = (long) streamingRadius * streamingRadius;
+
+        // Only the chunks around the player need to be checked
+        int minChunkX = (lastBlockX - streamingRadius) >> 4, maxChunkX = (lastBlockX + streamingRadius) >> 4,
+                minChunkZ = (lastBlockZ - streamingRadius) >> 4, maxChunkZ = (lastBlockZ + streamingRadius) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; ++chunkX) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; ++chunkZ) {
+                long chunkKey = pack(chunkX, chunkZ);
+                List<Long> columns = markersByChunk.get(chunkKey);
+                if (columns == null || !world.isChunkLoaded(chunkX, chunkZ))
+                    continue;
+
+                for (long column : columns) {
+                    long dx = unpackX(column) - lastBlockX, dz = unpackZ(column) - lastBlockZ;
+                    if (dx * dx + dz * dz >= radiusSquared)
+                        continue;
+
+                    inRange.add(column);
+                    if (!shown.containsKey(column) && !resolvedLocations.containsKey(column))
+                        entering.add(column);
+                }
+            }
+        }
+
+        // Markers which left the range are reverted, or dropped if they were not sent yet
+        resolvedLocations.keySet().retainAll(inRange);
+        Iterator<Map.Entry<Long, Location>> itr = shown.entrySet().iterator();
+        while (itr.hasNext()) {
+            Map.Entry<Long, Location> entry = itr.next();
+            if (!inRange.contains(entry.getKey())) {
+                toRevert.add(entry.getValue());
+                itr.remove();
+            }
+        }
+
+        // The chunks of entering markers were checked to be loaded above
+        int startY = Math.max(world.getMinHeight(), Math.min(footY, world.getMaxHeight() - 1));
+        entering.forEach(column -> {
+            int x = unpackX(column), z = unpackZ(column);
+            resolvedLocations.put(column, new Location(world, x, findReplacementY(x, z, startY), z));
+            toSend.add(column);
+        });
+    }
+
+    /**
+     * Stops following the player and reverts every marker which was sent.
+     */
+    @Override
+    public void remove() {
+        if (isParticleMode()) {
+            super.remove();
+            return;
+        }
+
+        if (taskId != -1) {
+            Bukkit.getScheduler().cancelTask(taskId);
+            taskId = -1;
+        }
+
+        shown.values().forEach(toRevert::add);
+        shown.clear();
+        resolvedLocations.clear();
+        toSend.clear();
+
+        if (player.isOnline() && !toRevert.isEmpty()) {
+            List<BlockState> states = new ArrayList<>(toRevert.size());
+            toRevert.forEach(loc -> {
+                if (world.isChunkLoaded(loc.getBlockX() >> 4, loc.getBlockZ() >> 4))
+                    states.add(actualState(loc));
+            });
+
+            player.sendBlockChanges(states);
+        }
+
+        toRevert.clear();
+        setComplete();
+    }
+}
@@ -0,0 +1,111 @@
+package com.kicas.rp.data;
+
+import java.util.*;
+
+/**
+ * Holds the UUID and string dictionaries of a world section in the region data file. Regions refer to the entries in
+ * these dictionaries by index rather than repeating the same player UUIDs, names and flag text in every region.
+ */
+class SymbolTable {
+    private final List<UUID> uuids;
+    private final Map<UUID, Integer> uuidIndices;
+    private final List<String> strings;
+    private final Map<String, Integer> stringIndices;
+
+    public SymbolTable() {
+        this.uuids = new ArrayList<>();
+        this.uuidIndices = new HashMap<>();
+        this.strings = new ArrayList<>();
+        this.stringIndices = new HashMap<>();
+    }
+
+    /**
+     * Constructs a symbol table with the given entries, in the order they were read.
+     *
+     * @param uuids   the UUID entries.
+     * @param strings the string entries.
+     */
+    public SymbolTable(List<UUID> uuids, List<String> strings) {
+        this.uuids = uuids;
+        this.uuidIndices = new HashMap<>(uuids.size());
+        this.strings = strings;
+        this.stringIndices = new HashMap<>(strings.size());
+
+        for (int i = 0; i < uuids.size(); ++i)
+            uuidIndices.put(uuids.get(i), i);
+        for (int i = 0; i < strings.size(); ++i)
+            stringIndices.put(strings.get(i), i);
+    }
+
+    /**
+     * Returns a copy of this table. Entries added to the copy do not affect this table, and the indices of the entries
+     * in this table are the same in the copy.
+     *
+     * @return a copy of this table.
+     */
+    public SymbolTable copy() {
+        return new SymbolTable(new ArrayList<>(uuids), new ArrayList<>(strings));
+    }
+
+    /**
+     * @return the UUID entries of this table, in index order.
+     */
+    public List<UUID> getUuids() {
+        return uuids;
+    }
+
+    /**
+     * @return the string entries of this table, in index order.
+     */
+    public List<String> getStrings() {
+        return strings;
+    }
+
+    /**
+     * Returns the index of the given UUID, adding it to the table if it is not present yet.
+     *
+     * @param uuid the UUID.
+     * @return the index of the UUID.
+     */
+    public int indexOf(UUID uuid) {
+        return uuidIndices.computeIfAbsent(uuid, key -> {
+            uuids.add(key);
+            return uuids.size() - 1;
+        });
+    }
+
+    /**
+     * Returns the index of the given string, adding it to the table if it is not present yet.
+     *
+     * @param string the string.
+     * @return the index of the string.
+     */
+    public int indexOf(String string) {
+        return stringIndices.computeIfAbsent(string, key -> {
+            strings.add(key);
+            return strings.size() - 1;
+        });
+    }
+
+    /**
+     * Returns the UUID at the given index.
+     *
+     * @param index the index.
+     * @return the UUID at the given index.
+     * @throws IndexOutOfBoundsException if there is no entry at the given index.
+     */
+    public UUID getUuid(int index) {
+        return uuids.get(index);
+    }
+
+    /**
+     * Returns the string at the given index.
+     *
+     * @param index the index.
+     * @return the string at the given index.
+     * @throws IndexOutOfBoundsException if there is no entry at the given index.
+     */
+    public String getString(int index) {
+        return strings.get(index);
+    }
+}
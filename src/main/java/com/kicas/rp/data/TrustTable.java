@@ -0,0 +1,145 @@
+package com.kicas.rp.data;
+
+import com.kicas.rp.data.flagdata.TrustLevel;
+import com.kicas.rp.data.flagdata.TrustMeta;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A compiled form of the trust of a region, which answers trust queries for a player with a single lookup. The owner,
+ * co-owners and explicitly trusted players of the region are packed into an open-addressing hash table keyed by the
+ * two halves of their UUID, with the trust inherited from the parent region already folded in. A table is only valid
+ * for the trust epoch of the region it was compiled at.
+ */
+public final class TrustTable {
+    // Stored levels are the trust level ordinal plus one so that zero marks an empty slot
+    private static final byte EMPTY = 0;
+    private static final byte OWNER = (byte) (TrustLevel.VALUES.length + 1);
+
+    // Two longs per slot: the most significant bits followed by the least significant bits of the UUID
+    private final long[] keys;
+    private final byte[] levels;
+    private final int mask;
+    private final TrustLevel publicTrustLevel;
+    private final boolean adminOwned;
+    private final long epoch;
+
+    /**
+     * Compiles the trust table of the given region.
+     *
+     * @param region the region.
+     * @param epoch  the trust epoch of the region at the time of compilation.
+     */
+    TrustTable(Region region, long epoch) {
+        TrustMeta trustMeta = region.getFlagMeta(RegionFlag.TRUST);
+        TrustMeta parentTrustMeta = region.hasParent() ? region.getParent().getFlagMeta(RegionFlag.TRUST) : null;
+        Map<UUID, TrustLevel> trustData = trustMeta.getRawTrustDataCopy();
+        Map<UUID, TrustLevel> parentTrustData = parentTrustMeta == null ? null : parentTrustMeta.getRawTrustDataCopy();
+        List<UUID> coOwners = region.getCoOwners();
+
+        // Keep the load factor at or below one half
+        int entries = trustData.size() + (parentTrustData == null ? 0 : parentTrustData.size()) + coOwners.size() + 1;
+        int capacity = Integer.highestOneBit(Math.max(entries, 2) * 2 - 1) << 1;
+        this.keys = new long[capacity * 2];
+        this.levels = new byte[capacity];
+        this.mask = capacity - 1;
+        this.adminOwned = region.isAdminOwned();
+        this.epoch = epoch;
+
+        // Explicit trust in the region overrides that of the parent, and ownership overrides any trust
+        if (parentTrustData != null)
+            parentTrustData.forEach((uuid, trust) -> put(uuid, (byte) (trust.ordinal() + 1)));
+        trustData.forEach((uuid, trust) -> put(uuid, (byte) (trust.ordinal() + 1)));
+        coOwners.forEach(uuid -> put(uuid, OWNER));
+        if (!adminOwned)
+            put(region.getOwner(), OWNER);
+
+        // If the public trust level is none for the region, it defaults to that of the parent
+        this.publicTrustLevel = parentTrustMeta != null && trustMeta.getPublicTrustLevel() == TrustLevel.NONE
+                ? parentTrustMeta.getPublicTrustLevel() : trustMeta.getPublicTrustLevel();
+    }
+
+    /**
+     * @return the trust epoch of the region at the time this table was compiled.
+     */
+    long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns whether or not the given player has the specified level of trust according to this table. Effective
+     * owners always have trust. Whether or not the player is ignoring trust is not taken into account.
+     *
+     * @param player the player.
+     * @param trust  the trust level.
+     * @return true if the given player has the given level of trust, false otherwise.
+     */
+    public boolean hasTrust(Player player, TrustLevel trust) {
+        return (adminOwned && player.isOp()) || hasTrust(player.getUniqueId(), trust);
+    }
+
+    /**
+     * Returns whether or not the player with the given UUID has the specified level of trust according to this table,
+     * without taking the operator bypass of admin-owned regions into account.
+     *
+     * @param uuid  the player's UUID.
+     * @param trust the trust level.
+     * @return true if the given player has the given level of trust, false otherwise.
+     */
+    public boolean hasTrust(UUID uuid, TrustLevel trust) {
+        byte level = get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (level == OWNER)
+            return true;
+
+        return level == EMPTY ? publicTrustLevel.isAtLeast(trust) : TrustLevel.VALUES[level - 1].isAtLeast(trust);
+    }
+
+    /**
+     * Returns whether or not the given UUID is the owner or a co-owner of the region this table was compiled from. For
+     * admin-owned regions this is only true for co-owners.
+     *
+     * @param uuid the UUID.
+     * @return true if the given UUID is an owner or co-owner, false otherwise.
+     */
+    public boolean isOwnerOrCoOwner(UUID uuid) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) == OWNER;
+    }
+
+    // Stores the level for the given UUID, replacing any previous level
+    private void put(UUID uuid, byte level) {
+        long msb = uuid.getMostSignificantBits(), lsb = uuid.getLeastSignificantBits();
+        int index = slot(msb, lsb);
+        while (levels[index] != EMPTY && (keys[index << 1] != msb || keys[(index << 1) + 1] != lsb))
+            index = (index + 1) & mask;
+
+        keys[index << 1] = msb;
+        keys[(index << 1) + 1] = lsb;
+        levels[index] = level;
+    }
+
+    // Returns the stored level for the given UUID, or EMPTY if there is none
+    private byte get(long msb, long lsb) {
+        int index = slot(msb, lsb);
+        byte level;
+        while ((level = levels[index]) != EMPTY) {
+            if (keys[index << 1] == msb && keys[(index << 1) + 1] == lsb)
+                return level;
+
+            index = (index + 1) & mask;
+        }
+
+        return EMPTY;
+    }
+
+    // Mixes the bits of the UUID so that non-random UUIDs are spread out as well
+    private int slot(long msb, long lsb) {
+        long hash = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
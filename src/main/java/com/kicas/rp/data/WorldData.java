@@ -4,6 +4,7 @@ import org.bukkit.Bukkit;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -13,11 +14,18 @@ public class WorldData extends FlagContainer {
     private final UUID worldUid;
     private final List<Region> regions;
     private RegionLookupTable lookupTable;
+    private RegionIndex regionIndex;
+    // The dictionaries that the still-encoded flags in this world refer to
+    private SymbolTable symbols;
+    // Whether or not this data reflects the world's region file, only such data may be written to that file
+    private boolean loaded;
 
     public WorldData(UUID uuid) {
         this.worldUid = uuid;
         this.regions = new ArrayList<>();
         this.lookupTable = null;
+        this.regionIndex = null;
+        this.loaded = false;
     }
 
     /**
@@ -27,6 +35,37 @@ public class WorldData extends FlagContainer {
         return worldUid;
     }
 
+    /**
+     * @return true if this data was read from the world's region file, or if the world had no such file, false if
+     * reading the file failed and this data is only a placeholder.
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Marks this data as reflecting the world's region file.
+     */
+    void setLoaded() {
+        loaded = true;
+    }
+
+    /**
+     * @return the dictionaries of this world's section in the region data file, or null if there are none.
+     */
+    SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Sets the dictionaries of this world's section in the region data file.
+     *
+     * @param symbols the dictionaries.
+     */
+    void setSymbols(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
     /**
      * @return the list of the parent regions within this world.
      */
@@ -43,6 +82,7 @@ public class WorldData extends FlagContainer {
      */
     @Override
     public boolean isAllowed(RegionFlag flag) {
+        Map<RegionFlag, Object> flags = loadedFlags(flag);
         return flags.containsKey(flag) ? (boolean) flags.get(flag)
                 : flag.getWorldDefaultValue(Bukkit.getWorld(worldUid));
     }
@@ -57,6 +97,7 @@ public class WorldData extends FlagContainer {
         lookupTable.add(region);
         if (!region.hasParent())
             regions.add(region);
+        regionIndex.add(region);
     }
 
     /**
@@ -66,6 +107,32 @@ public class WorldData extends FlagContainer {
         return lookupTable;
     }
 
+    /**
+     * @return the index of the regions in this world by name, and of the parent regions by owner, co-owner and
+     * trusted player.
+     */
+    public RegionIndex getRegionIndex() {
+        return regionIndex;
+    }
+
+    /**
+     * Generates a new region index containing all the regions in this world.
+     */
+    public void generateRegionIndex() {
+        if (regionIndex != null) {
+            regions.forEach(region -> {
+                regionIndex.remove(region);
+                region.getChildren().forEach(regionIndex::remove);
+            });
+        }
+
+        regionIndex = new RegionIndex();
+        regions.forEach(region -> {
+            regionIndex.add(region);
+            region.getChildren().forEach(regionIndex::add);
+        });
+    }
+
     /**
      * Generates a new lookup table with the given scale and adds all the regions in the associated world to the lookup
      * table. The scale value should be set depending on the average size of the regions in the world to optimize
@@ -74,10 +141,11 @@ public class WorldData extends FlagContainer {
      * @param scale the lookup table scale.
      */
     public void generateLookupTable(int scale) {
-        lookupTable = new RegionLookupTable((int) (regions.size() * RegionLookupTable.INFLATION_CONSTANT), scale);
+        List<Region> all = new ArrayList<>(regions.size());
         regions.forEach(region -> {
-            lookupTable.add(region);
-            region.getChildren().forEach(lookupTable::add);
+            all.add(region);
+            all.addAll(region.getChildren());
         });
+        lookupTable = new RegionLookupTable(all, scale);
     }
 }
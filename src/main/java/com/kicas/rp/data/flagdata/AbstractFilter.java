@@ -74,6 +74,7 @@ public abstract class AbstractFilter<T> extends FlagMeta implements Augmentable<
      * @param other the other filter.
      */
     public void augment(AbstractFilter<T> other) {
+        checkModifiable();
         filter.addAll(other.filter);
     }
 
@@ -84,6 +85,7 @@ public abstract class AbstractFilter<T> extends FlagMeta implements Augmentable<
      * @param other the other filter.
      */
     public void reduce(AbstractFilter<T> other) {
+        checkModifiable();
         filter.removeAll(other.filter);
     }
 
@@ -106,6 +108,11 @@ public abstract class AbstractFilter<T> extends FlagMeta implements Augmentable<
         return filter.equals(af.filter) && isWhitelist == af.isWhitelist;
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * filter.hashCode() + Boolean.hashCode(isWhitelist);
+    }
+
     /**
      * Converts the given string to a filter of the inferred type. Each individual element should be separated by a
      * comma. If the string contains an asterisk (*), then the resulting filter will be a whitelist and only elements
@@ -118,6 +125,7 @@ public abstract class AbstractFilter<T> extends FlagMeta implements Augmentable<
      */
     @Override
     public void readMetaString(String metaString) {
+        checkModifiable();
         if (NO_ELEMENTS.equals(metaString))
             return;
 
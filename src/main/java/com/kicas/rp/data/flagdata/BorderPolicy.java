@@ -32,6 +32,7 @@ public class BorderPolicy extends FlagMeta {
      * @param metaString "hard", "soft", or "none" to denote this border's type.
      */
     public void readMetaString(String metaString) {
+        checkModifiable();
         Policy policy = Utils.valueOfFormattedName(metaString, Policy.class);
         if (policy == null)
             throw new IllegalArgumentException("Invalid border policy: \"" + metaString + "\"");
@@ -45,6 +46,21 @@ public class BorderPolicy extends FlagMeta {
         return Utils.formattedName(policy);
     }
 
+    @Override
+    public BorderPolicy copy() {
+        return new BorderPolicy(policy);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other == this || (other instanceof BorderPolicy && policy == ((BorderPolicy) other).policy);
+    }
+
+    @Override
+    public int hashCode() {
+        return policy.hashCode();
+    }
+
     public enum Policy {
         HARD, SOFT, NONE;
 
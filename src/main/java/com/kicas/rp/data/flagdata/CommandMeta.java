@@ -1,23 +1,38 @@
 package com.kicas.rp.data.flagdata;
 
 import com.kicas.rp.RegionProtection;
+import com.kicas.rp.util.Pair;
 import com.kicas.rp.util.Utils;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.command.CommandException;
+import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the metadata for a command. This meta is used for the enter-command and exit-command flags, and specifies
- * the sender of the command as well as the command to execute.
+ * the sender of the command as well as the command to execute. The command is split into literal text and placeholders
+ * whenever it is set, so executing it only needs to append the parts. Commands executed during a tick are dispatched
+ * together in a single task on the next tick.
  */
 public class CommandMeta extends FlagMeta {
     private boolean runFromConsole;
     private String command;
+    // The text before, between and after the placeholders, so there is always one more literal than placeholders
+    private String[] literals;
+    private Placeholder[] placeholders;
 
     public static final CommandMeta EMPTY_META = new CommandMeta();
 
+    // Commands waiting to be dispatched on the next tick, only accessed on the main thread
+    private static final List<Pair<CommandSender, String>> pending = new ArrayList<>();
+
     public CommandMeta(boolean runFromConsole, String command) {
         this.runFromConsole = runFromConsole;
-        this.command = command;
+        setCommand(command);
     }
 
     public CommandMeta() {
@@ -46,6 +61,7 @@ public class CommandMeta extends FlagMeta {
      */
     @Override
     public void readMetaString(String metaString) {
+        checkModifiable();
         int index = metaString.indexOf(':');
         if (index < 0)
             throw new IllegalArgumentException("Invalid command format. Format: <console|player>:<command>");
@@ -59,7 +75,32 @@ public class CommandMeta extends FlagMeta {
         else
             throw new IllegalArgumentException("Invalid sender: " + sender);
 
-        command = metaString.substring(index + 1);
+        setCommand(metaString.substring(index + 1));
+    }
+
+    // Sets the command and splits it into literals and placeholders
+    private void setCommand(String command) {
+        List<String> literals = new ArrayList<>();
+        List<Placeholder> placeholders = new ArrayList<>();
+        int start = 0, i = 0;
+
+        while ((i = command.indexOf('%', i)) >= 0) {
+            Placeholder placeholder = Placeholder.at(command, i);
+            if (placeholder == null) {
+                ++i;
+                continue;
+            }
+
+            literals.add(command.substring(start, i));
+            placeholders.add(placeholder);
+            i += placeholder.marker.length();
+            start = i;
+        }
+
+        literals.add(command.substring(start));
+        this.command = command;
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new Placeholder[0]);
     }
 
     @Override
@@ -67,8 +108,31 @@ public class CommandMeta extends FlagMeta {
         return (runFromConsole ? "[console] " : "[player] ") + command;
     }
 
+    @Override
+    public CommandMeta copy() {
+        return new CommandMeta(runFromConsole, command);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+
+        if (!(other instanceof CommandMeta))
+            return false;
+
+        CommandMeta cm = (CommandMeta) other;
+        return runFromConsole == cm.runFromConsole && command.equals(cm.command);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * command.hashCode() + Boolean.hashCode(runFromConsole);
+    }
+
     /**
-     * Executes the command stored in this metadata synchronously. If this command is not run by the console, then the
+     * Executes the command stored in this metadata on the next tick, along with every other command executed during
+     * this tick. This method must be called on the main thread. If this command is not run by the console, then the
      * given player is used as the sender of the command. There should always be an associated player when executing a
      * command meta. Certain values will be substituted into the command according to the following map
      * (marker, replacement):
@@ -84,14 +148,73 @@ public class CommandMeta extends FlagMeta {
      */
     public void execute(Player player) {
         // Perform substitutions
-        String cmd = command.replaceAll("%player%", player.getName())
-                .replaceAll("%world%", player.getWorld().getName())
-                .replaceAll("%x%", Utils.doubleToString(player.getLocation().getX(), 3))
-                .replaceAll("%y%", Utils.doubleToString(player.getLocation().getY(), 3))
-                .replaceAll("%z%", Utils.doubleToString(player.getLocation().getZ(), 3));
-
-        // Perform the execution
-        Bukkit.getScheduler().runTask(RegionProtection.getInstance(),
-                () -> Bukkit.dispatchCommand(runFromConsole ? Bukkit.getConsoleSender() : player, cmd));
+        StringBuilder cmd = new StringBuilder(command.length() + 16 * placeholders.length).append(literals[0]);
+        Location location = placeholders.length == 0 ? null : player.getLocation();
+        for (int i = 0; i < placeholders.length; ++i)
+            cmd.append(placeholders[i].valueFor(player, location)).append(literals[i + 1]);
+
+        // Start a batch if this is the first command of this tick
+        if (pending.isEmpty())
+            Bukkit.getScheduler().runTask(RegionProtection.getInstance(), CommandMeta::dispatchPending);
+
+        pending.add(new Pair<>(runFromConsole ? Bukkit.getConsoleSender() : player, cmd.toString()));
+    }
+
+    // Dispatches the commands collected during the previous tick
+    private static void dispatchPending() {
+        // Commands executed as a result of these are part of the next batch
+        List<Pair<CommandSender, String>> batch = new ArrayList<>(pending);
+        pending.clear();
+
+        batch.forEach(entry -> {
+            try {
+                Bukkit.dispatchCommand(entry.getFirst(), entry.getSecond());
+            } catch (CommandException ex) {
+                RegionProtection.error("Failed to execute region command \"" + entry.getSecond() + "\": " +
+                        ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * The values which can be substituted into a command.
+     */
+    private enum Placeholder {
+        PLAYER("%player%"),
+        WORLD("%world%"),
+        X("%x%"),
+        Y("%y%"),
+        Z("%z%");
+
+        final String marker;
+
+        Placeholder(String marker) {
+            this.marker = marker;
+        }
+
+        // Returns the placeholder starting at the given index of the command, or null if there is none
+        static Placeholder at(String command, int index) {
+            for (Placeholder placeholder : values()) {
+                if (command.startsWith(placeholder.marker, index))
+                    return placeholder;
+            }
+
+            return null;
+        }
+
+        String valueFor(Player player, Location location) {
+            switch (this) {
+                case PLAYER:
+                    return player.getName();
+                case WORLD:
+                    return location.getWorld().getName();
+                case X:
+                    return Utils.doubleToString(location.getX(), 3);
+                case Y:
+                    return Utils.doubleToString(location.getY(), 3);
+                default:
+                    return Utils.doubleToString(location.getZ(), 3);
+            }
+        }
     }
 }
@@ -4,25 +4,24 @@ import com.kicas.rp.util.Utils;
 import org.bukkit.Material;
 import org.bukkit.entity.EntityType;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashSet;
-import java.util.Objects;
+import java.util.EnumSet;
 import java.util.Set;
 
 /**
- * Provides common functionality for filters of enums.
+ * Provides common functionality for filters of enums. The elements are stored in an enum set, which is a bit set
+ * indexed by ordinal, so testing an element is a single word lookup, and augmenting or reducing a filter by another
+ * filter of the same type works on whole words.
  */
 public abstract class EnumFilter<E extends Enum<E>> extends AbstractFilter<E> {
     protected final Class<E> enumClass;
 
     public EnumFilter(boolean isWhitelist, Set<E> filter, Class<E> enumClass) {
-        super(isWhitelist, filter);
+        super(isWhitelist, toEnumSet(filter, enumClass));
         this.enumClass = enumClass;
     }
 
     public EnumFilter(boolean isWhitelist, Class<E> enumClass) {
-        this(isWhitelist, new HashSet<>(), enumClass);
+        this(isWhitelist, EnumSet.noneOf(enumClass), enumClass);
     }
 
     public EnumFilter(Class<E> enumClass) {
@@ -39,10 +38,15 @@ public abstract class EnumFilter<E extends Enum<E>> extends AbstractFilter<E> {
      */
     @Deprecated
     public void setFilter(boolean isWhitelist, Set<Integer> ordinalFilter) {
+        checkModifiable();
         this.isWhitelist = isWhitelist;
-        filter.clear();
+        EnumSet<E> elements = EnumSet.noneOf(enumClass);
         E[] enumConstants = enumClass.getEnumConstants();
-        ordinalFilter.stream().map(ordinal -> enumConstants[ordinal]).forEach(filter::add);
+        for (int ordinal : ordinalFilter)
+            elements.add(enumConstants[ordinal]);
+
+        filter.clear();
+        filter.addAll(elements);
     }
 
     /**
@@ -52,23 +56,29 @@ public abstract class EnumFilter<E extends Enum<E>> extends AbstractFilter<E> {
      * @param nameFilter the enum constants to add to the filter.
      */
     public void setNameFilter(boolean isWhitelist, Set<String> nameFilter)  {
+        checkModifiable();
         this.isWhitelist = isWhitelist;
+        EnumSet<E> elements = EnumSet.noneOf(enumClass);
+        for (String name : nameFilter) {
+            // Constants which no longer exist are dropped
+            E element = Utils.safeValueOf(enumName -> Enum.valueOf(enumClass, enumName), name);
+            if (element != null)
+                elements.add(element);
+        }
+
         filter.clear();
+        filter.addAll(elements);
+    }
 
-        final Method valueOf;
-        try {
-            valueOf = enumClass.getMethod("valueOf", String.class);
-        } catch (NoSuchMethodException ex) {
-            throw new InternalError(ex);
-        }
+    // Copies the given elements into an enum set unless they are already stored in one
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> EnumSet<E> toEnumSet(Set<E> elements, Class<E> enumClass) {
+        if (elements instanceof EnumSet)
+            return (EnumSet<E>) elements;
 
-        nameFilter.stream().map(name -> {
-            try {
-                return enumClass.cast(valueOf.invoke(null, name));
-            } catch (ClassCastException | IllegalAccessException | InvocationTargetException ex) {
-                return null;
-            }
-        }).filter(Objects::nonNull).forEach(filter::add);
+        EnumSet<E> enumSet = EnumSet.noneOf(enumClass);
+        enumSet.addAll(elements);
+        return enumSet;
     }
 
     /**
@@ -100,6 +110,14 @@ public abstract class EnumFilter<E extends Enum<E>> extends AbstractFilter<E> {
         public EntityFilter() {
             super(EntityType.class);
         }
+
+        @Override
+        public EntityFilter copy() {
+            EntityFilter copy = new EntityFilter();
+            copy.isWhitelist = isWhitelist;
+            copy.filter.addAll(filter);
+            return copy;
+        }
     }
 
     /**
@@ -111,5 +129,13 @@ public abstract class EnumFilter<E extends Enum<E>> extends AbstractFilter<E> {
         public MaterialFilter() {
             super(Material.class);
         }
+
+        @Override
+        public MaterialFilter copy() {
+            MaterialFilter copy = new MaterialFilter();
+            copy.isWhitelist = isWhitelist;
+            copy.filter.addAll(filter);
+            return copy;
+        }
     }
 }
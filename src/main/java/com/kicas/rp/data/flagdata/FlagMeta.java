@@ -2,9 +2,13 @@ package com.kicas.rp.data.flagdata;
 
 /**
  * This class is the root for all flag metadata classes. This class requires that each flag metadata type has methods to
- * convert in and out of some serialized string form.
+ * convert in and out of some serialized string form. Metadata which is interned through the flag meta pool is shared
+ * between flag containers and can no longer be modified, so changes have to be made to a copy.
  */
 public abstract class FlagMeta {
+    // Set once this instance is shared through the flag meta pool
+    volatile boolean interned;
+
     /**
      * Updates the flag metadata based on the given string.
      *
@@ -19,6 +23,31 @@ public abstract class FlagMeta {
      */
     public abstract String toMetaString();
 
+    /**
+     * Creates a modifiable copy of this metadata, which is not interned even if this metadata is.
+     *
+     * @return a copy of this metadata.
+     */
+    public abstract FlagMeta copy();
+
+    /**
+     * @return true if this metadata is shared through the flag meta pool and therefore cannot be modified, false
+     * otherwise.
+     */
+    public boolean isInterned() {
+        return interned;
+    }
+
+    /**
+     * Should be called by every method which modifies this metadata.
+     *
+     * @throws IllegalStateException if this metadata is interned.
+     */
+    protected final void checkModifiable() {
+        if (interned)
+            throw new IllegalStateException("Interned flag metadata cannot be modified.");
+    }
+
     /**
      * @see FlagMeta#toMetaString() toMetaString
      */
@@ -0,0 +1,61 @@
+package com.kicas.rp.data.flagdata;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Interns flag metadata, so that flag containers with equivalent values for a flag share a single instance. Most claims
+ * carry the same filters and texts, often the defaults or a template used across the server, so interning them keeps
+ * only one copy of each in memory. Interned metadata cannot be modified, so a container which changes a shared value
+ * replaces it with a modified copy. Trust metadata is specific to a single region and is never interned. Instances are
+ * dropped from the pool once no container refers to them anymore.
+ */
+public final class FlagMetaPool {
+    // Key: meta class, value: the interned instances of that class
+    private static final Map<Class<?>, Map<FlagMeta, WeakReference<FlagMeta>>> INSTANCES = new HashMap<>();
+
+    private FlagMetaPool() {
+    }
+
+    /**
+     * Returns the interned instance equivalent to the given metadata. If there is no such instance yet, the given
+     * metadata becomes the interned instance and can no longer be modified.
+     *
+     * @param meta the metadata.
+     * @param <T>  the metadata type.
+     * @return the interned instance equivalent to the given metadata, or the given metadata itself if it is trust
+     * metadata.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends FlagMeta> T intern(T meta) {
+        if (meta.interned || meta instanceof TrustMeta)
+            return meta;
+
+        synchronized (INSTANCES) {
+            // Filters of different types can be equal, so each class has its own instances
+            Map<FlagMeta, WeakReference<FlagMeta>> instances = INSTANCES.computeIfAbsent(meta.getClass(),
+                    metaClass -> new WeakHashMap<>());
+            WeakReference<FlagMeta> reference = instances.get(meta);
+            FlagMeta interned = reference == null ? null : reference.get();
+            if (interned != null)
+                return (T) interned;
+
+            meta.interned = true;
+            instances.put(meta, new WeakReference<>(meta));
+            return meta;
+        }
+    }
+
+    /**
+     * Interns the given flag value if it is flag metadata. Other values, such as the values of boolean flags, are
+     * returned as they are.
+     *
+     * @param value the flag value.
+     * @return the interned flag value.
+     */
+    public static Object internValue(Object value) {
+        return value instanceof FlagMeta ? intern((FlagMeta) value) : value;
+    }
+}
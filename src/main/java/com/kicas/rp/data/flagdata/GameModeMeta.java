@@ -24,6 +24,7 @@ public class GameModeMeta extends FlagMeta {
      * @param metaString "creative", "survival", "adventure", or "spectator".
      */
     public void readMetaString(String metaString) {
+        checkModifiable();
         Mode mode = Utils.valueOfFormattedName(metaString, Mode.class);
         if (mode == null)
             throw new IllegalArgumentException("Invalid gamemode: \"" + metaString + "\"");
@@ -37,6 +38,21 @@ public class GameModeMeta extends FlagMeta {
         return Utils.formattedName(mode);
     }
 
+    @Override
+    public GameModeMeta copy() {
+        return new GameModeMeta(mode);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other == this || (other instanceof GameModeMeta && mode == ((GameModeMeta) other).mode);
+    }
+
+    @Override
+    public int hashCode() {
+        return mode.hashCode();
+    }
+
     /**
      * @return the GameMode of this gamemode change.
      */
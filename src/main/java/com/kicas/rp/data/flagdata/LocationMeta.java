@@ -5,6 +5,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -68,6 +69,7 @@ public class LocationMeta extends FlagMeta {
      */
     @Override
     public void readMetaString(String metaString) {
+        checkModifiable();
         String[] args = metaString.split(" ");
 
         if (args.length == 1)
@@ -115,4 +117,27 @@ public class LocationMeta extends FlagMeta {
         return Utils.doubleToString(x, 3) + "x, " + Utils.doubleToString(y, 3) + "y, " + Utils.doubleToString(z, 3) +
                 "z (" + Bukkit.getWorld(world).getName() + ")";
     }
+
+    @Override
+    public LocationMeta copy() {
+        return new LocationMeta(world, x, y, z, yaw, pitch);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+
+        if (!(other instanceof LocationMeta))
+            return false;
+
+        LocationMeta lm = (LocationMeta) other;
+        return Objects.equals(world, lm.world) && x == lm.x && y == lm.y && z == lm.z && yaw == lm.yaw &&
+                pitch == lm.pitch;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(world, x, y, z, yaw, pitch);
+    }
 }
@@ -20,6 +20,11 @@ public class StringFilter extends AbstractFilter<String> {
         this(false);
     }
 
+    @Override
+    public StringFilter copy() {
+        return new StringFilter(isWhitelist, new HashSet<>(filter));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1,20 +1,28 @@
 package com.kicas.rp.data.flagdata;
 
+import com.kicas.rp.RegionProtection;
+import com.kicas.rp.util.TextTemplate;
 import com.kicas.rp.util.TextUtils;
 import org.bukkit.entity.Player;
 
 /**
  * Represents metadata for flags that contain formatted in-game text. The format stored follows that which is parsed by
- * the TextUtils utility.
+ * the TextUtils utility. The text is compiled into a template when it is first sent, or right away when it is read from
+ * a meta string so that the syntax is checked, and sending it afterwards only fills in the player's name. Stored text
+ * which turns out to be invalid when it is first sent is reported once and then not sent at all.
  */
 public class TextMeta extends FlagMeta {
     private String text;
+    // Null until the text is first sent, the template is immutable so it is shared with copies
+    private volatile TextTemplate template;
 
     public static final String EMPTY_TEXT_PLACEHOLDER = "~";
     public static final TextMeta EMPTY_TEXT = new TextMeta();
 
+    // The text should already be known to be valid, it is only compiled when it is sent
     public TextMeta(String text) {
         this.text = text;
+        this.template = null;
     }
 
     public TextMeta() {
@@ -35,8 +43,22 @@ public class TextMeta extends FlagMeta {
      * @param player the player to send the message to.
      */
     public void sendTo(Player player) {
-        if (!text.isEmpty())
-            TextUtils.sendFormatted(player, text.replaceAll("%player%", "%0"), player.getName());
+        TextTemplate template = this.template;
+        if (template == null) {
+            // Compiling twice in a race yields the same template
+            try {
+                template = TextTemplate.compile(text, "player");
+            } catch (TextUtils.SyntaxException ex) {
+                RegionProtection.error("Invalid stored text \"" + text + "\": " + ex.getMessage());
+                // Remember the failure as an empty template so that it is not compiled and reported again
+                template = TextTemplate.compile("", "player");
+            }
+
+            this.template = template;
+        }
+
+        if (!template.isEmpty())
+            player.spigot().sendMessage(template.render(player.getName()));
     }
 
     /**
@@ -46,8 +68,12 @@ public class TextMeta extends FlagMeta {
      */
     @Override
     public void readMetaString(String metaString) {
-        text = EMPTY_TEXT_PLACEHOLDER.equals(metaString) ? "" : metaString.replaceAll("\\\\n|\\\\r", "\n");
-        TextUtils.format(text); // Check syntax
+        checkModifiable();
+        String newText = EMPTY_TEXT_PLACEHOLDER.equals(metaString) ? "" : metaString.replaceAll("\\\\n|\\\\r",
+                "\n");
+        // Compiling also checks the syntax, so the text is only changed if it is valid
+        template = TextTemplate.compile(newText, "player");
+        text = newText;
     }
 
     /**
@@ -58,6 +84,13 @@ public class TextMeta extends FlagMeta {
         return text.isEmpty() ? EMPTY_TEXT_PLACEHOLDER : text.replaceAll("\n|\r\n", "\\\\n");
     }
 
+    @Override
+    public TextMeta copy() {
+        TextMeta copy = new TextMeta(text);
+        copy.template = template;
+        return copy;
+    }
+
     /**
      * Returns true if and only if the given object is a text meta instance and if the raw text within the given object
      * is equal to the raw text within this object.
@@ -76,4 +109,9 @@ public class TextMeta extends FlagMeta {
         TextMeta tm = (TextMeta) other;
         return text.equals(tm.text);
     }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
 }
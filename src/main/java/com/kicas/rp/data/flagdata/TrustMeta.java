@@ -7,6 +7,7 @@ import com.kicas.rp.util.Utils;
 import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -17,24 +18,86 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
     // Key: player UUID, value: trust level
     private final Map<UUID, TrustLevel> trustData;
     private TrustLevel publicTrustLevel;
+    // Changes whenever this meta is modified, see nextEpoch
+    private volatile long epoch;
+    // The regions which have this meta as their trust flag, created when the first holder is added
+    private List<Region> holders;
+
+    // Source of the trust epochs of trust metas and flag containers
+    private static final AtomicLong EPOCH_COUNTER = new AtomicLong();
 
     // Default values
     public static final TrustMeta FULL_TRUST = new TrustMeta(TrustLevel.BUILD);
     public static final TrustMeta NO_TRUST = new TrustMeta();
 
     public TrustMeta() {
-        this.trustData = new HashMap<>();
-        this.publicTrustLevel = TrustLevel.NONE;
+        this(TrustLevel.NONE);
     }
 
     public TrustMeta(TrustLevel publicTrustLevel) {
         this.trustData = new HashMap<>();
         this.publicTrustLevel = publicTrustLevel;
+        this.epoch = nextEpoch();
+    }
+
+    /**
+     * Returns a new trust epoch. Epochs are strictly increasing, so the most recent change among several trust metas
+     * and flag containers can be detected by comparing the maximum of their epochs.
+     *
+     * @return a new trust epoch.
+     */
+    public static long nextEpoch() {
+        return EPOCH_COUNTER.incrementAndGet();
+    }
+
+    /**
+     * @return the epoch of the last modification of this trust meta.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Adds a region which has this meta as its trust flag. Holders are notified whenever this meta is modified.
+     *
+     * @param region the region.
+     */
+    public synchronized void addHolder(Region region) {
+        if (holders == null)
+            holders = new ArrayList<>(1);
+
+        holders.add(region);
+    }
+
+    /**
+     * Removes a region which no longer has this meta as its trust flag.
+     *
+     * @param region the region.
+     */
+    public synchronized void removeHolder(Region region) {
+        if (holders != null && holders.remove(region) && holders.isEmpty())
+            holders = null;
+    }
+
+    // Updates the epoch of this meta and notifies the holders
+    private void modified() {
+        epoch = nextEpoch();
+
+        List<Region> toNotify;
+        synchronized (this) {
+            if (holders == null)
+                return;
+
+            toNotify = new ArrayList<>(holders);
+        }
+
+        toNotify.forEach(Region::trustChanged);
     }
 
     /**
      * @return an exact copy of this trust meta.
      */
+    @Override
     public TrustMeta copy() {
         TrustMeta copy = new TrustMeta(publicTrustLevel);
         copy.trustData.putAll(trustData);
@@ -53,6 +116,7 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
             publicTrustLevel = other.publicTrustLevel;
 
         trustData.putAll(other.trustData);
+        modified();
     }
 
     /**
@@ -70,6 +134,7 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
             if (trustData.get(uuid) == trust)
                 trustData.remove(uuid);
         });
+        modified();
     }
 
     /**
@@ -85,12 +150,31 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
      * @return true if the given player has the given level of trust, false other wise.
      */
     public boolean hasTrust(Player player, TrustLevel trust, FlagContainer container) {
-        // If these conditions are met then the player bypasses the trust flag
-        if (container.isEffectiveOwner(player) || RegionProtection.getDataManager().getPlayerSession(player)
-                .isIgnoringTrust()) {
+        PlayerSession session = RegionProtection.getDataManager().getPlayerSession(player);
+        if (session.isIgnoringTrust())
             return true;
+
+        // Regions answer trust queries through their compiled trust table as long as this is their trust meta
+        Region trustSource = container instanceof Region ? (Region) container : container.getTrustSource();
+        if (trustSource != null && container.getFlagMeta(RegionFlag.TRUST) == this) {
+            long epoch = trustSource.getTrustEpoch();
+            // Decisions in admin-owned regions depend on the player's op status, which has no epoch
+            if (trustSource.isAdminOwned())
+                return trustSource.getTrustTable(epoch).hasTrust(player, trust);
+
+            Boolean cached = session.getCachedTrustDecision(trustSource, trust, epoch);
+            if (cached != null)
+                return cached;
+
+            boolean hasTrust = trustSource.getTrustTable(epoch).hasTrust(player, trust);
+            session.cacheTrustDecision(trustSource, trust, epoch, hasTrust);
+            return hasTrust;
         }
 
+        // If this condition is met then the player bypasses the trust flag
+        if (container.isEffectiveOwner(player))
+            return true;
+
         // Check for parent flags
         if (container instanceof Region) {
             Region region = (Region) container;
@@ -124,6 +208,7 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
      */
     public void trust(UUID uuid, TrustLevel trust) {
         trustData.put(uuid, trust);
+        modified();
     }
 
     /**
@@ -133,6 +218,7 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
      */
     public void untrust(UUID uuid) {
         trustData.remove(uuid);
+        modified();
     }
 
     /**
@@ -142,6 +228,7 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
      */
     public void trustPublic(TrustLevel trust) {
         publicTrustLevel = trust;
+        modified();
     }
 
     /**
@@ -229,7 +316,7 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
      * @return A list of the names for players with any trust on a region
      */
     public List<String> getAllTrustedPlayerNames() {
-        List<String> players = new ArrayList<>(getAllTrustedPlayers().stream().map(RegionProtection.getDataManager()::currentUsernameForUuid).collect(Collectors.toList()));
+        List<String> players = new ArrayList<>(getAllTrustedPlayers().stream().map(RegionProtection.getDataManager()::currentUsernameForUuid).filter(Objects::nonNull).collect(Collectors.toList()));
         if (publicTrustLevel != TrustLevel.NONE)
             players.add("public");
         return players;
@@ -293,39 +380,45 @@ public class TrustMeta extends FlagMeta implements Augmentable<TrustMeta> {
         if (metaString.isEmpty()) {
             publicTrustLevel = TrustLevel.NONE;
             trustData.clear();
+            modified();
             return;
         }
 
-        // Create the metadata and begin parsing the individual trust levels
-        for (String trust : metaString.split(" ")) {
-            // Ignore extra spaces
-            if (trust.isEmpty())
-                continue;
-
-            // Error: missing ':'
-            if (!trust.contains(":"))
-                throw new IllegalArgumentException("Expected a : in \"" + trust + "\"");
-
-            // Get and check the level
-            String trustLevel = trust.substring(0, trust.indexOf(':')),
-                    players = trust.substring(trust.indexOf(':') + 1);
-            TrustLevel level = Utils.safeValueOf(TrustLevel::valueOf, trustLevel.toUpperCase());
-            if (level == null)
-                throw new IllegalArgumentException("Invalid trust level: " + trustLevel);
-
-            // Parse the players
-            for (String player : players.split(",")) {
-                if ("public".equals(player)) {
-                    publicTrustLevel = level;
+        try {
+            // Create the metadata and begin parsing the individual trust levels
+            for (String trust : metaString.split(" ")) {
+                // Ignore extra spaces
+                if (trust.isEmpty())
                     continue;
-                }
 
-                UUID uuid = RegionProtection.getDataManager().uuidForUsername(player);
-                if (uuid == null)
-                    throw new IllegalArgumentException("Invalid player name: " + player);
-
-                trustData.put(uuid, level);
+                // Error: missing ':'
+                if (!trust.contains(":"))
+                    throw new IllegalArgumentException("Expected a : in \"" + trust + "\"");
+
+                // Get and check the level
+                String trustLevel = trust.substring(0, trust.indexOf(':')),
+                        players = trust.substring(trust.indexOf(':') + 1);
+                TrustLevel level = Utils.safeValueOf(TrustLevel::valueOf, trustLevel.toUpperCase());
+                if (level == null)
+                    throw new IllegalArgumentException("Invalid trust level: " + trustLevel);
+
+                // Parse the players
+                for (String player : players.split(",")) {
+                    if ("public".equals(player)) {
+                        publicTrustLevel = level;
+                        continue;
+                    }
+
+                    UUID uuid = RegionProtection.getDataManager().uuidForUsername(player);
+                    if (uuid == null)
+                        throw new IllegalArgumentException("Invalid player name: " + player);
+
+                    trustData.put(uuid, level);
+                }
             }
+        } finally {
+            // Part of the trust may have been applied even if parsing failed
+            modified();
         }
     }
 }
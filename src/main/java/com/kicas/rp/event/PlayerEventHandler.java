@@ -132,7 +132,7 @@ public class PlayerEventHandler implements Listener {
 
             // Adjust the y-value if the block placed is craftable
             if (region != null && Materials.hasRecipe(event.getBlock().getType()))
-                region.getMin().setY(
+                region.setMinY(
                     Math.max( // Don't go lower than world bottom
                         event.getBlock().getWorld().getMinHeight(),
                         event.getBlock().getY() - 5
@@ -290,8 +290,9 @@ public class RegionToolHandler implements Listener {
                 }
             }
             TextUtils.sendFormatted(recipient, message);
+            // Follow the player so that the whole border of large regions can be walked
             RegionProtection.getDataManager().getPlayerSession(recipient)
-                    .setRegionHighlighter(new RegionHighlighter(recipient, claim, true));
+                    .setRegionHighlighter(new StreamingRegionHighlighter(recipient, claim, true));
         }
     }
 }
@@ -3,18 +3,24 @@ package com.kicas.rp.util;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.UUID;
 
 /**
- * This class reads various types of data from an input stream.
+ * This class reads various types of data from an input stream, or directly from a byte buffer such as a memory-mapped
+ * file.
  */
 public class Decoder implements Closeable {
     /**
-     * The input stream.
+     * The input stream. If this decoder reads from a buffer, then this stream is a view of that buffer.
      */
     private final WrappedInputStream in;
+    /**
+     * The buffer to read from directly, or null if this decoder reads from a stream.
+     */
+    private final ByteBuffer buffer;
 
     /**
      * Constructs a new decoder with a specified input stream that defaults to not decompressing lengths.
@@ -23,6 +29,18 @@ public class Decoder implements Closeable {
      */
     public Decoder(InputStream in) {
         this.in = new WrappedInputStream(in);
+        this.buffer = null;
+    }
+
+    /**
+     * Constructs a new decoder which reads directly from the given buffer, starting at its current position. Multi-byte
+     * values are read in big-endian order regardless of the order set on the buffer.
+     *
+     * @param buffer the buffer.
+     */
+    public Decoder(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        this.in = new WrappedInputStream(new BufferInputStream(this.buffer));
     }
 
     /**
@@ -48,7 +66,10 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public int read() throws IOException {
-        return in.read();
+        if (buffer == null)
+            return in.read();
+
+        return in.lastRead = buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
     }
 
     /**
@@ -61,7 +82,31 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public int read(byte[] dest, int startIndex, int len) throws IOException {
-        return in.read(dest, startIndex, len);
+        if (buffer == null)
+            return in.read(dest, startIndex, len);
+
+        int read = Math.min(len, buffer.remaining());
+        buffer.get(dest, startIndex, read);
+        if (read < len)
+            in.lastRead = -1;
+        return read;
+    }
+
+    /**
+     * Returns a new decoder which reads the given number of bytes starting at the given offset from this decoder's
+     * current position. This decoder's position is not affected, so multiple slices can be decoded independently and
+     * concurrently. This operation is only supported by decoders that read from a buffer.
+     *
+     * @param offset the offset of the slice from the current position.
+     * @param length the length of the slice.
+     * @return a decoder for the given slice.
+     * @throws IndexOutOfBoundsException if the slice does not fit within the remaining bytes.
+     */
+    public Decoder slice(int offset, int length) {
+        if (buffer == null)
+            throw new UnsupportedOperationException("Only buffer-backed decoders can be sliced.");
+
+        return new Decoder(buffer.slice(buffer.position() + offset, length));
     }
 
     /**
@@ -84,7 +129,7 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public boolean readBoolean() throws IOException {
-        return in.read() == 1;
+        return read() == 1;
     }
 
     /**
@@ -94,7 +139,7 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public short readShort() throws IOException {
-        return (short) ((in.read() << 8) | in.read());
+        return (short) ((read() << 8) | read());
     }
 
     /**
@@ -117,7 +162,10 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public int readInt() throws IOException {
-        return (in.read() << 24) | (in.read() << 16) | (in.read() << 8) | in.read();
+        if (buffer != null && buffer.remaining() >= Integer.BYTES)
+            return buffer.getInt();
+
+        return (read() << 24) | (read() << 16) | (read() << 8) | read();
     }
 
     /**
@@ -140,9 +188,12 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public long readLong() throws IOException {
-        return ((long) in.read()) << 56 | ((long) in.read()) << 48 | ((long) in.read()) << 40 |
-                ((long) in.read()) << 32 | ((long) in.read()) << 24 | ((long) in.read()) << 16 |
-                ((long) in.read()) << 8 | ((long) in.read());
+        if (buffer != null && buffer.remaining() >= Long.BYTES)
+            return buffer.getLong();
+
+        return ((long) read()) << 56 | ((long) read()) << 48 | ((long) read()) << 40 |
+                ((long) read()) << 32 | ((long) read()) << 24 | ((long) read()) << 16 |
+                ((long) read()) << 8 | ((long) read());
     }
 
     /**
@@ -165,16 +216,16 @@ public class Decoder implements Closeable {
      * @throws IOException If an I/O error occurs.
      */
     public int readCompressedUint() throws IOException {
-        int b0 = in.read();
+        int b0 = read();
         switch (b0 & 0xC0) {
             case 0x0:
                 return b0 & 0x3F;
             case 0x40:
-                return ((b0 & 0x3F) << 8) | in.read();
+                return ((b0 & 0x3F) << 8) | read();
             case 0x80:
-                return (b0 & 0x3F) << 16 | in.read() << 8 | in.read();
+                return (b0 & 0x3F) << 16 | read() << 8 | read();
             case 0xC0:
-                return (b0 & 0x3F) << 24 | in.read() << 16 | in.read() << 8 | in.read();
+                return (b0 & 0x3F) << 24 | read() << 16 | read() << 8 | read();
             default:
                 return 0;
         }
@@ -188,20 +239,20 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public int readCompressedInt() throws IOException {
-        int b0 = in.read();
+        int b0 = read();
         int val;
         switch (b0 & 0xC0) {
             case 0x0:
                 val = b0 & 0x1F;
                 break;
             case 0x40:
-                val = (b0 & 0x1F) << 8 | in.read();
+                val = (b0 & 0x1F) << 8 | read();
                 break;
             case 0x80:
-                val = (b0 & 0x1F) << 16 | in.read() << 8 | in.read();
+                val = (b0 & 0x1F) << 16 | read() << 8 | read();
                 break;
             case 0xC0:
-                val = (b0 & 0x1F) << 24 | in.read() << 16 | in.read() << 8 | in.read();
+                val = (b0 & 0x1F) << 24 | read() << 16 | read() << 8 | read();
                 break;
             default:
                 return 0;
@@ -266,9 +317,23 @@ public class Decoder implements Closeable {
      * @throws IOException if an I/O error occurs.
      */
     public String readUTF8Raw() throws IOException {
-        byte[] buffer = new byte[readCompressedUint()];
-        if (buffer.length == 0)
+        int len = readCompressedUint();
+        if (len == 0)
             return "";
+
+        // Decode straight out of the buffer without copying the bytes into an intermediate array
+        if (buffer != null) {
+            int read = Math.min(len, buffer.remaining());
+            String s = buffer.hasArray()
+                    ? new String(buffer.array(), buffer.arrayOffset() + buffer.position(), read, StandardCharsets.UTF_8)
+                    : StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), read)).toString();
+            buffer.position(buffer.position() + read);
+            if (read < len)
+                in.lastRead = -1;
+            return s;
+        }
+
+        byte[] buffer = new byte[len];
         int read = read(buffer, 0, buffer.length);
         return new String(buffer, 0, read, StandardCharsets.UTF_8);
     }
@@ -305,6 +370,9 @@ public class Decoder implements Closeable {
      * @see java.util.UUID
      */
     public UUID readUuid() throws IOException {
+        if (buffer != null && buffer.remaining() >= 2 * Long.BYTES)
+            return new UUID(buffer.getLong(), buffer.getLong());
+
         return new UUID(readLong(), readLong());
     }
 
@@ -420,4 +488,23 @@ public class Decoder implements Closeable {
             return (lastRead = stream.read());
         }
     }
+
+    /**
+     * Exposes a byte buffer as an input stream so that stream-based utilities can read from it.
+     */
+    private static class BufferInputStream extends InputStream {
+        final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+    }
 }
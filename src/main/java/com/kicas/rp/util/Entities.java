@@ -10,33 +10,67 @@ import static org.bukkit.entity.EntityType.*;
 import static org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason.*;
 
 import java.util.Arrays;
-import java.util.List;
 
 /**
- * Helps to categorize entities.
+ * Helps to categorize entities. Every category an entity type belongs to is stored as a bit in a table indexed by the
+ * ordinal of the entity type, which is filled once when this class is loaded.
  */
 public final class Entities {
-    private static final List<EntityType> CHEST_HOLDERS = Arrays.asList(MULE, DONKEY, LLAMA);
-    private static final List<EntityType> INVENTORY_HOLDERS = Arrays.asList(ARMOR_STAND, ITEM_FRAME, TRADER_LLAMA,
-            CHEST_MINECART, FURNACE_MINECART, HOPPER_MINECART, HORSE, SKELETON_HORSE, ZOMBIE_HORSE);
-    private static final List<EntityType> INTERACTABLES = Arrays.asList(SHEEP, COW, MOOSHROOM, VILLAGER, BEE,
-            WANDERING_TRADER, TRADER_LLAMA, TURTLE, CHICKEN, CAT, FOX, OCELOT, PANDA, PARROT, PIG, RABBIT, WOLF);
-    private static final List<EntityType> HOSTILES = Arrays.asList(WITHER_SKELETON, WITHER, SILVERFISH, ENDERMAN,
-            CAVE_SPIDER, SPIDER, VINDICATOR, WITCH, SLIME, CREEPER, BLAZE, ZOMBIE, SKELETON, EntityType.DROWNED,
-            ELDER_GUARDIAN, ENDER_DRAGON, ENDERMITE, EVOKER, GHAST, GIANT, GUARDIAN, HUSK, ILLUSIONER, MAGMA_CUBE,
-            PHANTOM, PILLAGER, RAVAGER, SHULKER, STRAY, VEX, ZOMBIE_VILLAGER, ZOMBIFIED_PIGLIN, ZOGLIN, HOGLIN);
-    private static final List<EntityType> AGGERABLES = Arrays.asList(POLAR_BEAR, IRON_GOLEM, PIGLIN, WOLF, SNOW_GOLEM, BEE);
-    private static final List<EntityType> PASSIVES = Arrays.asList(CAT, CHICKEN, COW, DONKEY, DOLPHIN, FOX, HORSE,
-            LLAMA, MOOSHROOM, MULE, OCELOT, PANDA, PARROT, PIG, RABBIT, SHEEP, TURTLE,
-            WANDERING_TRADER, TRADER_LLAMA, VILLAGER, STRIDER);
-    private static final List<CreatureSpawnEvent.SpawnReason> ARTIFICIAL_SPAWN_REASONS = Arrays.asList(SPAWNER,
-            SPAWNER_EGG, BUILD_SNOWMAN, BUILD_IRONGOLEM, BUILD_WITHER, BREEDING, DISPENSE_EGG, CUSTOM, DEFAULT);
-    private static final List<EntityType> PLAYER_PROJECTILES = Arrays.asList(ARROW, SPECTRAL_ARROW, EntityType.EGG,
-            EntityType.ENDER_PEARL, SNOWBALL, TRIDENT);
+    // Category bits
+    private static final int CHEST_HOLDER      = 1;
+    private static final int INVENTORY_HOLDER  = 1 << 1;
+    private static final int INTERACTABLE      = 1 << 2;
+    private static final int HOSTILE           = 1 << 3;
+    private static final int AGGERABLE         = 1 << 4;
+    private static final int PASSIVE           = 1 << 5;
+    private static final int NOT_ALIVE         = 1 << 6;
+    private static final int PLAYER_PROJECTILE = 1 << 7;
+
+    // The category bits of each entity type, indexed by ordinal
+    private static final byte[] CATEGORIES = new byte[EntityType.values().length];
+    private static final boolean[] ARTIFICIAL_SPAWN_REASONS =
+            new boolean[CreatureSpawnEvent.SpawnReason.values().length];
+
+    // Initialize categories
+    static {
+        add(CHEST_HOLDER | INVENTORY_HOLDER, MULE, DONKEY, LLAMA);
+        add(INVENTORY_HOLDER, ARMOR_STAND, ITEM_FRAME, TRADER_LLAMA, CHEST_MINECART, FURNACE_MINECART,
+                HOPPER_MINECART, HORSE, SKELETON_HORSE, ZOMBIE_HORSE);
+        add(INTERACTABLE, SHEEP, COW, MOOSHROOM, VILLAGER, BEE, WANDERING_TRADER, TRADER_LLAMA, TURTLE, CHICKEN,
+                CAT, FOX, OCELOT, PANDA, PARROT, PIG, RABBIT, WOLF);
+        add(HOSTILE, WITHER_SKELETON, WITHER, SILVERFISH, ENDERMAN, CAVE_SPIDER, SPIDER, VINDICATOR, WITCH, SLIME,
+                CREEPER, BLAZE, ZOMBIE, SKELETON, EntityType.DROWNED, ELDER_GUARDIAN, ENDER_DRAGON, ENDERMITE, EVOKER,
+                GHAST, GIANT, GUARDIAN, HUSK, ILLUSIONER, MAGMA_CUBE, PHANTOM, PILLAGER, RAVAGER, SHULKER, STRAY, VEX,
+                ZOMBIE_VILLAGER, ZOMBIFIED_PIGLIN, ZOGLIN, HOGLIN);
+        add(AGGERABLE, POLAR_BEAR, IRON_GOLEM, PIGLIN, WOLF, SNOW_GOLEM, BEE);
+        add(PASSIVE, CAT, CHICKEN, COW, DONKEY, DOLPHIN, FOX, HORSE, LLAMA, MOOSHROOM, MULE, OCELOT, PANDA, PARROT,
+                PIG, RABBIT, SHEEP, TURTLE, WANDERING_TRADER, TRADER_LLAMA, VILLAGER, STRIDER);
+        add(PLAYER_PROJECTILE, ARROW, SPECTRAL_ARROW, EntityType.EGG, EntityType.ENDER_PEARL, SNOWBALL, TRIDENT,
+                FIREBALL);
+
+        for (EntityType entityType : EntityType.values()) {
+            if (!entityType.isAlive())
+                CATEGORIES[entityType.ordinal()] |= NOT_ALIVE;
+        }
+
+        for (CreatureSpawnEvent.SpawnReason reason : Arrays.asList(SPAWNER, SPAWNER_EGG, BUILD_SNOWMAN,
+                BUILD_IRONGOLEM, BUILD_WITHER, BREEDING, DISPENSE_EGG, CUSTOM, DEFAULT)) {
+            ARTIFICIAL_SPAWN_REASONS[reason.ordinal()] = true;
+        }
+    }
 
     private Entities() {
     }
 
+    private static void add(int category, EntityType... entityTypes) {
+        for (EntityType entityType : entityTypes)
+            CATEGORIES[entityType.ordinal()] |= category;
+    }
+
+    private static boolean is(EntityType entityType, int category) {
+        return (CATEGORIES[entityType.ordinal()] & category) != 0;
+    }
+
     /**
      * Returns whether or not the specified entity type is a chest holder, meaning that a player can place a chest on it
      * to hold items.
@@ -45,7 +79,7 @@ public final class Entities {
      * @return true if the given entity type is a chest holder, false otherwise.
      */
     public static boolean isChestHolder(EntityType entityType) {
-        return CHEST_HOLDERS.contains(entityType);
+        return is(entityType, CHEST_HOLDER);
     }
 
     /**
@@ -56,7 +90,7 @@ public final class Entities {
      * @return true if the given entity type is an inventory holder, false otherwise.
      */
     public static boolean isInventoryHolder(EntityType entityType) {
-        return INVENTORY_HOLDERS.contains(entityType) || CHEST_HOLDERS.contains(entityType);
+        return is(entityType, INVENTORY_HOLDER);
     }
 
     /**
@@ -67,7 +101,7 @@ public final class Entities {
      * @return true if the given entity type is interactable, false otherwise.
      */
     public static boolean isInteractable(EntityType entityType) {
-        return INTERACTABLES.contains(entityType);
+        return is(entityType, INTERACTABLE);
     }
 
     /**
@@ -80,8 +114,8 @@ public final class Entities {
      * @return true if the given entity is hostile towards the given player, false otherwise.
      */
     public static boolean isHostile(Player player, Entity entity) {
-        return HOSTILES.contains(entity.getType()) ||
-                (AGGERABLES.contains(entity.getType()) && player.equals(((Mob) entity).getTarget()));
+        return is(entity.getType(), HOSTILE) ||
+                (is(entity.getType(), AGGERABLE) && player.equals(((Mob) entity).getTarget()));
     }
 
     /**
@@ -92,7 +126,7 @@ public final class Entities {
      * @return true if the given entity is generally hostile.
      */
     public static boolean isMonster(EntityType entityType) {
-        return HOSTILES.contains(entityType);
+        return is(entityType, HOSTILE);
     }
 
     /**
@@ -106,8 +140,8 @@ public final class Entities {
      * @return true if the given entity is passive towards the given player, false otherwise.
      */
     public static boolean isPassive(Player player, Entity entity) {
-        return PASSIVES.contains(entity.getType()) || !entity.getType().isAlive() ||
-                (AGGERABLES.contains(entity.getType()) && !player.equals(((Mob) entity).getTarget()));
+        return is(entity.getType(), PASSIVE | NOT_ALIVE) ||
+                (is(entity.getType(), AGGERABLE) && !player.equals(((Mob) entity).getTarget()));
     }
 
     /**
@@ -118,7 +152,7 @@ public final class Entities {
      * @return true if the given entity is generally passive.
      */
     public static boolean isPassive(EntityType entityType) {
-        return AGGERABLES.contains(entityType) || PASSIVES.contains(entityType) || !entityType.isAlive();
+        return is(entityType, AGGERABLE | PASSIVE | NOT_ALIVE);
     }
 
     /**
@@ -128,7 +162,7 @@ public final class Entities {
      * @return true if the given spawn reason is artificial, false otherwise.
      */
     public static boolean isArtificialSpawn(CreatureSpawnEvent.SpawnReason reason) {
-        return ARTIFICIAL_SPAWN_REASONS.contains(reason);
+        return ARTIFICIAL_SPAWN_REASONS[reason.ordinal()];
     }
 
     /**
@@ -138,6 +172,6 @@ public final class Entities {
      * @return true if the given entity is a projectile that the player can manipulate in some way, false otherwise.
      */
     public static boolean isPlayerProjectile(EntityType entityType) {
-        return PLAYER_PROJECTILES.contains(entityType) || entityType == FIREBALL;
+        return is(entityType, PLAYER_PROJECTILE);
     }
 }
@@ -0,0 +1,133 @@
+package com.kicas.rp.util;
+
+import net.md_5.bungee.api.chat.BaseComponent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of format strings compiled into templates, where the values of a format string are parsed as markers
+ * so that formatting the same string again only fills in the values. Values which contain characters with a meaning
+ * to the parser change the parsed structure when they are inserted, so those cannot be filled into a template and
+ * have to be formatted the regular way. The same goes for format strings which do not parse with markers as values,
+ * for instance because a function needs the value itself. Most format strings are constants, so the most recently
+ * used template for a string instance is also kept in a small table looked up by identity.
+ */
+final class FormatCache {
+    private static final int MAX_SIZE = 256;
+    // Must be a power of two
+    private static final int IDENTITY_SLOTS = 64;
+    // Cached for format strings which cannot be compiled into a template
+    private static final TextTemplate NOT_COMPILABLE = new TextTemplate(new BaseComponent[0], 0);
+
+    private final Compiler compiler;
+    private final int markerCount;
+    private final String specialChars;
+    // Key: format string, value: the compiled template, least recently used first
+    private final Map<String, TextTemplate> templates;
+    // Read without locking, the entries are immutable
+    private final Entry[] identityTable;
+
+    /**
+     * @param compiler     parses a format string with the given values.
+     * @param markerCount  the number of values which can be inserted, or zero if no values are inserted.
+     * @param specialChars the characters which cannot be part of an inserted value.
+     */
+    FormatCache(Compiler compiler, int markerCount, String specialChars) {
+        this.compiler = compiler;
+        this.markerCount = markerCount;
+        this.specialChars = specialChars;
+        this.templates = new LinkedHashMap<String, TextTemplate>(MAX_SIZE, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TextTemplate> eldest) {
+                return size() > MAX_SIZE;
+            }
+        };
+        this.identityTable = new Entry[IDENTITY_SLOTS];
+    }
+
+    /**
+     * Formats the given input with the given values using the cached template of the input, compiling it if needed.
+     *
+     * @param input  the format string.
+     * @param values the values to insert, at most as many as there are markers.
+     * @return the formatted components, or null if the input has to be formatted the regular way.
+     */
+    BaseComponent[] format(String input, Object[] values) {
+        if (values.length > markerCount)
+            return null;
+
+        // Values are only converted to strings once
+        String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            strings[i] = String.valueOf(values[i]);
+            if (!isPlain(strings[i]))
+                return null;
+        }
+
+        TextTemplate template = getTemplate(input);
+        return template == NOT_COMPILABLE ? null : template.render((Object[]) strings);
+    }
+
+    private TextTemplate getTemplate(String input) {
+        int slot = System.identityHashCode(input) & (IDENTITY_SLOTS - 1);
+        Entry entry = identityTable[slot];
+        if (entry != null && entry.input == input)
+            return entry.template;
+
+        TextTemplate template;
+        synchronized (templates) {
+            template = templates.get(input);
+        }
+
+        if (template == null) {
+            template = compile(input);
+            synchronized (templates) {
+                templates.put(input, template);
+            }
+        }
+
+        identityTable[slot] = new Entry(input, template);
+        return template;
+    }
+
+    private TextTemplate compile(String input) {
+        Object[] markers = new Object[markerCount];
+        for (int i = 0; i < markerCount; ++i)
+            markers[i] = String.valueOf(TextTemplate.marker(i));
+
+        try {
+            return new TextTemplate(compiler.compile(input, markers), markerCount);
+        } catch (Exception ex) {
+            // Formatting the regular way reports the error if the input is invalid
+            return NOT_COMPILABLE;
+        }
+    }
+
+    private boolean isPlain(String value) {
+        for (int i = 0; i < value.length(); ++i) {
+            if (specialChars.indexOf(value.charAt(i)) >= 0 || TextTemplate.isMarker(value.charAt(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a format string with the given values inserted.
+     */
+    @FunctionalInterface
+    interface Compiler {
+        BaseComponent[] compile(String input, Object[] values) throws Exception;
+    }
+
+    private static final class Entry {
+        final String input;
+        final TextTemplate template;
+
+        Entry(String input, TextTemplate template) {
+            this.input = input;
+            this.template = template;
+        }
+    }
+}
@@ -14,50 +14,99 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Helps to categorize materials.
+ * Helps to categorize materials. Every category a material belongs to is stored as a bit in a table indexed by the
+ * ordinal of the material, which is filled once when this class is loaded, so testing whether a material belongs to a
+ * category does not depend on the size of the category.
  */
 public final class Materials {
-    // Some useful collections of Materials
-    private static final List<Material> INVENTORY_HOLDERS = new ArrayList<>();
-    private static final List<Material> PLACEABLES        = new ArrayList<>();
-    private static final List<Material> CORALS            = new ArrayList<>();
-    private static final List<Material> CONSUMABLES       = new ArrayList<>();
-    private static final List<Material> GROWABLES         = new ArrayList<>();
+    // Category bits
+    private static final int INVENTORY_HOLDER   = 1;
+    private static final int PLACEABLE          = 1 << 1;
+    private static final int CORAL              = 1 << 2;
+    private static final int CONSUMABLE         = 1 << 3;
+    private static final int GROWABLE           = 1 << 4;
+    private static final int PRESSURE_SENSITIVE = 1 << 5;
+    private static final int LOG                = 1 << 6;
+    private static final int SIGN               = 1 << 7;
+    // Tool bits
+    private static final int AXE                = 1 << 8;
+    private static final int HOE                = 1 << 9;
+    private static final int SHOVEL             = 1 << 10;
+    private static final int DYE                = 1 << 11;
+
+    // The category bits of each material, indexed by ordinal
+    private static final int[] CATEGORIES = new int[values().length];
 
     // Initialize categories
     static {
-        INVENTORY_HOLDERS.addAll(Arrays.asList(
+        add(INVENTORY_HOLDER, Arrays.asList(
                 FURNACE, BLAST_FURNACE, SMOKER, JUKEBOX, CHEST, TRAPPED_CHEST, DROPPER, DISPENSER, HOPPER,
                 BREWING_STAND, BARREL, COMPOSTER, CAULDRON
         ));
-        INVENTORY_HOLDERS.addAll(materialsEndingWith("SHULKER_BOX"));
+        add(INVENTORY_HOLDER, materialsEndingWith("SHULKER_BOX"));
 
-        PLACEABLES.addAll(Arrays.asList(
+        add(PLACEABLE, Arrays.asList(
                 BONE_MEAL, ARMOR_STAND, END_CRYSTAL, FLINT_AND_STEEL, FIRE_CHARGE, PAINTING, ITEM_FRAME
         ));
-        PLACEABLES.addAll(materialsEndingWith("BUCKET", Collections.singletonList(MILK_BUCKET)));
-        PLACEABLES.addAll(materialsEndingWith("_BOAT"));
-        PLACEABLES.addAll(materialsEndingWith("MINECART"));
+        add(PLACEABLE, materialsEndingWith("BUCKET", Collections.singletonList(MILK_BUCKET)));
+        add(PLACEABLE, materialsEndingWith("_BOAT"));
+        add(PLACEABLE, materialsEndingWith("MINECART"));
 
         Stream.of("CORAL", "CORAL_BLOCK", "CORAL_FAN", "CORAL_WALL_FAN")
-                .forEach(c -> CORALS.addAll(materialsEndingWith("_" + c)));
+                .forEach(c -> add(CORAL, materialsEndingWith("_" + c)));
 
-        CONSUMABLES.addAll(Arrays.asList(
+        add(CONSUMABLE, Arrays.asList(
                 MILK_BUCKET, POTION, CAKE
         ));
 
-        GROWABLES.addAll(Arrays.asList(
+        add(GROWABLE, Arrays.asList(
                 OAK_SAPLING, SPRUCE_SAPLING, BIRCH_SAPLING, JUNGLE_SAPLING, ACACIA_SAPLING, DARK_OAK_SAPLING,
                 BROWN_MUSHROOM, RED_MUSHROOM, CRIMSON_FUNGUS, WARPED_FUNGUS,
                 WHEAT, CARROTS, POTATOES, COCOA, NETHER_WART, BEETROOTS, SWEET_BERRY_BUSH,
                 CACTUS, SUGAR_CANE, KELP, BAMBOO, BAMBOO_SAPLING, VINE, WEEPING_VINES, TWISTING_VINES,
                 GRASS_BLOCK, MYCELIUM, CRIMSON_NYLIUM, WARPED_NYLIUM
         ));
+
+        add(PRESSURE_SENSITIVE, Arrays.asList(TURTLE_EGG, TRIPWIRE, FARMLAND));
+
+        addNamedCategories();
     }
 
     private Materials() {
     }
 
+    // Categories based on the name include legacy materials
+    @SuppressWarnings("deprecation")
+    private static void addNamedCategories() {
+        for (Material material : values()) {
+            String name = material.name();
+            if (!material.isLegacy() && material.isEdible())
+                CATEGORIES[material.ordinal()] |= CONSUMABLE;
+            if (name.endsWith("PRESSURE_PLATE"))
+                CATEGORIES[material.ordinal()] |= PRESSURE_SENSITIVE;
+            if (name.endsWith("LOG"))
+                CATEGORIES[material.ordinal()] |= LOG;
+            if (name.endsWith("SIGN"))
+                CATEGORIES[material.ordinal()] |= SIGN;
+            if (name.endsWith("AXE"))
+                CATEGORIES[material.ordinal()] |= AXE;
+            if (name.endsWith("HOE"))
+                CATEGORIES[material.ordinal()] |= HOE;
+            if (name.endsWith("SHOVEL"))
+                CATEGORIES[material.ordinal()] |= SHOVEL;
+            if (name.endsWith("DYE"))
+                CATEGORIES[material.ordinal()] |= DYE;
+        }
+    }
+
+    private static void add(int category, List<Material> materials) {
+        materials.forEach(material -> CATEGORIES[material.ordinal()] |= category);
+    }
+
+    private static boolean is(Material material, int category) {
+        return (CATEGORIES[material.ordinal()] & category) != 0;
+    }
+
     /**
      * Collect a group of Materials that have similar endings.
      *
@@ -89,7 +138,7 @@ public final class Materials {
      * @return true if the given material is an inventory holder, false otherwise.
      */
     public static boolean isInventoryHolder(Material material) {
-        return INVENTORY_HOLDERS.contains(material);
+        return is(material, INVENTORY_HOLDER);
     }
 
     /**
@@ -99,7 +148,7 @@ public final class Materials {
      * @return true if the material is placeable, false otherwise.
      */
     public static boolean isPlaceable(Material material) {
-        return PLACEABLES.contains(material);
+        return is(material, PLACEABLE);
     }
 
     /**
@@ -109,7 +158,7 @@ public final class Materials {
      * @return true if the material is a type of coral, false otherwise.
      */
     public static boolean isCoral(Material material) {
-        return CORALS.contains(material);
+        return is(material, CORAL);
     }
 
     /**
@@ -119,7 +168,7 @@ public final class Materials {
      * @return true if the material can be consumed as defined above, false otherwise.
      */
     public static boolean isConsumable(Material material) {
-        return material.isEdible() || CONSUMABLES.contains(material);
+        return is(material, CONSUMABLE);
     }
 
     /**
@@ -129,8 +178,7 @@ public final class Materials {
      * @return true if the given material is sensitive to a player standing on it, false otherwise.
      */
     public static boolean isPressureSensitive(Material material) {
-        return material == TURTLE_EGG || material == TRIPWIRE || material == FARMLAND ||
-                material.name().endsWith("PRESSURE_PLATE");
+        return is(material, PRESSURE_SENSITIVE);
     }
 
     /**
@@ -145,7 +193,7 @@ public final class Materials {
      * @return true if the given material can grow, false otherwise.
      */
     public static boolean isGrowable(Material material) {
-        return GROWABLES.contains(material);
+        return is(material, GROWABLE);
     }
 
     /**
@@ -163,14 +211,13 @@ public final class Materials {
         if (END_PORTAL_FRAME == material && ENDER_EYE == tool)
             return true;
 
-        if (tool.name().endsWith("AXE"))
-            return material.name().endsWith("LOG");
+        if (is(tool, AXE))
+            return is(material, LOG);
 
-        if (tool.name().endsWith("HOE"))
+        if (is(tool, HOE))
             return material == GRASS_BLOCK || material == DIRT || material == DIRT_PATH;
 
-        return (tool.name().endsWith("SHOVEL") && material == GRASS_BLOCK) ||
-                (tool.name().endsWith("DYE") && material.name().endsWith("SIGN"));
+        return (is(tool, SHOVEL) && material == GRASS_BLOCK) || (is(tool, DYE) && is(material, SIGN));
     }
 
     /**
@@ -0,0 +1,256 @@
+package com.kicas.rp.util;
+
+import java.util.*;
+
+/**
+ * A compressed prefix trie of strings which is matched ignoring case, used to complete partially typed names without
+ * going through every known name. Strings are stored under their lower case form, and the same string can be added
+ * multiple times, in which case it needs to be removed the same number of times before it is no longer contained in
+ * this trie. Matches are returned in alphabetical order.
+ */
+public class PrefixTrie {
+    private final Node root;
+    private int size;
+
+    public PrefixTrie() {
+        this.root = new Node("");
+        this.size = 0;
+    }
+
+    /**
+     * @return the number of distinct strings in this trie.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Adds the given string to this trie.
+     *
+     * @param string the string to add.
+     */
+    public synchronized void add(String string) {
+        String key = string.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int index = 0;
+
+        while (index < key.length()) {
+            char c = key.charAt(index);
+            Node child = node.getChild(c);
+
+            // Nothing shares the rest of the key yet
+            if (child == null) {
+                child = new Node(key.substring(index));
+                node.putChild(child);
+                node = child;
+                break;
+            }
+
+            // Split the child's label if the key diverges from it partway through
+            int common = commonPrefixLength(child.label, key, index);
+            if (common < child.label.length()) {
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.putChild(child);
+                node.putChild(split);
+                child = split;
+            }
+
+            node = child;
+            index += common;
+        }
+
+        if (node.addValue(string))
+            ++size;
+    }
+
+    /**
+     * Removes one occurrence of the given string from this trie. If the string is not present, then this method has no
+     * effect.
+     *
+     * @param string the string to remove.
+     */
+    public synchronized void remove(String string) {
+        String key = string.toLowerCase(Locale.ROOT);
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        int index = 0;
+
+        while (index < key.length()) {
+            Node child = node.getChild(key.charAt(index));
+            if (child == null || !key.startsWith(child.label, index))
+                return;
+
+            path.push(node);
+            node = child;
+            index += child.label.length();
+        }
+
+        if (!node.removeValue(string))
+            return;
+
+        --size;
+
+        // Prune nodes which no longer lead to any string, and merge nodes which only have a single child left
+        while (node != root && node.isEmpty()) {
+            Node parent = path.pop();
+            parent.removeChild(node);
+            node = parent;
+        }
+
+        if (node != root && node.values == null && node.children != null && node.children.size() == 1) {
+            Node child = node.children.firstEntry().getValue();
+            node.label += child.label;
+            node.children = child.children;
+            node.values = child.values;
+        }
+    }
+
+    /**
+     * Returns whether or not the given string was added to this trie, ignoring case.
+     *
+     * @param string the string.
+     * @return true if the string or a string equal to it when ignoring case is in this trie, false otherwise.
+     */
+    public synchronized boolean containsIgnoreCase(String string) {
+        String key = string.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int index = 0;
+
+        while (index < key.length()) {
+            Node child = node.getChild(key.charAt(index));
+            if (child == null || !key.startsWith(child.label, index))
+                return false;
+
+            node = child;
+            index += child.label.length();
+        }
+
+        return node.values != null;
+    }
+
+    /**
+     * Returns at most the given number of strings in this trie which start with the given prefix, ignoring case. Only
+     * the part of the trie below the prefix is visited, and the search stops once enough matches are found.
+     *
+     * @param prefix the prefix to match.
+     * @param limit  the maximum number of strings to return.
+     * @return a list of the strings in this trie starting with the given prefix, in alphabetical order.
+     */
+    public synchronized List<String> startingWith(String prefix, int limit) {
+        List<String> matches = new ArrayList<>();
+        if (limit <= 0)
+            return matches;
+
+        String key = prefix.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int index = 0;
+
+        // Find the highest node whose strings all start with the prefix
+        while (index < key.length()) {
+            Node child = node.getChild(key.charAt(index));
+            if (child == null)
+                return matches;
+
+            int common = commonPrefixLength(child.label, key, index);
+            if (index + common < key.length() && common < child.label.length())
+                return matches;
+
+            node = child;
+            index += common;
+        }
+
+        collect(node, matches, limit);
+        return matches;
+    }
+
+    // Adds the strings below the given node to the given list in alphabetical order until the limit is reached
+    private static boolean collect(Node node, List<String> matches, int limit) {
+        if (node.values != null) {
+            for (String value : node.values.keySet()) {
+                matches.add(value);
+                if (matches.size() >= limit)
+                    return false;
+            }
+        }
+
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                if (!collect(child, matches, limit))
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Returns the length of the common prefix of the label and the key starting at the given index
+    private static int commonPrefixLength(String label, String key, int index) {
+        int max = Math.min(label.length(), key.length() - index), i = 0;
+        while (i < max && label.charAt(i) == key.charAt(index + i))
+            ++i;
+
+        return i;
+    }
+
+    private static final class Node {
+        String label;
+        // Created lazily since most nodes are leaves or have no values
+        TreeMap<Character, Node> children;
+        // Key: original string, value: the number of times it was added
+        TreeMap<String, Integer> values;
+
+        Node(String label) {
+            this.label = label;
+            this.children = null;
+            this.values = null;
+        }
+
+        Node getChild(char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        void putChild(Node child) {
+            if (children == null)
+                children = new TreeMap<>();
+
+            children.put(child.label.charAt(0), child);
+        }
+
+        void removeChild(Node child) {
+            children.remove(child.label.charAt(0));
+            if (children.isEmpty())
+                children = null;
+        }
+
+        // Returns true if the value was not present yet
+        boolean addValue(String value) {
+            if (values == null)
+                values = new TreeMap<>();
+
+            return values.merge(value, 1, Integer::sum) == 1;
+        }
+
+        // Returns true if the last occurrence of the value was removed
+        boolean removeValue(String value) {
+            Integer count = values == null ? null : values.get(value);
+            if (count == null)
+                return false;
+
+            if (count > 1) {
+                values.put(value, count - 1);
+                return false;
+            }
+
+            values.remove(value);
+            if (values.isEmpty())
+                values = null;
+
+            return true;
+        }
+
+        boolean isEmpty() {
+            return values == null && children == null;
+        }
+    }
+}
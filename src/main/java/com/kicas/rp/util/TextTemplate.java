@@ -0,0 +1,209 @@
+package com.kicas.rp.util;
+
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.ClickEvent;
+import net.md_5.bungee.api.chat.HoverEvent;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.chat.hover.content.Content;
+import net.md_5.bungee.api.chat.hover.content.Text;
+
+import java.util.List;
+
+/**
+ * Text in the format parsed by TextUtils which is parsed once and can then be rendered any number of times with
+ * different values for its named placeholders. Each placeholder is parsed as a marker character, and rendering only
+ * copies the components containing a marker and replaces the markers in them, so the rest of the components are shared
+ * between every rendered message. The components of a template are never modified once it is compiled.
+ */
+public class TextTemplate {
+    // Placeholders are represented by characters in the private use area, which never show up in regular text
+    private static final char FIRST_MARKER = '\uE000';
+    // One for each hexadecimal value index
+    static final int MAX_PLACEHOLDERS = 16;
+
+    private final BaseComponent[] components;
+    // Whether or not the component at each index contains a placeholder
+    private final boolean[] slots;
+    private final int placeholderCount;
+
+    TextTemplate(BaseComponent[] components, int placeholderCount) {
+        this.components = components;
+        this.slots = new boolean[components.length];
+        this.placeholderCount = placeholderCount;
+
+        for (int i = 0; i < components.length; ++i)
+            slots[i] = hasMarker(components[i]);
+    }
+
+    /**
+     * Parses the given input text, where each sequence %name% for the given placeholder names will be replaced by the
+     * value passed at the same index when the template is rendered.
+     *
+     * @param input        the input text.
+     * @param placeholders the names of the placeholders in the text.
+     * @return the compiled template.
+     * @throws TextUtils.SyntaxException if the input text is not valid.
+     */
+    public static TextTemplate compile(String input, String... placeholders) {
+        if (placeholders.length > MAX_PLACEHOLDERS)
+            throw new IllegalArgumentException("A template can have at most " + MAX_PLACEHOLDERS + " placeholders.");
+
+        // Placeholders are inserted as markers the same way values are inserted when formatting
+        Object[] markers = new Object[placeholders.length];
+        for (int i = 0; i < placeholders.length; ++i) {
+            input = input.replace("%" + placeholders[i] + "%", "%" + Integer.toHexString(i));
+            markers[i] = String.valueOf(marker(i));
+        }
+
+        return new TextTemplate(TextUtils.parse(input, markers), placeholders.length);
+    }
+
+    /**
+     * @param index the index of a placeholder.
+     * @return the character which the placeholder at the given index is parsed as.
+     */
+    static char marker(int index) {
+        return (char) (FIRST_MARKER + index);
+    }
+
+    /**
+     * @param c the character to test.
+     * @return true if the given character is parsed as a placeholder by some template, false otherwise.
+     */
+    static boolean isMarker(char c) {
+        return c >= FIRST_MARKER && c < FIRST_MARKER + MAX_PLACEHOLDERS;
+    }
+
+    /**
+     * @return true if this template produces no components, false otherwise.
+     */
+    public boolean isEmpty() {
+        return components.length == 0;
+    }
+
+    /**
+     * Renders this template with the given placeholder values. Components without a placeholder are shared with the
+     * template and must not be modified.
+     *
+     * @param values the placeholder values, in the order the placeholders were given when compiling.
+     * @return the rendered components.
+     */
+    public BaseComponent[] render(Object... values) {
+        BaseComponent[] rendered = components.clone();
+        for (int i = 0; i < rendered.length; ++i) {
+            if (slots[i])
+                rendered[i] = fill(rendered[i], values);
+        }
+
+        return rendered;
+    }
+
+    // Copies the given component with the markers in its text and events replaced
+    private BaseComponent fill(BaseComponent component, Object[] values) {
+        BaseComponent copy = component.duplicate();
+
+        if (copy instanceof TextComponent)
+            ((TextComponent) copy).setText(replaceMarkers(((TextComponent) copy).getText(), values));
+
+        ClickEvent click = copy.getClickEvent();
+        if (click != null && containsMarker(click.getValue()))
+            copy.setClickEvent(new ClickEvent(click.getAction(), replaceMarkers(click.getValue(), values)));
+
+        HoverEvent hover = copy.getHoverEvent();
+        if (hover != null && hasMarker(hover)) {
+            List<Content> contents = hover.getContents();
+            Content[] filled = new Content[contents.size()];
+            for (int i = 0; i < filled.length; ++i) {
+                Content content = contents.get(i);
+                if (content instanceof Text && ((Text) content).getValue() instanceof BaseComponent[]) {
+                    BaseComponent[] value = ((BaseComponent[]) ((Text) content).getValue()).clone();
+                    for (int j = 0; j < value.length; ++j) {
+                        if (hasMarker(value[j]))
+                            value[j] = fill(value[j], values);
+                    }
+
+                    content = new Text(value);
+                } else if (content instanceof Text && ((Text) content).getValue() instanceof String)
+                    content = new Text(replaceMarkers((String) ((Text) content).getValue(), values));
+
+                filled[i] = content;
+            }
+
+            copy.setHoverEvent(new HoverEvent(hover.getAction(), filled));
+        }
+
+        if (copy.getExtra() != null) {
+            List<BaseComponent> extra = copy.getExtra();
+            for (int i = 0; i < extra.size(); ++i) {
+                if (hasMarker(extra.get(i)))
+                    extra.set(i, fill(extra.get(i), values));
+            }
+        }
+
+        return copy;
+    }
+
+    private String replaceMarkers(String text, Object[] values) {
+        if (!containsMarker(text))
+            return text;
+
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            int index = c - FIRST_MARKER;
+            if (index >= 0 && index < placeholderCount) {
+                if (index < values.length)
+                    sb.append(values[index]);
+            } else
+                sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    private boolean containsMarker(String text) {
+        if (text == null)
+            return false;
+
+        for (int i = 0; i < text.length(); ++i) {
+            int index = text.charAt(i) - FIRST_MARKER;
+            if (index >= 0 && index < placeholderCount)
+                return true;
+        }
+
+        return false;
+    }
+
+    private boolean hasMarker(BaseComponent component) {
+        if (component instanceof TextComponent && containsMarker(((TextComponent) component).getText()))
+            return true;
+
+        if (component.getClickEvent() != null && containsMarker(component.getClickEvent().getValue()))
+            return true;
+
+        if (component.getHoverEvent() != null && hasMarker(component.getHoverEvent()))
+            return true;
+
+        return component.getExtra() != null && component.getExtra().stream().anyMatch(this::hasMarker);
+    }
+
+    private boolean hasMarker(HoverEvent hover) {
+        for (Content content : hover.getContents()) {
+            if (!(content instanceof Text))
+                continue;
+
+            Object value = ((Text) content).getValue();
+            if (value instanceof String && containsMarker((String) value))
+                return true;
+
+            if (value instanceof BaseComponent[]) {
+                for (BaseComponent component : (BaseComponent[]) value) {
+                    if (hasMarker(component))
+                        return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -27,6 +27,13 @@ public class TextUtils {
             "obfuscated", "bold", "strikethrough", "underline", "italic"
     );
 
+    // Characters which change the parsed structure if they are part of an inserted value
+    private static final String SPECIAL_CHARS = "\\&{}$(),\u00A7";
+    // Compiled format strings without and with inserted values
+    private static final FormatCache plainFormats = new FormatCache(TextUtils::parse, 0, SPECIAL_CHARS);
+    private static final FormatCache valueFormats = new FormatCache(TextUtils::parse,
+            TextTemplate.MAX_PLACEHOLDERS, SPECIAL_CHARS);
+
     /**
      * Parses the given input text and substitutes in the given values and sends the result to the given command sender.
      *
@@ -65,13 +72,26 @@ public class TextUtils {
 
     /**
      * Parses the given input text and substitutes in the given values and returns the result as an array of base
-     * components.
+     * components. The parsed input text is cached, so the returned components may be shared with other calls and
+     * should not be modified.
      *
      * @param input  the input text.
      * @param values the values to substitute in.
      * @return the parsed input text as an array of base components.
      */
     public static BaseComponent[] format(String input, Object... values) {
+        BaseComponent[] components = (values.length == 0 ? plainFormats : valueFormats).format(input, values);
+        return components == null ? parse(input, values) : components;
+    }
+
+    /**
+     * Parses the given input text with the given values substituted in, without using the cache.
+     *
+     * @param input  the input text.
+     * @param values the values to substitute in.
+     * @return the parsed input text as an array of base components.
+     */
+    static BaseComponent[] parse(String input, Object... values) {
         return parseExpression(new Pair<>(ChatColor.WHITE, new ArrayList<>()), true, insertValues(input, values), values);
     }
 
@@ -80,13 +100,14 @@ public class TextUtils {
     }
 
     /**
-     * Parses the given input text and returns the result as an array of base components.
+     * Parses the given input text and returns the result as an array of base components. The parsed input text is
+     * cached, so the returned components may be shared with other calls and should not be modified.
      *
      * @param input the input text.
      * @return the parsed input text as an array of base components.
      */
     public static BaseComponent[] format(String input) {
-        return parseExpression(new Pair<>(ChatColor.WHITE, new ArrayList<>()), true, input);
+        return format(input, new Object[0]);
     }
 
     /**
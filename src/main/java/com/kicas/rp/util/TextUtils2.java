@@ -41,6 +41,14 @@ public class TextUtils2 {
     private static final String COMPONENT_STACK_ERROR = "component stack empty";
     private static final String CHILD_STACK_ERROR = "children stack empty";
 
+    // Characters which change the parsed structure if they are part of an inserted value
+    private static final String SPECIAL_CHARS = "\\#&{}$(),";
+    // Compiled format strings without and with inserted values
+    private static final FormatCache plainFormats = new FormatCache((input, values) -> parse(input, null), 0,
+            SPECIAL_CHARS);
+    private static final FormatCache valueFormats = new FormatCache((input, values) ->
+            parse(insertValues(input, values), values), TextTemplate.MAX_PLACEHOLDERS, SPECIAL_CHARS);
+
     /**
      * Parses the given input text and substitutes in the given values and sends the result to the given command sender.
      *
@@ -67,24 +75,28 @@ public class TextUtils2 {
 
     /**
      * Parses the given input text and substitutes in the given values and returns the result as an array of base
-     * components.
+     * components. The parsed input text is cached, so the returned components may be shared with other calls and
+     * should not be modified.
      *
      * @param input  the input text.
      * @param values the values to substitute in.
      * @return the parsed input text as an array of base components.
      */
     public static BaseComponent[] format(String input, Object... values) throws ParserError {
-        return parse(insertValues(input, values), values);
+        BaseComponent[] components = valueFormats.format(input, values);
+        return components == null ? parse(insertValues(input, values), values) : components;
     }
 
     /**
-     * Parses the given input text and returns the result as an array of base components.
+     * Parses the given input text and returns the result as an array of base components. The parsed input text is
+     * cached, so the returned components may be shared with other calls and should not be modified.
      *
      * @param input the input text.
      * @return the parsed input text as an array of base components.
      */
     public static BaseComponent[] format(String input) throws ParserError {
-        return parse(input, null);
+        BaseComponent[] components = plainFormats.format(input, new Object[0]);
+        return components == null ? parse(input, null) : components;
     }
 
     /**